@@ -2,16 +2,29 @@ package com.example.sftp.autoconfiguration;
 
 import com.example.sftp.autoconfiguration.SftpProperties.SftpServerConfig;
 import com.example.sftp.autoconfiguration.exception.LocalDownloadDirectoryCreationException;
+import com.example.sftp.autoconfiguration.filters.BoundedAcceptOnceFileListFilter;
+import com.example.sftp.autoconfiguration.filters.FileNamePatternFileListFilter;
+import com.example.sftp.autoconfiguration.filters.FileNamePatternMatcher;
+import com.example.sftp.autoconfiguration.filters.LocalDirectoryScanner;
+import com.example.sftp.autoconfiguration.filters.QuietPeriodFileListFilter;
 import com.example.sftp.autoconfiguration.filters.SftpFileSizeFilter;
+import com.example.sftp.autoconfiguration.filters.SftpHighWaterMarkFileListFilter;
+import com.example.sftp.autoconfiguration.filters.SftpStableFileListFilter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.integration.dsl.IntegrationFlow;
 import org.springframework.integration.dsl.Pollers;
 import org.springframework.integration.dsl.context.IntegrationFlowContext;
+import org.springframework.integration.file.FileReadingMessageSource;
+import org.springframework.integration.file.dsl.FileInboundChannelAdapterSpec;
 import org.springframework.integration.file.filters.AbstractFileListFilter;
 import org.springframework.integration.file.filters.AcceptOnceFileListFilter;
+import org.springframework.integration.file.filters.ChainFileListFilter;
 import org.springframework.integration.file.filters.CompositeFileListFilter;
+import org.springframework.integration.file.filters.FileListFilter;
+import org.springframework.integration.file.filters.IgnoreHiddenFileListFilter;
 import org.springframework.integration.file.filters.RegexPatternFileListFilter;
 import org.springframework.integration.handler.advice.ExpressionEvaluatingRequestHandlerAdvice;
 import org.springframework.integration.metadata.ConcurrentMetadataStore;
@@ -23,10 +36,14 @@ import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
+import java.io.Closeable;
 import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.function.Function;
 
@@ -43,6 +60,11 @@ public abstract class AbstractSftpFlowConfig {
   protected final IntegrationFlowContext flowContext; // For dynamic flow registration
 
   protected static final long DEFAULT_FALLBACK_FIXED_DELAY = 5000L;
+  protected static final String HIGH_WATER_MARK_MODE = "highWaterMark";
+  protected static final String WATCH_SCAN_MODE = "watch";
+  protected static final long DEFAULT_LOCAL_WATCH_INTERVAL = 100L;
+  protected static final long DEFAULT_LOCAL_WATCH_QUIET_PERIOD = 1000L;
+  protected static final int MAX_STABILITY_CANDIDATES = 10_000;
 
   /**
    * Constructor injecting common dependencies.
@@ -102,16 +124,10 @@ public abstract class AbstractSftpFlowConfig {
               .advice(advice)
               .getObject();
         }
-      } else if ("timeWindow".equalsIgnoreCase(poller.getType())) {
-        if (poller.getWindowInterval() != null &&
-            StringUtils.hasText(poller.getStartTime()) &&
-            StringUtils.hasText(poller.getEndTime()) &&
-            StringUtils.hasText(poller.getTimeZone())) {
-          DateTimeFormatter dtf = DateTimeFormatter.ofPattern("HH:mm");
-          LocalTime start = LocalTime.parse(poller.getStartTime(), dtf);
-          LocalTime end = LocalTime.parse(poller.getEndTime(), dtf);
-          ZoneId zoneId = ZoneId.of(poller.getTimeZone());
-          return Pollers.trigger(new TimeWindowTrigger(poller.getWindowInterval(), start, end, zoneId))
+      } else if (poller.getWindowInterval() != null) {
+        TimeWindowTrigger trigger = buildTimeWindowTrigger(poller, poller.getWindowInterval());
+        if (trigger != null) {
+          return Pollers.trigger(trigger)
               .advice(advice)
               .getObject();
         }
@@ -122,6 +138,27 @@ public abstract class AbstractSftpFlowConfig {
         .getObject();
   }
 
+  /**
+   * Builds a trigger firing every {@code interval} milliseconds within the time window of the poller.
+   *
+   * @param poller   the poller configuration.
+   * @param interval the interval in milliseconds within the window.
+   * @return the trigger, or null if the poller is not a complete "timeWindow" configuration.
+   */
+  protected TimeWindowTrigger buildTimeWindowTrigger(SftpProperties.PollerProperties poller, long interval) {
+    if (poller == null || !"timeWindow".equalsIgnoreCase(poller.getType()) ||
+        !StringUtils.hasText(poller.getStartTime()) ||
+        !StringUtils.hasText(poller.getEndTime()) ||
+        !StringUtils.hasText(poller.getTimeZone())) {
+      return null;
+    }
+    DateTimeFormatter dtf = DateTimeFormatter.ofPattern("HH:mm");
+    LocalTime start = LocalTime.parse(poller.getStartTime(), dtf);
+    LocalTime end = LocalTime.parse(poller.getEndTime(), dtf);
+    ZoneId zoneId = ZoneId.of(poller.getTimeZone());
+    return new TimeWindowTrigger(interval, start, end, zoneId);
+  }
+
   /**
    * Registers an integration flow with a unique identifier in the IntegrationFlowContext.
    *
@@ -132,6 +169,22 @@ public abstract class AbstractSftpFlowConfig {
     flowContext.registration(flow).id(flowName).register();
   }
 
+  /**
+   * Registers an integration flow reading a local directory. If the filter of the local files holds resources
+   * (e.g. the spill file of the accept-once filter), it is closed when the flow is removed from the context.
+   *
+   * @param flowName    a unique flow name.
+   * @param flow        the integration flow to register.
+   * @param localFilter the filter returned by {@link #configureLocalFileSource}, or null.
+   */
+  protected void registerFlow(String flowName, IntegrationFlow flow, FileListFilter<File> localFilter) {
+    IntegrationFlowContext.IntegrationFlowRegistrationBuilder registration = flowContext.registration(flow).id(flowName);
+    if (localFilter instanceof Closeable closeable) {
+      registration.addBean(flowName + ".localFilter", (DisposableBean) closeable::close);
+    }
+    registration.register();
+  }
+
   /**
    * Builds a ThreadPoolTaskExecutor based on throughput configuration defined in SftpProperties.
    *
@@ -192,37 +245,97 @@ public abstract class AbstractSftpFlowConfig {
     return txTemplate.execute(status -> transformer.apply(payload));
   }
 
+  /**
+   * Compiles the server's include and exclude patterns into a single matcher.
+   *
+   * @param serverConfig the SFTP server configuration.
+   * @return the compiled matcher, or null if no include or exclude pattern is configured.
+   */
+  protected FileNamePatternMatcher createFileNamePatternMatcher(SftpServerConfig serverConfig) {
+    FileNamePatternMatcher matcher =
+        FileNamePatternMatcher.compile(serverConfig.getIncludePatterns(), serverConfig.getExcludePatterns());
+    return matcher.isEmpty() ? null : matcher;
+  }
+
+  /**
+   * Creates the remote accept-once filter selected by {@code metadataStoreMode}:
+   * <ul>
+   *   <li>"perFile" (default): a persistent accept-once filter with one metadata entry per file.</li>
+   *   <li>"highWaterMark": a single persisted cursor per server, see {@link SftpHighWaterMarkFileListFilter}.</li>
+   * </ul>
+   *
+   * @param serverConfig the SFTP server configuration.
+   * @return the accept-once filter, or null if the metadata store is not enabled.
+   */
+  protected FileListFilter<SftpClient.DirEntry> createRemoteAcceptOnceFilter(SftpServerConfig serverConfig) {
+    if (!Boolean.TRUE.equals(serverConfig.getEnableMetadataStore())) {
+      return null;
+    }
+    // Retrieve distributed metadata store bean.
+    ConcurrentMetadataStore metadataStore = applicationContext.getBean(ConcurrentMetadataStore.class);
+    if (HIGH_WATER_MARK_MODE.equalsIgnoreCase(serverConfig.getMetadataStoreMode())) {
+      String key = "sftpHighWaterMark-" + serverConfig.getName();
+      return serverConfig.getHighWaterMarkPendingTimeout() != null
+          ? new SftpHighWaterMarkFileListFilter(metadataStore, key, Duration.ofMillis(serverConfig.getHighWaterMarkPendingTimeout()))
+          : new SftpHighWaterMarkFileListFilter(metadataStore, key);
+    }
+    return new SftpPersistentAcceptOnceFileListFilter(metadataStore, "sftpRemoteFlow-" + serverConfig.getName());
+  }
+
   /**
    * Creates a composite remote file filter using:
    * <ul>
-   *   <li>A persistent accept-once filter based on a distributed metadata store.</li>
    *   <li>A regex-based filter if a file pattern is provided.</li>
+   *   <li>A compiled include/exclude pattern filter if include or exclude patterns are provided.</li>
    *   <li>A file size filter if minimum/maximum size constraints are set.</li>
+   *   <li>A stability filter if a minimum file age or the stable listing check is set.</li>
+   *   <li>The accept-once filter from {@link #createRemoteAcceptOnceFilter(SftpServerConfig)}, if enabled.</li>
    * </ul>
    *
    * @param serverConfig the SFTP server configuration.
    * @return a CompositeFileListFilter for remote SftpClient.DirEntry objects, or null if no sub-filter is added.
    */
   protected CompositeFileListFilter<SftpClient.DirEntry> createRemoteCompositeFilter(SftpServerConfig serverConfig) {
+    return createRemoteCompositeFilter(serverConfig, createRemoteAcceptOnceFilter(serverConfig));
+  }
+
+  /**
+   * Creates a composite remote file filter around an already created accept-once filter.
+   * The filters are chained, each one only seeing the entries accepted by the previous ones, and the
+   * accept-once filter comes last: an entry still rejected by another filter (e.g. not yet stable) is not
+   * recorded, so it is accepted once the other filters let it through.
+   *
+   * @param serverConfig     the SFTP server configuration.
+   * @param acceptOnceFilter the accept-once filter, or null if none.
+   * @return a CompositeFileListFilter for remote SftpClient.DirEntry objects, or null if no sub-filter is added.
+   */
+  protected CompositeFileListFilter<SftpClient.DirEntry> createRemoteCompositeFilter(SftpServerConfig serverConfig,
+                                                                                    FileListFilter<SftpClient.DirEntry> acceptOnceFilter) {
     try {
-      CompositeFileListFilter<SftpClient.DirEntry> compositeFilter = new CompositeFileListFilter<>();
+      CompositeFileListFilter<SftpClient.DirEntry> compositeFilter = new ChainFileListFilter<>();
       boolean filterAdded = false;
-      if (Boolean.TRUE.equals(serverConfig.getEnableMetadataStore())) {
-        // Retrieve distributed metadata store bean.
-        ConcurrentMetadataStore metadataStore =
-            applicationContext.getBean(ConcurrentMetadataStore.class);
-        compositeFilter.addFilter(new SftpPersistentAcceptOnceFileListFilter(metadataStore,
-            "sftpRemoteFlow-" + serverConfig.getName()));
-        filterAdded = true;
-      }
       if (StringUtils.hasText(serverConfig.getFilePattern())) {
         compositeFilter.addFilter(new SftpRegexPatternFileListFilter(serverConfig.getFilePattern()));
         filterAdded = true;
       }
+      FileNamePatternMatcher nameMatcher = createFileNamePatternMatcher(serverConfig);
+      if (nameMatcher != null) {
+        compositeFilter.addFilter(new FileNamePatternFileListFilter<>(nameMatcher, SftpClient.DirEntry::getFilename));
+        filterAdded = true;
+      }
       if (serverConfig.getMinFileSize() != null || serverConfig.getMaxFileSize() != null) {
         compositeFilter.addFilter(new SftpFileSizeFilter(serverConfig.getMinFileSize(), serverConfig.getMaxFileSize()));
         filterAdded = true;
       }
+      if (serverConfig.getMinFileAge() != null || Boolean.TRUE.equals(serverConfig.getStableListingCheck())) {
+        compositeFilter.addFilter(new SftpStableFileListFilter(serverConfig.getMinFileAge(),
+            Boolean.TRUE.equals(serverConfig.getStableListingCheck()), MAX_STABILITY_CANDIDATES));
+        filterAdded = true;
+      }
+      if (acceptOnceFilter != null) {
+        compositeFilter.addFilter(acceptOnceFilter);
+        filterAdded = true;
+      }
       return filterAdded ? compositeFilter : null;
     } catch (Exception ex) {
       log.error("Error while creating remote composite file filter for server [{}]: {}", serverConfig.getName(), ex.getMessage(), ex);
@@ -230,37 +343,143 @@ public abstract class AbstractSftpFlowConfig {
     }
   }
 
+  /**
+   * Configures how a flow reading a local directory (upload and archive flows) finds its files, applying
+   * the server's local filters.
+   * <p>
+   * In "watch" scan mode the directory is registered with a file system watch service: each poll only
+   * drains the files created or modified since the previous one instead of listing the whole directory, and
+   * a full scan is done once at start and whenever the watch service reports lost events (overflow). A
+   * {@link QuietPeriodFileListFilter} holds each reported file back until it has not been modified for
+   * {@code localWatchQuietPeriod}, before the local filters are applied. Otherwise the
+   * directory is listed on every poll by a {@link LocalDirectoryScanner}, which reads the attributes of
+   * each entry once for all filters. Either way, subdirectories are scanned as shards down to
+   * {@code localShardDepth} levels.
+   * </p>
+   *
+   * @param serverConfig   the SFTP server configuration.
+   * @param fileSourceSpec the local file source.
+   * @param flowKind       the kind of flow reading the directory (e.g. "upload"), which names its spill file.
+   * @return the filter applied to the local files, or null if the scanner uses its default filter.
+   */
+  protected FileListFilter<File> configureLocalFileSource(SftpServerConfig serverConfig,
+                                                          FileInboundChannelAdapterSpec fileSourceSpec,
+                                                          String flowKind) {
+    int shardDepth = serverConfig.getLocalShardDepth() != null ? serverConfig.getLocalShardDepth() : 0;
+    CompositeFileListFilter<File> compositeFilter = createLocalCompositeFilter(serverConfig, flowKind);
+    if (WATCH_SCAN_MODE.equalsIgnoreCase(serverConfig.getLocalScanMode())) {
+      fileSourceSpec.useWatchService(true)
+          .watchEvents(FileReadingMessageSource.WatchEventType.CREATE, FileReadingMessageSource.WatchEventType.MODIFY)
+          .watchMaxDepth(shardDepth + 1);
+      // Without local filters, keep the watch service's default: skip hidden files and accept each file once.
+      FileListFilter<File> filter = compositeFilter != null ? compositeFilter
+          : new CompositeFileListFilter<>(List.of(new IgnoreHiddenFileListFilter(), new AcceptOnceFileListFilter<>()));
+      long quietPeriod = serverConfig.getLocalWatchQuietPeriod() != null
+          ? serverConfig.getLocalWatchQuietPeriod() : DEFAULT_LOCAL_WATCH_QUIET_PERIOD;
+      // Set on the source itself: a filter set on the spec only applies when the spec is registered as a component.
+      fileSourceSpec.getObject().setFilter(new QuietPeriodFileListFilter(filter, quietPeriod));
+      return filter;
+    }
+    LocalDirectoryScanner scanner = new LocalDirectoryScanner(shardDepth);
+    if (compositeFilter != null) {
+      scanner.setFilter(compositeFilter);
+    }
+    fileSourceSpec.scanner(scanner);
+    return scanner.getFilter();
+  }
+
+  /**
+   * Builds the poller of a flow reading a local directory. In "watch" scan mode draining the watch events
+   * is cheap, so the poll runs every {@code localWatchInterval} ms and new files are picked up almost
+   * immediately; otherwise the default poller is used.
+   *
+   * @param serverConfig the SFTP server configuration.
+   * @param advice       the error-handling advice.
+   * @return the poller metadata.
+   */
+  protected PollerMetadata buildLocalPollerMetadata(SftpServerConfig serverConfig,
+                                                    ExpressionEvaluatingRequestHandlerAdvice advice) {
+    if (!WATCH_SCAN_MODE.equalsIgnoreCase(serverConfig.getLocalScanMode())) {
+      return buildPollerMetadata(sftpProperties.getDefaultPoller(), advice);
+    }
+    long interval = serverConfig.getLocalWatchInterval() != null
+        ? serverConfig.getLocalWatchInterval() : DEFAULT_LOCAL_WATCH_INTERVAL;
+    log.info("Watching local directory of server [{}] for new files every {} ms.", serverConfig.getName(), interval);
+    return Pollers.fixedDelay(interval)
+        .advice(advice)
+        .getObject();
+  }
+
   /**
    * Creates a composite local file filter using:
    * <ul>
-   *   <li>An in-memory accept-once filter.</li>
    *   <li>A regex-based filter if a file pattern is provided.</li>
+   *   <li>A compiled include/exclude pattern filter if include or exclude patterns are provided.</li>
    *   <li>A file size filter if minimum/maximum size constraints are set.</li>
+   *   <li>A bounded in-memory accept-once filter (see {@link #createLocalAcceptOnceFilter(SftpServerConfig, String)}).</li>
    * </ul>
+   * The filters are chained in this order, so the accept-once filter only records files accepted by all the
+   * others.
    *
    * @param serverConfig the SFTP server configuration.
+   * @param flowKind     the kind of flow the filter belongs to.
    * @return a CompositeFileListFilter for File objects, or null if no sub-filter is added.
    */
-  protected CompositeFileListFilter<File> createLocalCompositeFilter(SftpServerConfig serverConfig) {
-    CompositeFileListFilter<File> compositeFilter = new CompositeFileListFilter<>();
+  protected CompositeFileListFilter<File> createLocalCompositeFilter(SftpServerConfig serverConfig, String flowKind) {
+    // A chain only hands each filter the files accepted by the previous ones, so that the accept-once filter
+    // does not record files still rejected by the others (e.g. while below the minimum size).
+    CompositeFileListFilter<File> compositeFilter = new ChainFileListFilter<>();
     boolean filterAdded = false;
-    if (Boolean.TRUE.equals(serverConfig.getEnableMetadataStore())) {
-      compositeFilter.addFilter(new AcceptOnceFileListFilter<>());
-      filterAdded = true;
-    }
     if (StringUtils.hasText(serverConfig.getFilePattern())) {
       compositeFilter.addFilter(new RegexPatternFileListFilter(serverConfig.getFilePattern()));
       filterAdded = true;
     }
+    FileNamePatternMatcher nameMatcher = createFileNamePatternMatcher(serverConfig);
+    if (nameMatcher != null) {
+      compositeFilter.addFilter(new FileNamePatternFileListFilter<>(nameMatcher, File::getName));
+      filterAdded = true;
+    }
     if (serverConfig.getMinFileSize() != null || serverConfig.getMaxFileSize() != null) {
       compositeFilter.addFilter(new LocalFileSizeFilter(serverConfig.getMinFileSize(), serverConfig.getMaxFileSize()));
       filterAdded = true;
     }
+    if (Boolean.TRUE.equals(serverConfig.getEnableMetadataStore())) {
+      compositeFilter.addFilter(createLocalAcceptOnceFilter(serverConfig, flowKind));
+      filterAdded = true;
+    }
     return filterAdded ? compositeFilter : null;
   }
 
   /**
-   * A simple local file size filter that extends AbstractFileListFilter.
+   * Creates the bounded local accept-once filter, spilling evicted entries to disk if a spill file is configured.
+   * Each flow kind gets its own spill file, named after the configured one with the kind appended to the base
+   * name (e.g. {@code spill-upload.dat}), since a spill file is truncated by the filter opening it.
+   *
+   * @param serverConfig the SFTP server configuration.
+   * @param flowKind     the kind of flow the filter belongs to.
+   * @return the accept-once filter.
+   */
+  protected BoundedAcceptOnceFileListFilter createLocalAcceptOnceFilter(SftpServerConfig serverConfig, String flowKind) {
+    SftpProperties.LocalAcceptOnceProperties bounds = serverConfig.getLocalAcceptOnce() != null
+        ? serverConfig.getLocalAcceptOnce()
+        : SftpProperties.LocalAcceptOnceProperties.builder().build();
+    int maxEntries = bounds.getMaxEntries() != null ? bounds.getMaxEntries() : 100_000;
+    if (!StringUtils.hasText(bounds.getSpillFile())) {
+      return new BoundedAcceptOnceFileListFilter(maxEntries, bounds.getMaxAge());
+    }
+    long spillCapacity = bounds.getSpillCapacity() != null ? bounds.getSpillCapacity() : 1_048_576L;
+    Path spillFile = Path.of(bounds.getSpillFile());
+    String name = spillFile.getFileName().toString();
+    int extension = name.lastIndexOf('.');
+    String flowName = extension > 0
+        ? name.substring(0, extension) + "-" + flowKind + name.substring(extension)
+        : name + "-" + flowKind;
+    return new BoundedAcceptOnceFileListFilter(maxEntries, bounds.getMaxAge(), spillFile.resolveSibling(flowName), spillCapacity);
+  }
+
+  /**
+   * A simple local file size filter that extends AbstractFileListFilter. Files listed by a
+   * {@link LocalDirectoryScanner} answer {@code length()} from the attributes read during the scan.
    */
   protected static class LocalFileSizeFilter extends AbstractFileListFilter<File> {
 
@@ -1,6 +1,8 @@
 package com.example.sftp.autoconfiguration;
 
+import com.example.sftp.autoconfiguration.outbound.SftpUploadGateway;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -48,6 +50,19 @@ public class SftpAutoConfiguration {
     return new SftpFlowsAutoConfigurer(properties, processor, factoryProvider, errorHandlingAdvice, transactionManager, context, flowContext);
   }
 
+  /**
+   * Exposes the gateway uploading in-memory content (byte arrays, streams, resources) to the configured
+   * servers without staging it to local disk.
+   *
+   * @param beanFactory the bean factory used to resolve the upload channels.
+   * @return the SftpUploadGateway instance.
+   */
+  @Bean
+  @ConditionalOnMissingBean
+  public SftpUploadGateway sftpUploadGateway(BeanFactory beanFactory) {
+    return new SftpUploadGateway(beanFactory);
+  }
+
   /**
    * Defines a global error channel where SFTP flow errors will be published.
    *
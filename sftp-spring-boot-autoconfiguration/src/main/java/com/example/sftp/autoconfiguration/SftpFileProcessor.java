@@ -23,6 +23,14 @@ public interface SftpFileProcessor {
    */
   default void beforeUpload(File file, String serverName) {}
 
+  /**
+   * Called before in-memory content (a byte array, stream or resource) is uploaded to SFTP.
+   *
+   * @param fileName   the remote file name the content is uploaded to
+   * @param serverName the SFTP server name
+   */
+  default void beforePayloadUpload(String fileName, String serverName) {}
+
   /**
    * Called before archiving a file on the remote SFTP server.
    *
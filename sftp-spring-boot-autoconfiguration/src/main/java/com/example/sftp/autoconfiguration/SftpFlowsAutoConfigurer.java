@@ -40,8 +40,9 @@ public class SftpFlowsAutoConfigurer {
       for (SftpProperties.SftpServerConfig server : properties.getServers()) {
         // You can compute a bean name suffix based on server name (or index)
         String serverName = server.getName() != null ? server.getName() : "default";
-        // Register download flow if "from" property is set.
-        if (server.getFrom() != null && !server.getFrom().isEmpty()) {
+        // Register download flow if "from" or "sources" is set.
+        if ((server.getFrom() != null && !server.getFrom().isEmpty())
+            || (server.getSources() != null && !server.getSources().isEmpty())) {
           String beanName = "sftpDownloadFlowConfig-" + serverName;
           context.registerBean(beanName, SftpDownloadFlowConfig.class,
               () -> new SftpDownloadFlowConfig(
@@ -1,6 +1,7 @@
 package com.example.sftp.autoconfiguration;
 
 import com.example.sftp.autoconfiguration.validation.ValidPollerProperties;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -53,7 +54,7 @@ public class SftpProperties {
   /**
    * List of server-specific SFTP configurations.
    */
-  private List<SftpServerConfig> servers;
+  private List<@Valid SftpServerConfig> servers;
 
   /**
    * Global throughput configuration for controlling thread pool behavior.
@@ -133,7 +134,7 @@ public class SftpProperties {
   }
 
   @Data
-  @Builder
+  @Builder(toBuilder = true)
   @NoArgsConstructor
   @AllArgsConstructor
   public static class SftpServerConfig {
@@ -170,10 +171,16 @@ public class SftpProperties {
      */
     private String privateKeyPassphrase;
     /**
-     * Remote directory from which files are downloaded.
+     * Remote directory from which files are downloaded. Optional: servers may only upload, or only download
+     * from 'sources'.
      */
-    @NotBlank(message = "Remote 'from' directory must not be blank")
     private String from;
+    /**
+     * Optional additional remote directories downloaded from this server. Each source gets its own flow but
+     * shares the server's session pool and inbound executor with 'from' and the other sources; each flow
+     * keeps at most one poll waiting for that executor, so the directories are polled in turn.
+     */
+    private List<@Valid SourceDirectory> sources;
     /**
      * Remote directory to which files will be uploaded.
      */
@@ -182,22 +189,76 @@ public class SftpProperties {
      * Remote directory where files will be archived.
      */
     private String archive;
+    /**
+     * Optional remote archive path template, e.g. "archive/{yyyy}/{MM}/{dd}/{filename}". Supported tokens:
+     * {yyyy}, {MM}, {dd} (archive date), {server} and {filename}; without {filename} the template names a
+     * directory. Used by archive batches, archive on download and, when set, the archive gateway.
+     */
+    private String archivePathTemplate;
+    /**
+     * Number of upcoming days whose date-partitioned archive directories are created ahead of time, besides
+     * today's. Defaults to 1.
+     */
+    @Min(value = 0, message = "Archive partition days ahead must be 0 or greater")
+    private Integer archivePartitionDaysAhead;
+    /**
+     * When true, each downloaded file is renamed into the archive directory as soon as afterDownload succeeded,
+     * instead of going through the separate archive flow. Disables deleteAfterDownload.
+     */
+    private Boolean archiveOnDownload;
+    /**
+     * How the archive flow archives a file: "move" (default) renames it into the archive, "copy" copies it
+     * there on the server and keeps the original in place.
+     */
+    private String archiveMode;
     /**
      * Optional override for the local download directory.
      */
     private String localDownloadDir;
     /**
-     * When true, deletes remote files after successful download and processing.
+     * When true, deletes remote files after successful download and processing. Removals run asynchronously in
+     * batches once afterDownload has committed; a file whose removal is lost (e.g. on a crash) stays on the
+     * server and may be downloaded again.
      */
     private Boolean deleteAfterDownload;
+    /**
+     * Number of downloaded files whose remote removal is sent as one pipelined batch. Defaults to 100.
+     */
+    @Min(value = 1, message = "Delete batch size must be at least 1")
+    private Integer deleteBatchSize;
+    /**
+     * Maximum time (in milliseconds) a downloaded file waits for its removal batch to fill. Defaults to 200.
+     */
+    @Min(value = 1, message = "Delete batch window must be at least 1 ms")
+    private Long deleteBatchWindow;
     /**
      * When true, enables the metadata store filter to avoid duplicate processing.
      */
     private Boolean enableMetadataStore;
+    /**
+     * How the metadata store tracks downloaded files: "perFile" (default) keeps one entry per file,
+     * "highWaterMark" keeps a single cursor (max modified time plus the names at that time) per server.
+     */
+    private String metadataStoreMode;
+    /**
+     * Time (in milliseconds) after which a file accepted by the high-water mark but neither committed nor
+     * reverted is reverted, so that it no longer holds the cursor back and is offered again. Defaults to one hour.
+     */
+    @Min(value = 1, message = "High-water mark pending timeout must be at least 1 ms")
+    private Long highWaterMarkPendingTimeout;
     /**
      * A regex-based file pattern for filtering files.
      */
     private String filePattern;
+    /**
+     * Optional file name patterns, any of which a file must match. Entries are globs by default
+     * ("*.csv", "glob:report-{a,b}-*.txt") or regular expressions when prefixed with "regex:".
+     */
+    private List<String> includePatterns;
+    /**
+     * Optional file name patterns (same syntax as includePatterns) that exclude a file.
+     */
+    private List<String> excludePatterns;
     /**
      * Optional minimum file size (in bytes) for filtering.
      */
@@ -208,6 +269,55 @@ public class SftpProperties {
      */
     @Min(value = 1, message = "Maximum file size must be greater than 0")
     private Long maxFileSize;
+    /**
+     * Optional minimum age (in milliseconds, based on the remote modification time) before a remote file is
+     * downloaded.
+     */
+    @Min(value = 1, message = "Minimum file age must be at least 1 millisecond")
+    private Long minFileAge;
+    /**
+     * When true, a remote file younger than minFileAge is downloaded once its size and modification time
+     * are unchanged across two consecutive listings.
+     */
+    private Boolean stableListingCheck;
+    /**
+     * When true, the remote 'from' directory is stat'ed before each poll and the previous listing is reused
+     * while its modification time and size are unchanged. Leave disabled for servers that do not update
+     * directory modification times. Ignored when minFileAge or stableListingCheck is set, since files written
+     * in place would keep their cached attributes.
+     */
+    private Boolean listingCache;
+    /**
+     * Maximum age (in milliseconds) of a reused listing before a full listing is forced. Defaults to 300000.
+     */
+    @Min(value = 1, message = "Listing cache max age must be at least 1 millisecond")
+    private Long listingCacheMaxAge;
+    /**
+     * When true, the remote 'from' directory is read page by page and filtered as it is read, stopping once
+     * maxFetchSize candidates are found, instead of building and filtering the full listing.
+     */
+    private Boolean streamingListing;
+    /**
+     * Optional maximum number of remote files fetched per poll.
+     */
+    @Min(value = 1, message = "Max fetch size must be at least 1")
+    private Integer maxFetchSize;
+    /**
+     * When true, files in sub-directories of 'from' are downloaded too, keeping their relative paths under the
+     * local download directory. Filters see the relative path as the file name.
+     */
+    private Boolean recursive;
+    /**
+     * Maximum number of sub-directory levels below 'from' visited by a recursive download. Defaults to 10.
+     */
+    @Min(value = 0, message = "Recursive max depth must be 0 or greater")
+    private Integer recursiveMaxDepth;
+    /**
+     * When true, a failed download keeps its partial file (in a ".partial" directory next to the local download
+     * directory) and the next attempt continues from it, provided the remote size and modification time are
+     * unchanged. A completed partial file is renamed into the local download directory.
+     */
+    private Boolean resumableDownload;
     /**
      * Optional per-server poller configuration.
      */
@@ -230,6 +340,114 @@ public class SftpProperties {
      * Optional override for the local upload directory.
      */
     private String localUploadDir;
+    /**
+     * When true (the default), a failed upload is retried and continues from the size of the remote temporary
+     * file, also after a restart, as long as the local file is unchanged; the local size and modification time
+     * are kept in a marker next to the temporary file. Set to false for servers that do not support appending
+     * to a file.
+     */
+    private Boolean resumableUpload;
+    /**
+     * Maximum number of files uploaded concurrently, each over its own pooled session. Limited to cacheSize.
+     * Defaults to 1 (one file at a time).
+     */
+    @Min(value = 1, message = "Upload concurrency must be at least 1")
+    private Integer uploadConcurrency;
+    /**
+     * Optional size (in bytes) from which a file is uploaded as several ranges written concurrently over
+     * separate sessions. Unset disables chunked uploads.
+     */
+    @Min(value = 1, message = "Chunked upload threshold must be at least 1 byte")
+    private Long chunkedUploadThreshold;
+    /**
+     * Number of ranges written concurrently for a chunked upload. Limited by cacheSize / uploadConcurrency.
+     * Defaults to 4.
+     */
+    @Min(value = 2, message = "Chunked upload parallelism must be at least 2")
+    private Integer chunkedUploadParallelism;
+    /**
+     * How long (in milliseconds) a remote upload directory found or created is assumed to exist before it is
+     * checked again. A failed upload forgets it immediately. 0 checks on every upload. Defaults to 300000.
+     */
+    @Min(value = 0, message = "Remote directory cache TTL must be 0 or greater")
+    private Long remoteDirectoryCacheTtl;
+    /**
+     * Optional bounds for the local accept-once filter used by the upload and archive flows.
+     */
+    private LocalAcceptOnceProperties localAcceptOnce;
+    /**
+     * How the upload and archive flows find new local files: "poll" (default) lists the local directory on
+     * every poll, "watch" registers it with a file system watch service and only drains its create and modify
+     * events, falling back to a full scan when events were lost.
+     */
+    private String localScanMode;
+    /**
+     * Delay (in milliseconds) between two drains of the watch service events when localScanMode is "watch".
+     * Defaults to 100.
+     */
+    @Min(value = 1, message = "Local watch interval must be at least 1 ms")
+    private Long localWatchInterval;
+    /**
+     * How long (in milliseconds) a file reported by the watch service must be unmodified before it is picked
+     * up when localScanMode is "watch", so that files still being written are not uploaded. Defaults to 1000.
+     */
+    @Min(value = 0, message = "Local watch quiet period must be 0 or greater")
+    private Long localWatchQuietPeriod;
+    /**
+     * Number of subdirectory levels below the local upload or archive directory scanned for files, so that a
+     * large backlog can be sharded over several directories. Files are uploaded under their own name, whatever
+     * their shard, unless remoteShardPaths is enabled. Defaults to 0 (the directory itself only).
+     */
+    @Min(value = 0, message = "Local shard depth must be 0 or greater")
+    private Integer localShardDepth;
+    /**
+     * Whether uploaded files keep their path below the local upload directory remotely (e.g. shard-1/report.csv
+     * goes to the subdirectory shard-1 of the remote directory, created if missing), so that files with the
+     * same name in different shards do not overwrite each other. Defaults to false: the remote layout stays
+     * flat whatever the local sharding.
+     */
+    private Boolean remoteShardPaths;
+    /**
+     * What happens to a local file once uploaded: "keep" (default), "delete", "move" (into a dated subdirectory
+     * of uploadSentDir) or "link" (hard-linked into it, then removed from the upload directory). Unless "keep",
+     * files whose upload failed are moved into a dated subdirectory of uploadQuarantineDir. Files keep their
+     * shard path and never replace an earlier file of the same name; a counter is added to the name instead.
+     */
+    private String uploadDisposition;
+    /**
+     * Directory receiving moved or linked files. Defaults to the local upload directory with a ".sent" suffix.
+     */
+    private String uploadSentDir;
+    /**
+     * Directory receiving files whose upload failed. Defaults to the local upload directory with a
+     * ".quarantine" suffix.
+     */
+    private String uploadQuarantineDir;
+    /**
+     * When set, the archive flow collects up to this many paths and renames them over a single session, sending
+     * all renames before reading the replies. Unset archives each path on its own.
+     */
+    @Min(value = 2, message = "Archive batch size must be at least 2")
+    private Integer archiveBatchSize;
+    /**
+     * Maximum time (in milliseconds) a path waits for its archive batch to fill. Defaults to 200.
+     */
+    @Min(value = 1, message = "Archive batch window must be at least 1 ms")
+    private Long archiveBatchWindow;
+    /**
+     * When set, archived files older than this many milliseconds are deleted from the archive directory (the
+     * root directory of archivePathTemplate, if set) and its subdirectories by a scheduled retention purge.
+     * Files in date partitions of the template are aged from the end of their partition's day; other files
+     * from their modification time, which a rename into the archive keeps. Unset keeps archived files forever.
+     */
+    @Min(value = 1, message = "Archive retention must be at least 1 ms")
+    private Long archiveRetention;
+    /**
+     * Time (in milliseconds) between two archive retention purges. Defaults to one hour. When the server
+     * polls in a time window, purges only run within that window.
+     */
+    @Min(value = 1, message = "Archive retention interval must be at least 1 ms")
+    private Long archiveRetentionInterval;
     /**
      * Flag indicating whether a dynamic bridge should be created for uploads.
      */
@@ -261,6 +479,97 @@ public class SftpProperties {
     private String archiveTarget;
   }
 
+  /**
+   * Bounds the local accept-once filter so that its memory stays flat on long-running flows.
+   */
+  @Data
+  @Builder
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class LocalAcceptOnceProperties {
+    /**
+     * Maximum number of file paths kept in memory. Defaults to 100000.
+     */
+    @Builder.Default
+    @Min(value = 1, message = "Local accept-once max entries must be at least 1")
+    private Integer maxEntries = 100_000;
+    /**
+     * Paths not seen for this long (in milliseconds) are forgotten. Unset disables age eviction.
+     */
+    @Min(value = 1, message = "Local accept-once max age must be at least 1 millisecond")
+    private Long maxAge;
+    /**
+     * Optional file that receives entries evicted from memory, so they are still rejected. The upload and
+     * archive flows each use their own file, named after this one with "-upload" or "-archive" appended to the
+     * base name.
+     */
+    private String spillFile;
+    /**
+     * Number of 16-byte slots in the spill file. Defaults to 1048576 (16 MB).
+     */
+    @Builder.Default
+    @Min(value = 16, message = "Local accept-once spill capacity must be at least 16")
+    private Long spillCapacity = 1_048_576L;
+  }
+
+  /**
+   * A remote directory downloaded in addition to 'from'. Unset filter and poller options fall back to the
+   * server's values.
+   */
+  @Data
+  @Builder
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class SourceDirectory {
+    /**
+     * Name of the source, unique per server. Used in the flow id, the metadata store keys and the local
+     * download sub-directory.
+     */
+    @NotBlank(message = "Source name must not be blank")
+    private String name;
+    /**
+     * Remote directory from which files are downloaded.
+     */
+    @NotBlank(message = "Source path must not be blank")
+    private String path;
+    /**
+     * Optional override for the server's filePattern.
+     */
+    private String filePattern;
+    /**
+     * Optional override for the server's includePatterns.
+     */
+    private List<String> includePatterns;
+    /**
+     * Optional override for the server's excludePatterns.
+     */
+    private List<String> excludePatterns;
+    /**
+     * Optional override for the server's minFileSize.
+     */
+    @Min(value = 0, message = "Minimum file size must be 0 or greater")
+    private Long minFileSize;
+    /**
+     * Optional override for the server's maxFileSize.
+     */
+    @Min(value = 1, message = "Maximum file size must be greater than 0")
+    private Long maxFileSize;
+    /**
+     * Optional override for the server's minFileAge.
+     */
+    @Min(value = 1, message = "Minimum file age must be at least 1 millisecond")
+    private Long minFileAge;
+    /**
+     * Optional override for the server's maxFetchSize.
+     */
+    @Min(value = 1, message = "Max fetch size must be at least 1")
+    private Integer maxFetchSize;
+    /**
+     * Optional override for the server's poller.
+     */
+    private PollerProperties poller;
+  }
+
   /**
    * Controls thread pool behavior for inbound file processing.
    * Clients can override these defaults via configuration.
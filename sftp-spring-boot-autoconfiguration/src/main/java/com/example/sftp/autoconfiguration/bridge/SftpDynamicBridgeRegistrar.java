@@ -1,6 +1,7 @@
 package com.example.sftp.autoconfiguration.bridge;
 
 import com.example.sftp.autoconfiguration.SftpProperties;
+import com.example.sftp.autoconfiguration.outbound.SftpUploadGateway;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,7 +32,7 @@ public class SftpDynamicBridgeRegistrar {
    * @return the upload outbound channel name (e.g. "sftpUploadOutboundChannel-myServer")
    */
   private String getSftpUploadChannelName(String serverName) {
-    return "sftpUploadOutboundChannel-" + serverName;
+    return SftpUploadGateway.uploadChannelName(serverName);
   }
 
   /**
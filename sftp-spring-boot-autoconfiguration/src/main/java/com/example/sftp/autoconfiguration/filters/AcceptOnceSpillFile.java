@@ -0,0 +1,174 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A fixed-size, on-disk open-addressing table of 64-bit key fingerprints used by
+ * {@link BoundedAcceptOnceFileListFilter} to remember entries evicted from memory.
+ * <p>
+ * Each slot stores a fingerprint and the time it was last seen. Lookups read one small probe window
+ * with a single positional read, so heap usage does not depend on the number of spilled entries.
+ * When a probe window is full, the least recently seen slot in it is overwritten.
+ * </p>
+ */
+final class AcceptOnceSpillFile implements Closeable {
+
+  private static final int SLOT_BYTES = 16;
+  private static final int PROBE_SLOTS = 16;
+
+  private final FileChannel channel;
+  private final long capacity;
+  private final ByteBuffer window = ByteBuffer.allocate(SLOT_BYTES * PROBE_SLOTS);
+  private final ByteBuffer slot = ByteBuffer.allocate(SLOT_BYTES);
+
+  AcceptOnceSpillFile(Path path, long capacity) {
+    this.capacity = Math.max(capacity, PROBE_SLOTS);
+    try {
+      // The spill file is scratch space for the running process; it is recreated on startup.
+      this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Could not open accept-once spill file " + path, ex);
+    }
+  }
+
+  /**
+   * Records (or refreshes) a key.
+   *
+   * @param key    the key to record.
+   * @param seenAt the time the key was last seen, in milliseconds.
+   */
+  void put(String key, long seenAt) {
+    long fingerprint = fingerprint(key);
+    long start = startSlot(fingerprint);
+    readWindow(start);
+    int target = -1;
+    long oldest = Long.MAX_VALUE;
+    for (int i = 0; i < PROBE_SLOTS; i++) {
+      long stored = window.getLong(i * SLOT_BYTES);
+      long storedAt = window.getLong(i * SLOT_BYTES + 8);
+      if (stored == fingerprint || stored == 0L) {
+        target = i;
+        break;
+      }
+      if (storedAt < oldest) {
+        oldest = storedAt;
+        target = i;
+      }
+    }
+    writeSlot(start, target, fingerprint, seenAt);
+  }
+
+  /**
+   * Checks whether a key is recorded and not older than the given cutoff; a hit is refreshed.
+   *
+   * @param key    the key to look up.
+   * @param cutoff entries last seen before this time (in milliseconds) are treated as absent.
+   * @param now    the current time, used to refresh a hit.
+   * @return true if the key is present.
+   */
+  boolean contains(String key, long cutoff, long now) {
+    long fingerprint = fingerprint(key);
+    long start = startSlot(fingerprint);
+    readWindow(start);
+    for (int i = 0; i < PROBE_SLOTS; i++) {
+      long stored = window.getLong(i * SLOT_BYTES);
+      if (stored == 0L) {
+        return false;
+      }
+      if (stored == fingerprint) {
+        if (window.getLong(i * SLOT_BYTES + 8) < cutoff) {
+          return false;
+        }
+        writeSlot(start, i, fingerprint, now);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Forgets a key. The slot is marked as expired rather than emptied so that probing stays intact.
+   *
+   * @param key the key to forget.
+   */
+  void remove(String key) {
+    long fingerprint = fingerprint(key);
+    long start = startSlot(fingerprint);
+    readWindow(start);
+    for (int i = 0; i < PROBE_SLOTS; i++) {
+      long stored = window.getLong(i * SLOT_BYTES);
+      if (stored == 0L) {
+        return;
+      }
+      if (stored == fingerprint) {
+        writeSlot(start, i, fingerprint, Long.MIN_VALUE);
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private long startSlot(long fingerprint) {
+    return Math.floorMod(fingerprint, capacity - PROBE_SLOTS + 1);
+  }
+
+  private void readWindow(long startSlot) {
+    window.clear();
+    try {
+      long position = startSlot * SLOT_BYTES;
+      while (window.hasRemaining()) {
+        int read = channel.read(window, position + window.position());
+        if (read < 0) {
+          // Unwritten tail of the file reads as empty slots.
+          while (window.hasRemaining()) {
+            window.put((byte) 0);
+          }
+        }
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Could not read accept-once spill file", ex);
+    }
+  }
+
+  private void writeSlot(long startSlot, int offset, long fingerprint, long seenAt) {
+    slot.clear();
+    slot.putLong(fingerprint).putLong(seenAt).flip();
+    try {
+      long position = (startSlot + offset) * SLOT_BYTES;
+      while (slot.hasRemaining()) {
+        position += channel.write(slot, position);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Could not write accept-once spill file", ex);
+    }
+  }
+
+  /**
+   * 64-bit FNV-1a over the key's characters followed by a MurmurHash3 finalizer. Zero is reserved
+   * for empty slots.
+   */
+  static long fingerprint(String key) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      hash ^= key.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash == 0L ? 1L : hash;
+  }
+}
@@ -0,0 +1,49 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A local file carrying the attributes read when its directory was scanned, so that the local filters
+ * (size, age, type) can use them without another stat call per file. The attributes are a snapshot taken
+ * at scan time.
+ */
+public class AttributedFile extends File {
+
+  private final transient BasicFileAttributes attributes;
+
+  public AttributedFile(Path path, BasicFileAttributes attributes) {
+    super(path.toString());
+    this.attributes = attributes;
+  }
+
+  public BasicFileAttributes getAttributes() {
+    return attributes;
+  }
+
+  @Override
+  public long length() {
+    return attributes.size();
+  }
+
+  @Override
+  public long lastModified() {
+    return attributes.lastModifiedTime().toMillis();
+  }
+
+  @Override
+  public boolean isFile() {
+    return attributes.isRegularFile();
+  }
+
+  @Override
+  public boolean isDirectory() {
+    return attributes.isDirectory();
+  }
+
+  @Override
+  public boolean exists() {
+    return true;
+  }
+}
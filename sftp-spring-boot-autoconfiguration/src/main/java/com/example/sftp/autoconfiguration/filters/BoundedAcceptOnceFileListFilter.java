@@ -0,0 +1,140 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import org.springframework.integration.file.filters.AbstractFileListFilter;
+import org.springframework.integration.file.filters.ResettableFileListFilter;
+import org.springframework.integration.file.filters.ReversibleFileListFilter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An accept-once filter for local files whose memory footprint is bounded.
+ * <p>
+ * Keys (absolute paths) are kept in an access-ordered map: a file that is seen again is refreshed, the
+ * least recently seen entry is evicted once {@code maxEntries} is exceeded, and entries not seen for
+ * longer than {@code maxAgeMillis} are forgotten. Evicted entries can optionally be spilled to a
+ * fixed-size file so that files still present in the directory are not accepted again.
+ * </p>
+ */
+public class BoundedAcceptOnceFileListFilter extends AbstractFileListFilter<File>
+    implements ReversibleFileListFilter<File>, ResettableFileListFilter<File>, Closeable {
+
+  private final int maxEntries;
+  private final Long maxAgeMillis;
+  private final AcceptOnceSpillFile spill;
+  private final LinkedHashMap<String, Long> seen = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Creates an in-memory bounded filter.
+   *
+   * @param maxEntries   the maximum number of keys kept in memory.
+   * @param maxAgeMillis entries not seen for this long are forgotten; null disables age eviction.
+   */
+  public BoundedAcceptOnceFileListFilter(int maxEntries, Long maxAgeMillis) {
+    this(maxEntries, maxAgeMillis, null, 0L);
+  }
+
+  /**
+   * Creates a bounded filter that spills evicted entries to disk.
+   *
+   * @param maxEntries    the maximum number of keys kept in memory.
+   * @param maxAgeMillis  entries not seen for this long are forgotten; null disables age eviction.
+   * @param spillFile     the spill file, or null to disable spilling.
+   * @param spillCapacity the number of slots in the spill file.
+   */
+  public BoundedAcceptOnceFileListFilter(int maxEntries, Long maxAgeMillis, Path spillFile, long spillCapacity) {
+    this.maxEntries = Math.max(maxEntries, 1);
+    this.maxAgeMillis = maxAgeMillis;
+    this.spill = spillFile != null ? new AcceptOnceSpillFile(spillFile, spillCapacity) : null;
+  }
+
+  @Override
+  public synchronized boolean accept(File file) {
+    long now = System.currentTimeMillis();
+    String key = file.getAbsolutePath();
+    expire(now);
+    if (seen.containsKey(key)) {
+      seen.put(key, now);
+      return false;
+    }
+    if (spill != null && spill.contains(key, cutoff(now), now)) {
+      return false;
+    }
+    seen.put(key, now);
+    evictOverflow();
+    return true;
+  }
+
+  @Override
+  public void rollback(File file, List<File> files) {
+    boolean rollingBack = false;
+    for (File candidate : files) {
+      if (candidate.equals(file)) {
+        rollingBack = true;
+      }
+      if (rollingBack) {
+        remove(candidate);
+      }
+    }
+  }
+
+  @Override
+  public synchronized boolean remove(File fileToRemove) {
+    String key = fileToRemove.getAbsolutePath();
+    if (spill != null) {
+      spill.remove(key);
+    }
+    return seen.remove(key) != null;
+  }
+
+  /**
+   * Returns the number of keys currently held in memory.
+   *
+   * @return the in-memory size.
+   */
+  public synchronized int size() {
+    return seen.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (spill != null) {
+      spill.close();
+    }
+  }
+
+  private long cutoff(long now) {
+    return maxAgeMillis != null ? now - maxAgeMillis : Long.MIN_VALUE + 1;
+  }
+
+  private void expire(long now) {
+    if (maxAgeMillis == null) {
+      return;
+    }
+    long cutoff = cutoff(now);
+    Iterator<Map.Entry<String, Long>> iterator = seen.entrySet().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().getValue() >= cutoff) {
+        break;
+      }
+      iterator.remove();
+    }
+  }
+
+  private void evictOverflow() {
+    Iterator<Map.Entry<String, Long>> iterator = seen.entrySet().iterator();
+    while (seen.size() > maxEntries && iterator.hasNext()) {
+      Map.Entry<String, Long> eldest = iterator.next();
+      if (spill != null) {
+        spill.put(eldest.getKey(), eldest.getValue());
+      }
+      iterator.remove();
+    }
+  }
+}
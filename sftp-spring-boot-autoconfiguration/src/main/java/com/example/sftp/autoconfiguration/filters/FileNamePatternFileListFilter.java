@@ -0,0 +1,28 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import org.springframework.integration.file.filters.AbstractFileListFilter;
+
+import java.util.function.Function;
+
+/**
+ * A file list filter that checks file names against a compiled {@link FileNamePatternMatcher}.
+ * The same matcher type backs both the remote ({@code SftpClient.DirEntry}) and local ({@code File})
+ * filters; only the way the name is obtained differs.
+ *
+ * @param <F> the file type.
+ */
+public class FileNamePatternFileListFilter<F> extends AbstractFileListFilter<F> {
+
+  private final FileNamePatternMatcher matcher;
+  private final Function<F, String> nameExtractor;
+
+  public FileNamePatternFileListFilter(FileNamePatternMatcher matcher, Function<F, String> nameExtractor) {
+    this.matcher = matcher;
+    this.nameExtractor = nameExtractor;
+  }
+
+  @Override
+  public boolean accept(F file) {
+    return file != null && matcher.matches(nameExtractor.apply(file));
+  }
+}
@@ -0,0 +1,535 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Include/exclude file name patterns compiled once into a single matcher.
+ * <p>
+ * Each pattern is either a glob ({@code glob:*.csv}, the default when no prefix is given) or a regular
+ * expression ({@code regex:.*\.csv}). Patterns are sorted into the cheapest structure that can evaluate
+ * them:
+ * </p>
+ * <ul>
+ *   <li>exact names go into a hash set;</li>
+ *   <li>{@code prefix*} and {@code *suffix} globs (and the equivalent {@code prefix.*} / {@code .*suffix}
+ *   regexes) go into a prefix trie and a reversed suffix trie;</li>
+ *   <li>other globs are matched by a linear, non-backtracking wildcard matcher supporting {@code *},
+ *   {@code ?}, {@code [a-z]}, {@code [!a-z]} and {@code {a,b}};</li>
+ *   <li>the remaining regexes are combined into one alternation, compiled once, except those using
+ *   backreferences, named groups or inline flags, which are compiled on their own: in an alternation their
+ *   group numbers would shift and their names could clash with the other patterns.</li>
+ * </ul>
+ * <p>
+ * A name matches when it matches at least one include pattern (or no include pattern is configured) and
+ * no exclude pattern. Instances are immutable and thread-safe.
+ * </p>
+ */
+public final class FileNamePatternMatcher {
+
+  public static final String GLOB_PREFIX = "glob:";
+  public static final String REGEX_PREFIX = "regex:";
+
+  private final PatternSet includes;
+  private final PatternSet excludes;
+
+  private FileNamePatternMatcher(PatternSet includes, PatternSet excludes) {
+    this.includes = includes;
+    this.excludes = excludes;
+  }
+
+  /**
+   * Compiles include and exclude patterns into a matcher.
+   *
+   * @param includePatterns patterns a name must match (any of them); null or empty accepts every name.
+   * @param excludePatterns patterns a name must not match; may be null.
+   * @return the compiled matcher.
+   * @throws IllegalArgumentException if a pattern is malformed.
+   */
+  public static FileNamePatternMatcher compile(List<String> includePatterns, List<String> excludePatterns) {
+    return new FileNamePatternMatcher(PatternSet.compile(includePatterns), PatternSet.compile(excludePatterns));
+  }
+
+  /**
+   * Checks a file name against the compiled patterns.
+   *
+   * @param name the file name.
+   * @return true if the name is included and not excluded.
+   */
+  public boolean matches(String name) {
+    if (name == null) {
+      return false;
+    }
+    if (!includes.isEmpty() && !includes.matches(name)) {
+      return false;
+    }
+    return excludes.isEmpty() || !excludes.matches(name);
+  }
+
+  /**
+   * Returns whether neither include nor exclude patterns were configured.
+   *
+   * @return true if every name matches.
+   */
+  public boolean isEmpty() {
+    return includes.isEmpty() && excludes.isEmpty();
+  }
+
+  /**
+   * One side (include or exclude) of the matcher.
+   */
+  private static final class PatternSet {
+
+    private final Set<String> literals = new HashSet<>();
+    private final Trie prefixes = new Trie();
+    private final Trie suffixes = new Trie();
+    private final List<Glob> globs = new ArrayList<>();
+    private Pattern regex;
+    private final List<Pattern> separateRegexes = new ArrayList<>();
+    private boolean empty = true;
+
+    static PatternSet compile(List<String> patterns) {
+      PatternSet set = new PatternSet();
+      List<String> regexes = new ArrayList<>();
+      if (patterns != null) {
+        for (String pattern : patterns) {
+          if (pattern == null || pattern.isEmpty()) {
+            continue;
+          }
+          set.empty = false;
+          if (pattern.startsWith(REGEX_PREFIX)) {
+            String expression = pattern.substring(REGEX_PREFIX.length());
+            // Compiled on its own first, so that it is validated alone rather than as part of the alternation.
+            Pattern compiled = compileRegex(expression);
+            if (set.addRegexShortcut(expression)) {
+              continue;
+            }
+            if (isCombinable(expression)) {
+              regexes.add(expression);
+            } else {
+              set.separateRegexes.add(compiled);
+            }
+          } else {
+            String glob = pattern.startsWith(GLOB_PREFIX) ? pattern.substring(GLOB_PREFIX.length()) : pattern;
+            for (String expanded : expandBraces(glob)) {
+              set.addGlob(expanded);
+            }
+          }
+        }
+      }
+      if (!regexes.isEmpty()) {
+        StringBuilder alternation = new StringBuilder();
+        for (String expression : regexes) {
+          if (alternation.length() > 0) {
+            alternation.append('|');
+          }
+          alternation.append("(?:").append(expression).append(')');
+        }
+        set.regex = compileRegex(alternation.toString());
+      }
+      return set;
+    }
+
+    private static Pattern compileRegex(String expression) {
+      try {
+        return Pattern.compile(expression);
+      } catch (PatternSyntaxException ex) {
+        throw new IllegalArgumentException("Invalid file name regex: " + ex.getMessage(), ex);
+      }
+    }
+
+    /**
+     * Returns whether a regex means the same inside the combined alternation: it must not refer to groups by
+     * number or name ({@code \1}, {@code \k<name>}), name its groups ({@code (?<name>...)}) or set inline
+     * flags ({@code (?i)}, {@code (?i:...)}). Escapes, quoted sections and character classes are skipped.
+     */
+    private static boolean isCombinable(String expression) {
+      int classDepth = 0;
+      for (int i = 0; i < expression.length(); i++) {
+        char c = expression.charAt(i);
+        if (c == '\\' && i + 1 < expression.length()) {
+          char escaped = expression.charAt(++i);
+          if (escaped == 'Q') {
+            int end = expression.indexOf("\\E", i + 1);
+            i = end < 0 ? expression.length() : end + 1;
+          } else if (classDepth == 0 && ((escaped >= '1' && escaped <= '9') || escaped == 'k')) {
+            return false;
+          }
+        } else if (c == '[') {
+          classDepth++;
+        } else if (c == ']' && classDepth > 0) {
+          classDepth--;
+        } else if (c == '(' && classDepth == 0 && expression.startsWith("?", i + 1)) {
+          if (!expression.startsWith(":", i + 2) && !expression.startsWith("=", i + 2)
+              && !expression.startsWith("!", i + 2) && !expression.startsWith(">", i + 2)
+              && !expression.startsWith("<=", i + 2) && !expression.startsWith("<!", i + 2)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    boolean isEmpty() {
+      return empty;
+    }
+
+    boolean matches(String name) {
+      if (literals.contains(name) || prefixes.matchesPrefixOf(name) || suffixes.matchesSuffixOf(name)) {
+        return true;
+      }
+      for (Glob glob : globs) {
+        if (glob.matches(name)) {
+          return true;
+        }
+      }
+      if (regex != null && regex.matcher(name).matches()) {
+        return true;
+      }
+      for (Pattern separate : separateRegexes) {
+        if (separate.matcher(name).matches()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void addGlob(String glob) {
+      int stars = 0;
+      boolean otherSpecial = false;
+      for (int i = 0; i < glob.length(); i++) {
+        char c = glob.charAt(i);
+        if (c == '*') {
+          stars++;
+        } else if (c == '?' || c == '[' || c == '\\') {
+          otherSpecial = true;
+        }
+      }
+      if (!otherSpecial && stars == 0) {
+        literals.add(glob);
+      } else if (!otherSpecial && stars == 1 && glob.endsWith("*")) {
+        prefixes.add(glob.substring(0, glob.length() - 1), false);
+      } else if (!otherSpecial && stars == 1 && glob.startsWith("*")) {
+        suffixes.add(glob.substring(1), true);
+      } else {
+        globs.add(Glob.compile(glob));
+      }
+    }
+
+    /**
+     * Routes regexes that are plain literals, {@code literal.*} or {@code .*literal} to the hash set and
+     * tries instead of the regex engine.
+     */
+    private boolean addRegexShortcut(String expression) {
+      if (expression.startsWith(".*")) {
+        String literal = unescapeLiteral(expression.substring(2));
+        if (literal != null) {
+          suffixes.add(literal, true);
+          return true;
+        }
+      } else if (expression.endsWith(".*") && !expression.endsWith("\\.*")) {
+        String literal = unescapeLiteral(expression.substring(0, expression.length() - 2));
+        if (literal != null) {
+          prefixes.add(literal, false);
+          return true;
+        }
+      } else {
+        String literal = unescapeLiteral(expression);
+        if (literal != null) {
+          literals.add(literal);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static String unescapeLiteral(String expression) {
+      StringBuilder literal = new StringBuilder(expression.length());
+      for (int i = 0; i < expression.length(); i++) {
+        char c = expression.charAt(i);
+        if (c == '\\') {
+          if (i + 1 >= expression.length() || Character.isLetterOrDigit(expression.charAt(i + 1))) {
+            return null;
+          }
+          literal.append(expression.charAt(++i));
+        } else if ("^$.|?*+()[]{}".indexOf(c) >= 0) {
+          return null;
+        } else {
+          literal.append(c);
+        }
+      }
+      return literal.toString();
+    }
+  }
+
+  /**
+   * Expands {@code {a,b}} alternatives (nesting allowed) into separate globs.
+   */
+  static List<String> expandBraces(String glob) {
+    int open = -1;
+    int depth = 0;
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '{') {
+        if (depth++ == 0) {
+          open = i;
+        }
+      } else if (c == '}' && depth > 0 && --depth == 0) {
+        String head = glob.substring(0, open);
+        String tail = glob.substring(i + 1);
+        List<String> expanded = new ArrayList<>();
+        for (String alternative : splitTopLevel(glob.substring(open + 1, i))) {
+          expanded.addAll(expandBraces(head + alternative + tail));
+        }
+        return expanded;
+      }
+    }
+    if (depth != 0) {
+      throw new IllegalArgumentException("Unbalanced '{' in glob: " + glob);
+    }
+    return List.of(glob);
+  }
+
+  private static List<String> splitTopLevel(String alternatives) {
+    List<String> parts = new ArrayList<>();
+    int depth = 0;
+    int start = 0;
+    for (int i = 0; i < alternatives.length(); i++) {
+      char c = alternatives.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '{') {
+        depth++;
+      } else if (c == '}') {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        parts.add(alternatives.substring(start, i));
+        start = i + 1;
+      }
+    }
+    parts.add(alternatives.substring(start));
+    return parts;
+  }
+
+  /**
+   * A character trie that reports whether any stored key is a prefix (or, when built reversed, a suffix)
+   * of a name. Each character of the name is visited at most once.
+   */
+  private static final class Trie {
+
+    private final Node root = new Node();
+
+    void add(String key, boolean reversed) {
+      Node node = root;
+      for (int i = 0; i < key.length(); i++) {
+        node = node.childOrCreate(key.charAt(reversed ? key.length() - 1 - i : i));
+      }
+      node.terminal = true;
+    }
+
+    boolean matchesPrefixOf(String name) {
+      Node node = root;
+      for (int i = 0; node != null; i++) {
+        if (node.terminal) {
+          return true;
+        }
+        if (i == name.length()) {
+          return false;
+        }
+        node = node.child(name.charAt(i));
+      }
+      return false;
+    }
+
+    boolean matchesSuffixOf(String name) {
+      Node node = root;
+      for (int i = name.length() - 1; node != null; i--) {
+        if (node.terminal) {
+          return true;
+        }
+        if (i < 0) {
+          return false;
+        }
+        node = node.child(name.charAt(i));
+      }
+      return false;
+    }
+
+    private static final class Node {
+      private char[] labels = new char[0];
+      private Node[] children = new Node[0];
+      private boolean terminal;
+
+      Node child(char c) {
+        for (int i = 0; i < labels.length; i++) {
+          if (labels[i] == c) {
+            return children[i];
+          }
+        }
+        return null;
+      }
+
+      Node childOrCreate(char c) {
+        Node existing = child(c);
+        if (existing != null) {
+          return existing;
+        }
+        labels = Arrays.copyOf(labels, labels.length + 1);
+        children = Arrays.copyOf(children, children.length + 1);
+        labels[labels.length - 1] = c;
+        Node created = new Node();
+        children[children.length - 1] = created;
+        return created;
+      }
+    }
+  }
+
+  /**
+   * A compiled glob matched with the greedy two-pointer wildcard algorithm: on a mismatch only the most
+   * recent {@code *} is widened, so matching never backtracks exponentially.
+   */
+  private static final class Glob {
+
+    private static final byte LITERAL = 0;
+    private static final byte ANY = 1;
+    private static final byte CLASS = 2;
+    private static final byte STAR = 3;
+
+    private final byte[] kinds;
+    private final char[] chars;
+    private final CharClass[] classes;
+
+    private Glob(byte[] kinds, char[] chars, CharClass[] classes) {
+      this.kinds = kinds;
+      this.chars = chars;
+      this.classes = classes;
+    }
+
+    static Glob compile(String glob) {
+      List<Byte> kinds = new ArrayList<>();
+      StringBuilder chars = new StringBuilder();
+      List<CharClass> classes = new ArrayList<>();
+      for (int i = 0; i < glob.length(); i++) {
+        char c = glob.charAt(i);
+        CharClass charClass = null;
+        byte kind;
+        if (c == '*') {
+          // Consecutive stars are equivalent to one.
+          if (!kinds.isEmpty() && kinds.get(kinds.size() - 1) == STAR) {
+            continue;
+          }
+          kind = STAR;
+        } else if (c == '?') {
+          kind = ANY;
+        } else if (c == '[') {
+          int close = glob.indexOf(']', i + 2);
+          if (close < 0) {
+            throw new IllegalArgumentException("Unterminated '[' in glob: " + glob);
+          }
+          charClass = CharClass.parse(glob.substring(i + 1, close));
+          kind = CLASS;
+          i = close;
+        } else {
+          if (c == '\\' && i + 1 < glob.length()) {
+            c = glob.charAt(++i);
+          }
+          kind = LITERAL;
+        }
+        kinds.add(kind);
+        chars.append(c);
+        classes.add(charClass);
+      }
+      byte[] kindArray = new byte[kinds.size()];
+      for (int i = 0; i < kindArray.length; i++) {
+        kindArray[i] = kinds.get(i);
+      }
+      return new Glob(kindArray, chars.toString().toCharArray(), classes.toArray(new CharClass[0]));
+    }
+
+    boolean matches(String name) {
+      int n = 0;
+      int p = 0;
+      int starP = -1;
+      int starN = -1;
+      while (n < name.length()) {
+        if (p < kinds.length && kinds[p] == STAR) {
+          starP = p++;
+          starN = n;
+        } else if (p < kinds.length && matchesToken(p, name.charAt(n))) {
+          p++;
+          n++;
+        } else if (starP >= 0) {
+          p = starP + 1;
+          n = ++starN;
+        } else {
+          return false;
+        }
+      }
+      while (p < kinds.length && kinds[p] == STAR) {
+        p++;
+      }
+      return p == kinds.length;
+    }
+
+    private boolean matchesToken(int p, char c) {
+      switch (kinds[p]) {
+        case LITERAL:
+          return chars[p] == c;
+        case ANY:
+          return true;
+        default:
+          return classes[p].matches(c);
+      }
+    }
+  }
+
+  /**
+   * A bracket expression such as {@code [a-z0-9]} or {@code [!.]}.
+   */
+  private static final class CharClass {
+
+    private final char[] from;
+    private final char[] to;
+    private final boolean negated;
+
+    private CharClass(char[] from, char[] to, boolean negated) {
+      this.from = from;
+      this.to = to;
+      this.negated = negated;
+    }
+
+    static CharClass parse(String body) {
+      boolean negated = body.startsWith("!") || body.startsWith("^");
+      String ranges = negated ? body.substring(1) : body;
+      StringBuilder from = new StringBuilder();
+      StringBuilder to = new StringBuilder();
+      for (int i = 0; i < ranges.length(); i++) {
+        char start = ranges.charAt(i);
+        char end = start;
+        if (i + 2 < ranges.length() && ranges.charAt(i + 1) == '-') {
+          end = ranges.charAt(i + 2);
+          i += 2;
+        }
+        from.append(start);
+        to.append(end);
+      }
+      return new CharClass(from.toString().toCharArray(), to.toString().toCharArray(), negated);
+    }
+
+    boolean matches(char c) {
+      for (int i = 0; i < from.length; i++) {
+        if (c >= from[i] && c <= to[i]) {
+          return !negated;
+        }
+      }
+      return negated;
+    }
+  }
+}
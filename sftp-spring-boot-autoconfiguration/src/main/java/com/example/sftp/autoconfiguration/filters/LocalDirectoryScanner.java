@@ -0,0 +1,79 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import org.springframework.integration.file.DefaultDirectoryScanner;
+import org.springframework.integration.file.filters.FileListFilter;
+import org.springframework.messaging.MessagingException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A directory scanner for the local upload and archive directories that streams the directory with a
+ * {@link DirectoryStream} and reads the attributes of each entry once. The filters receive
+ * {@link AttributedFile}s, so size checks do not stat the file again; the accepted files are returned as
+ * plain {@link File}s so that later steps see their current size.
+ * <p>
+ * Only regular files are returned. Subdirectories are scanned as shards up to {@code shardDepth} levels
+ * deep (0 scans the directory itself only), which lets producers spread a large backlog over several
+ * smaller directories.
+ * </p>
+ */
+public class LocalDirectoryScanner extends DefaultDirectoryScanner {
+
+  private final int shardDepth;
+
+  public LocalDirectoryScanner(int shardDepth) {
+    this.shardDepth = Math.max(shardDepth, 0);
+  }
+
+  /**
+   * Returns the filter applied to the listed files: the one set, or the default accept-once filter.
+   */
+  @Override
+  public FileListFilter<File> getFilter() {
+    return super.getFilter();
+  }
+
+  @Override
+  public List<File> listFiles(File directory) throws IllegalArgumentException {
+    List<File> candidates = new ArrayList<>();
+    try {
+      collect(directory.toPath(), 0, candidates);
+    } catch (IOException ex) {
+      throw new MessagingException("Failed to scan local directory [" + directory + "]", ex);
+    }
+    FileListFilter<File> filter = getFilter();
+    List<File> accepted = filter != null ? filter.filterFiles(candidates.toArray(new File[0])) : candidates;
+    List<File> files = new ArrayList<>(accepted.size());
+    for (File file : accepted) {
+      files.add(new File(file.getPath()));
+    }
+    return files;
+  }
+
+  private void collect(Path directory, int depth, List<File> candidates) throws IOException {
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path entry : stream) {
+        BasicFileAttributes attributes;
+        try {
+          attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+          // Removed since the directory was listed.
+          continue;
+        }
+        if (attributes.isRegularFile()) {
+          candidates.add(new AttributedFile(entry, attributes));
+        } else if (attributes.isDirectory() && depth < shardDepth) {
+          collect(entry, depth + 1, candidates);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import org.springframework.integration.file.filters.AbstractFileListFilter;
+import org.springframework.integration.file.filters.FileListFilter;
+import org.springframework.integration.file.filters.ResettableFileListFilter;
+import org.springframework.integration.file.filters.ReversibleFileListFilter;
+
+import java.util.List;
+
+/**
+ * A filter for files that have already been passed through {@code delegate} (for example while the
+ * directory was being listed). Every file is accepted, while rollback and remove requests from the
+ * synchronizer are forwarded to the delegate so that failed transfers are offered again.
+ *
+ * @param <F> the file type.
+ */
+public class PreFilteredFileListFilter<F> extends AbstractFileListFilter<F>
+    implements ReversibleFileListFilter<F>, ResettableFileListFilter<F> {
+
+  private final FileListFilter<F> delegate;
+
+  public PreFilteredFileListFilter(FileListFilter<F> delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public boolean accept(F file) {
+    return file != null;
+  }
+
+  @Override
+  public void rollback(F file, List<F> files) {
+    if (delegate instanceof ReversibleFileListFilter<F> reversible) {
+      reversible.rollback(file, files);
+    }
+  }
+
+  @Override
+  public boolean remove(F fileToRemove) {
+    return delegate instanceof ResettableFileListFilter<F> resettable && resettable.remove(fileToRemove);
+  }
+}
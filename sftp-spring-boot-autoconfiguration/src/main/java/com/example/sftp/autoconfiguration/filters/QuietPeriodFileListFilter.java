@@ -0,0 +1,74 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import org.springframework.integration.file.filters.FileListFilter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A local file list filter for directories read through a watch service, holding back files that may still
+ * be written.
+ * <p>
+ * The watch service reports a file once per event, so a file that is not ready when its event is drained
+ * would never be seen again. Every reported file is therefore kept as pending until its modification time
+ * is at least {@code quietPeriodMillis} old, and the pending files are checked again on every poll, with or
+ * without new events. Quiet files are then passed to the {@code delegate}; files it rejects (e.g. still
+ * below the minimum size) are dropped, as the next write to them raises a new modify event. Deleted files
+ * are dropped as well.
+ * </p>
+ */
+public class QuietPeriodFileListFilter implements FileListFilter<File> {
+
+  private final FileListFilter<File> delegate;
+  private final long quietPeriodMillis;
+  // path -> file waiting for its quiet period, in the order the events were drained.
+  private final Map<String, File> pending = new LinkedHashMap<>();
+
+  /**
+   * Creates a quiet period filter.
+   *
+   * @param delegate          the filter applied to the files once quiet.
+   * @param quietPeriodMillis how long (in milliseconds) a file must be unmodified before it is passed on.
+   */
+  public QuietPeriodFileListFilter(FileListFilter<File> delegate, long quietPeriodMillis) {
+    this.delegate = delegate;
+    this.quietPeriodMillis = quietPeriodMillis;
+  }
+
+  @Override
+  public List<File> filterFiles(File[] files) {
+    List<File> quiet = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    synchronized (pending) {
+      for (File file : files) {
+        pending.put(file.getPath(), file);
+      }
+      Iterator<File> iterator = pending.values().iterator();
+      while (iterator.hasNext()) {
+        File file = iterator.next();
+        if (!file.isFile()) {
+          iterator.remove();
+        } else if (now - file.lastModified() >= quietPeriodMillis) {
+          iterator.remove();
+          quiet.add(file);
+        }
+      }
+    }
+    return quiet.isEmpty() ? quiet : delegate.filterFiles(quiet.toArray(new File[0]));
+  }
+
+  /**
+   * Returns the number of files waiting for their quiet period.
+   *
+   * @return the pending count.
+   */
+  public int getPendingCount() {
+    synchronized (pending) {
+      return pending.size();
+    }
+  }
+}
@@ -0,0 +1,294 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import com.example.sftp.autoconfiguration.session.CompleteListingListener;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.filters.FileListFilter;
+import org.springframework.integration.file.filters.ResettableFileListFilter;
+import org.springframework.integration.file.filters.ReversibleFileListFilter;
+import org.springframework.integration.metadata.ConcurrentMetadataStore;
+import org.springframework.util.StringUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A remote file list filter that keeps a single high-water mark per server instead of one
+ * metadata entry per file.
+ * <p>
+ * The persisted cursor holds the highest committed modification time together with the names
+ * committed at exactly that time. Listed entries newer than the cursor, or at the cursor time but not
+ * yet committed, are accepted. Accepted entries stay pending until {@link #commit(String)} is called
+ * once {@code afterDownload} has completed; the cursor never moves past a pending or reverted entry,
+ * so a failure causes redelivery rather than loss.
+ * </p>
+ * <p>
+ * An entry that never reaches {@code commit} or {@code revert} (e.g. because a local filter dropped its file)
+ * is reverted once it has been pending for longer than {@code pendingTimeout}, so that it is offered again. A
+ * reverted entry that a complete listing no longer contains (the remote file is gone) stops holding the cursor;
+ * the filter learns about complete listings as a {@link CompleteListingListener} of the directory lister.
+ * </p>
+ * <p>
+ * Every entry this filter accepts becomes pending, so it must only see the entries that the other remote
+ * filters accept: it belongs last in a {@link org.springframework.integration.file.filters.ChainFileListFilter}.
+ * </p>
+ */
+@Slf4j
+public class SftpHighWaterMarkFileListFilter implements FileListFilter<SftpClient.DirEntry>,
+    ReversibleFileListFilter<SftpClient.DirEntry>, ResettableFileListFilter<SftpClient.DirEntry>,
+    CompleteListingListener {
+
+  private static final char SEPARATOR = '/';
+  private static final Duration DEFAULT_PENDING_TIMEOUT = Duration.ofHours(1);
+
+  private final ConcurrentMetadataStore metadataStore;
+  private final String key;
+  private final long pendingTimeoutMillis;
+  private final Clock clock;
+
+  // Accepted but not yet committed entries (filename -> modified millis and acceptance time).
+  private final Map<String, Pending> pending = new HashMap<>();
+  // Entries that failed; they hold the cursor back until they are accepted again.
+  private final Map<String, Long> reverted = new HashMap<>();
+  // Commits that cannot be applied yet because an older entry is still pending or reverted.
+  private final NavigableMap<Long, Set<String>> deferred = new TreeMap<>();
+
+  private long cursorTime = Long.MIN_VALUE;
+  private Set<String> cursorNames = new TreeSet<>();
+  private boolean loaded;
+
+  /**
+   * Creates a high-water-mark filter backed by the given metadata store.
+   *
+   * @param metadataStore the store holding the cursor.
+   * @param key           the metadata key of the cursor (one per server).
+   */
+  public SftpHighWaterMarkFileListFilter(ConcurrentMetadataStore metadataStore, String key) {
+    this(metadataStore, key, DEFAULT_PENDING_TIMEOUT);
+  }
+
+  /**
+   * Creates a high-water-mark filter backed by the given metadata store.
+   *
+   * @param metadataStore  the store holding the cursor.
+   * @param key            the metadata key of the cursor (one per server).
+   * @param pendingTimeout the time after which an accepted entry that was neither committed nor reverted is
+   *                       reverted.
+   */
+  public SftpHighWaterMarkFileListFilter(ConcurrentMetadataStore metadataStore, String key, Duration pendingTimeout) {
+    this(metadataStore, key, pendingTimeout, Clock.systemUTC());
+  }
+
+  SftpHighWaterMarkFileListFilter(ConcurrentMetadataStore metadataStore, String key, Duration pendingTimeout,
+                                  Clock clock) {
+    this.metadataStore = metadataStore;
+    this.key = key;
+    this.pendingTimeoutMillis = pendingTimeout.toMillis();
+    this.clock = clock;
+  }
+
+  @Override
+  public synchronized List<SftpClient.DirEntry> filterFiles(SftpClient.DirEntry[] files) {
+    List<SftpClient.DirEntry> accepted = new ArrayList<>();
+    for (SftpClient.DirEntry file : files) {
+      if (accept(file)) {
+        accepted.add(file);
+      }
+    }
+    return accepted;
+  }
+
+  @Override
+  public boolean supportsSingleFileFiltering() {
+    return true;
+  }
+
+  @Override
+  public synchronized boolean accept(SftpClient.DirEntry file) {
+    if (file == null || file.getAttributes() == null || file.getAttributes().getModifyTime() == null) {
+      return false;
+    }
+    loadCursor();
+    expirePending();
+    String name = file.getFilename();
+    long modified = file.getAttributes().getModifyTime().toMillis();
+    if (pending.containsKey(name) || isCovered(name, modified)) {
+      return false;
+    }
+    reverted.remove(name);
+    pending.put(name, new Pending(modified, clock.millis()));
+    return true;
+  }
+
+  /**
+   * Marks an accepted entry as processed and advances the cursor as far as no older entry is still
+   * outstanding.
+   *
+   * @param filename the remote file name.
+   */
+  public synchronized void commit(String filename) {
+    Pending entry = pending.remove(filename);
+    if (entry == null) {
+      log.debug("Ignoring commit of [{}]; it is not pending in high-water mark [{}].", filename, key);
+      return;
+    }
+    deferred.computeIfAbsent(entry.modified(), m -> new TreeSet<>()).add(filename);
+    advance();
+  }
+
+  /**
+   * Marks an accepted entry as failed. The cursor is held below it until it is accepted and committed
+   * again.
+   *
+   * @param filename the remote file name.
+   */
+  public synchronized void revert(String filename) {
+    Pending entry = pending.remove(filename);
+    if (entry != null) {
+      reverted.put(filename, entry.modified());
+    }
+  }
+
+  @Override
+  public void rollback(SftpClient.DirEntry file, List<SftpClient.DirEntry> files) {
+    boolean rollingBack = false;
+    for (SftpClient.DirEntry entry : files) {
+      if (entry == file) {
+        rollingBack = true;
+      }
+      if (rollingBack) {
+        revert(entry.getFilename());
+      }
+    }
+  }
+
+  @Override
+  public boolean remove(SftpClient.DirEntry fileToRemove) {
+    revert(fileToRemove.getFilename());
+    return true;
+  }
+
+  /**
+   * Returns the reverted entries, which a complete listing should look for.
+   *
+   * @param path the remote directory.
+   * @return the names of the reverted entries.
+   */
+  @Override
+  public synchronized Set<String> listingStarted(String path) {
+    return new HashSet<>(reverted.keySet());
+  }
+
+  /**
+   * Forgets the reverted entries missing from a complete listing, so that they stop holding the cursor.
+   * Entries reverted after the listing started are not among {@code missing}, so they are kept.
+   *
+   * @param path    the remote directory.
+   * @param missing the reverted entries the listing did not contain.
+   */
+  @Override
+  public synchronized void listingCompleted(String path, Set<String> missing) {
+    if (reverted.keySet().removeAll(missing)) {
+      advance();
+    }
+  }
+
+  /**
+   * Returns the modification time (in milliseconds) of the persisted cursor.
+   *
+   * @return the cursor time, or {@link Long#MIN_VALUE} if nothing has been committed yet.
+   */
+  public synchronized long getCursorTime() {
+    loadCursor();
+    return cursorTime;
+  }
+
+  /**
+   * Reverts the entries pending for longer than the timeout, so that they are offered again.
+   */
+  private void expirePending() {
+    long expiry = clock.millis() - pendingTimeoutMillis;
+    Iterator<Map.Entry<String, Pending>> entries = pending.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<String, Pending> entry = entries.next();
+      if (entry.getValue().acceptedAt() < expiry) {
+        log.warn("Reverting [{}] in high-water mark [{}]; it was neither committed nor reverted within {} ms.",
+            entry.getKey(), key, pendingTimeoutMillis);
+        reverted.put(entry.getKey(), entry.getValue().modified());
+        entries.remove();
+      }
+    }
+  }
+
+  private boolean isCovered(String name, long modified) {
+    return modified < cursorTime || (modified == cursorTime && cursorNames.contains(name));
+  }
+
+  private void advance() {
+    long floor = Long.MAX_VALUE;
+    for (Pending entry : pending.values()) {
+      floor = Math.min(floor, entry.modified());
+    }
+    for (long modified : reverted.values()) {
+      floor = Math.min(floor, modified);
+    }
+    boolean moved = false;
+    while (!deferred.isEmpty() && deferred.firstKey() <= floor) {
+      Map.Entry<Long, Set<String>> next = deferred.pollFirstEntry();
+      if (next.getKey() > cursorTime) {
+        cursorTime = next.getKey();
+        cursorNames = new TreeSet<>(next.getValue());
+        moved = true;
+      } else if (next.getKey() == cursorTime) {
+        moved |= cursorNames.addAll(next.getValue());
+      }
+    }
+    if (moved) {
+      metadataStore.put(key, serialize());
+    }
+  }
+
+  private void loadCursor() {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    String value = metadataStore.get(key);
+    if (!StringUtils.hasText(value)) {
+      return;
+    }
+    // Filenames cannot contain '/', so it is a safe separator: "<millis>/<name>/<name>...".
+    String[] parts = StringUtils.delimitedListToStringArray(value, String.valueOf(SEPARATOR));
+    try {
+      cursorTime = Long.parseLong(parts[0]);
+      for (int i = 1; i < parts.length; i++) {
+        cursorNames.add(parts[i]);
+      }
+    } catch (NumberFormatException ex) {
+      log.warn("Ignoring malformed high-water mark [{}] stored under key [{}].", value, key);
+      cursorTime = Long.MIN_VALUE;
+      cursorNames.clear();
+    }
+  }
+
+  private record Pending(long modified, long acceptedAt) {
+  }
+
+  private String serialize() {
+    StringBuilder value = new StringBuilder().append(cursorTime);
+    for (String name : cursorNames) {
+      value.append(SEPARATOR).append(name);
+    }
+    return value.toString();
+  }
+}
@@ -0,0 +1,93 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.filters.AbstractFileListFilter;
+import org.springframework.integration.file.filters.ResettableFileListFilter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A remote file list filter that holds back files that may still be written.
+ * <p>
+ * An entry is accepted when its modification time is older than {@code minAgeMillis}, or, if the stable
+ * listing check is enabled, when its size and modification time are unchanged since the previous listing.
+ * Only the attributes already returned by the directory listing are used, so no extra {@code stat} round
+ * trips are made. Entries awaiting a second listing are kept in a small map bounded by
+ * {@code maxCandidates}; the least recently listed candidates are dropped first.
+ * </p>
+ */
+public class SftpStableFileListFilter extends AbstractFileListFilter<SftpClient.DirEntry>
+    implements ResettableFileListFilter<SftpClient.DirEntry> {
+
+  private final Long minAgeMillis;
+  private final boolean requireStableListing;
+  private final int maxCandidates;
+  // filename -> {size, modified millis}; access ordered so that the eldest entry is the least recently listed.
+  private final LinkedHashMap<String, long[]> candidates = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Creates a stability filter.
+   *
+   * @param minAgeMillis         entries whose modification time is at least this old are accepted; null disables the check.
+   * @param requireStableListing when true, younger entries are accepted once size and mtime repeat across two listings.
+   * @param maxCandidates        the maximum number of entries remembered between listings.
+   */
+  public SftpStableFileListFilter(Long minAgeMillis, boolean requireStableListing, int maxCandidates) {
+    this.minAgeMillis = minAgeMillis;
+    this.requireStableListing = requireStableListing;
+    this.maxCandidates = Math.max(maxCandidates, 1);
+  }
+
+  @Override
+  public boolean accept(SftpClient.DirEntry file) {
+    if (file == null || file.getAttributes() == null || file.getAttributes().getModifyTime() == null) {
+      return false;
+    }
+    String name = file.getFilename();
+    long size = file.getAttributes().getSize();
+    long modified = file.getAttributes().getModifyTime().toMillis();
+    if (minAgeMillis != null && System.currentTimeMillis() - modified >= minAgeMillis) {
+      forget(name);
+      return true;
+    }
+    if (!requireStableListing) {
+      return false;
+    }
+    synchronized (candidates) {
+      long[] previous = candidates.get(name);
+      if (previous != null && previous[0] == size && previous[1] == modified) {
+        candidates.remove(name);
+        return true;
+      }
+      candidates.put(name, new long[] {size, modified});
+      if (candidates.size() > maxCandidates) {
+        Map.Entry<String, long[]> eldest = candidates.entrySet().iterator().next();
+        candidates.remove(eldest.getKey());
+      }
+      return false;
+    }
+  }
+
+  @Override
+  public boolean remove(SftpClient.DirEntry fileToRemove) {
+    return forget(fileToRemove.getFilename());
+  }
+
+  /**
+   * Returns the number of entries waiting for a second listing.
+   *
+   * @return the candidate count.
+   */
+  public int getCandidateCount() {
+    synchronized (candidates) {
+      return candidates.size();
+    }
+  }
+
+  private boolean forget(String name) {
+    synchronized (candidates) {
+      return candidates.remove(name) != null;
+    }
+  }
+}
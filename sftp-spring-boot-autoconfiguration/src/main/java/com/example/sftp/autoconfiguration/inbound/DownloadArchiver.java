@@ -0,0 +1,59 @@
+package com.example.sftp.autoconfiguration.inbound;
+
+import com.example.sftp.autoconfiguration.outbound.ArchivePathTemplate;
+import com.example.sftp.autoconfiguration.transformers.ArchivePrePostProcessorTransformer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+/**
+ * Archives remote files right after they have been downloaded and processed, by renaming them from the
+ * remote 'from' directory to their archive path. The beforeArchive and afterArchive callbacks run
+ * around the rename. The session comes from the server's pool, so it is normally the warm session the file
+ * was just fetched with.
+ */
+@Slf4j
+public class DownloadArchiver implements Consumer<String> {
+
+  private final SessionFactory<SftpClient.DirEntry> sessionFactory;
+  private final String from;
+  private final ArchivePathTemplate archivePath;
+  private final ArchivePrePostProcessorTransformer preTransformer;
+  private final ArchivePrePostProcessorTransformer postTransformer;
+
+  public DownloadArchiver(SessionFactory<SftpClient.DirEntry> sessionFactory,
+                          String from,
+                          ArchivePathTemplate archivePath,
+                          ArchivePrePostProcessorTransformer preTransformer,
+                          ArchivePrePostProcessorTransformer postTransformer) {
+    this.sessionFactory = sessionFactory;
+    this.from = from;
+    this.archivePath = archivePath;
+    this.preTransformer = preTransformer;
+    this.postTransformer = postTransformer;
+  }
+
+  /**
+   * Archives the remote file with the given path relative to 'from'.
+   */
+  @Override
+  public void accept(String remoteName) {
+    String remotePath = from.endsWith("/") ? from + remoteName : from + "/" + remoteName;
+    String fileName = remoteName.substring(remoteName.lastIndexOf('/') + 1);
+    String target = archivePath.render(fileName, LocalDate.now());
+    preTransformer.transform(remotePath);
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      session.rename(remotePath, target);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to archive " + remotePath + " to " + target, ex);
+    }
+    postTransformer.transform(remotePath);
+    log.debug("Archived downloaded file [{}] to [{}].", remotePath, target);
+  }
+}
@@ -0,0 +1,123 @@
+package com.example.sftp.autoconfiguration.inbound;
+
+import com.example.sftp.autoconfiguration.session.PipelinedSftpOperations;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Deletes remote files once they have been downloaded and processed, off the download thread.
+ * <p>
+ * Each accepted path (relative to 'from') is queued; the queue is removed as one batch of pipelined remove
+ * requests on a pooled session by the scheduler, as soon as {@code batchSize} paths are pending or
+ * {@code windowMillis} after the first one. A path is only accepted after its local file was written and
+ * afterDownload committed, so a crash before the batch runs leaves the file on the server, to be downloaded
+ * again: delivery stays at least once. Failed removals are logged and left for the next download.
+ * </p>
+ */
+@Slf4j
+public class DownloadRemover implements Consumer<String> {
+
+  private final SessionFactory<SftpClient.DirEntry> sessionFactory;
+  private final String from;
+  private final int batchSize;
+  private final long windowMillis;
+  private final TaskScheduler scheduler;
+  private List<String> pending = new ArrayList<>();
+
+  /**
+   * Creates a batching remover.
+   *
+   * @param sessionFactory the factory providing the session of each batch.
+   * @param from           the remote directory the paths are relative to.
+   * @param batchSize      the number of paths that triggers a batch.
+   * @param windowMillis   the maximum time a path waits for its batch to fill.
+   * @param scheduler      the scheduler running the batches.
+   */
+  public DownloadRemover(SessionFactory<SftpClient.DirEntry> sessionFactory,
+                         String from,
+                         int batchSize,
+                         long windowMillis,
+                         TaskScheduler scheduler) {
+    this.sessionFactory = sessionFactory;
+    this.from = from;
+    this.batchSize = batchSize;
+    this.windowMillis = windowMillis;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Queues the removal of the remote file with the given path relative to 'from'.
+   */
+  @Override
+  public void accept(String remoteName) {
+    String remotePath = from.endsWith("/") ? from + remoteName : from + "/" + remoteName;
+    synchronized (this) {
+      pending.add(remotePath);
+      if (pending.size() >= batchSize) {
+        List<String> batch = takePending();
+        scheduler.schedule(() -> remove(batch), Instant.now());
+      } else if (pending.size() == 1) {
+        List<String> window = pending;
+        scheduler.schedule(() -> flushWindow(window), Instant.now().plus(Duration.ofMillis(windowMillis)));
+      }
+    }
+  }
+
+  /**
+   * Removes the paths still pending on the calling thread, without waiting for their window to elapse.
+   */
+  public void flush() {
+    List<String> batch;
+    synchronized (this) {
+      batch = takePending();
+    }
+    if (!batch.isEmpty()) {
+      remove(batch);
+    }
+  }
+
+  private void flushWindow(List<String> window) {
+    List<String> batch = null;
+    synchronized (this) {
+      // The batch may already have been sent because it filled up.
+      if (pending == window && !pending.isEmpty()) {
+        batch = takePending();
+      }
+    }
+    if (batch != null) {
+      remove(batch);
+    }
+  }
+
+  private List<String> takePending() {
+    List<String> batch = pending;
+    pending = new ArrayList<>();
+    return batch;
+  }
+
+  private void remove(List<String> batch) {
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      Exception[] failures = new PipelinedSftpOperations(session).remove(batch);
+      int removed = 0;
+      for (int i = 0; i < failures.length; i++) {
+        if (failures[i] == null) {
+          removed++;
+        } else {
+          log.warn("Failed to delete downloaded file [{}]: {}", batch.get(i), failures[i].getMessage());
+        }
+      }
+      log.debug("Deleted {} of {} downloaded files.", removed, batch.size());
+    } catch (Exception ex) {
+      log.error("Failed to delete a batch of {} downloaded files: {}", batch.size(), ex.getMessage(), ex);
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package com.example.sftp.autoconfiguration.inbound;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.sftp.inbound.SftpInboundFileSynchronizer;
+import org.springframework.lang.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * An inbound synchronizer that downloads each remote file into a partial file below {@code partDirectory} and
+ * renames it into the local directory once complete. If a download fails, the partial file is kept together
+ * with a small sidecar recording the remote size and modification time; the next attempt continues from the
+ * end of the partial file as long as the remote file is unchanged, and starts over otherwise.
+ * <p>
+ * The partial file is written only once: keep {@code partDirectory} on the file system of the local
+ * directory so that the final move is a rename. Resumed downloads and the bytes they did not have to
+ * transfer again are counted in the {@code sftp.download.resumed} and {@code sftp.download.resumed.bytes}
+ * meters, tagged with the server. Files that already exist locally, and sessions without an SFTP client, are
+ * handled by {@link SftpInboundFileSynchronizer}. Remote files are never deleted by this synchronizer.
+ * </p>
+ */
+@Slf4j
+public class ResumableInboundFileSynchronizer extends SftpInboundFileSynchronizer {
+
+  static final String PART_SUFFIX = ".part";
+  static final String SIDECAR_SUFFIX = ".part.meta";
+
+  private final File partDirectory;
+  private final Counter resumedDownloads;
+  private final Counter resumedBytes;
+  private boolean preserveTimestamp;
+
+  /**
+   * Creates a resumable synchronizer.
+   *
+   * @param sessionFactory the factory providing the sessions.
+   * @param partDirectory  the local directory holding partial downloads; created if missing.
+   * @param meterRegistry  the registry for the resume meters, or null to use the global registry.
+   * @param serverName     the server name used as meter tag.
+   */
+  public ResumableInboundFileSynchronizer(SessionFactory<SftpClient.DirEntry> sessionFactory, File partDirectory,
+                                          MeterRegistry meterRegistry, String serverName) {
+    super(sessionFactory);
+    this.partDirectory = partDirectory;
+    MeterRegistry registry = meterRegistry != null ? meterRegistry : Metrics.globalRegistry;
+    this.resumedDownloads = Counter.builder("sftp.download.resumed")
+        .description("Downloads continued from a partial local file")
+        .tag("server", serverName)
+        .register(registry);
+    this.resumedBytes = Counter.builder("sftp.download.resumed.bytes")
+        .description("Bytes not transferred again thanks to resumed downloads")
+        .baseUnit("bytes")
+        .tag("server", serverName)
+        .register(registry);
+  }
+
+  @Override
+  public void setPreserveTimestamp(boolean preserveTimestamp) {
+    super.setPreserveTimestamp(preserveTimestamp);
+    this.preserveTimestamp = preserveTimestamp;
+  }
+
+  @Override
+  public void setDeleteRemoteFiles(boolean deleteRemoteFiles) {
+    if (deleteRemoteFiles) {
+      throw new IllegalArgumentException("Resumable downloads do not delete remote files");
+    }
+    super.setDeleteRemoteFiles(false);
+  }
+
+  @Override
+  protected boolean copyFileToLocalDirectory(String remoteDirectoryPath, @Nullable EvaluationContext evaluationContext,
+                                             SftpClient.DirEntry remoteFile, File localDirectory,
+                                             Session<SftpClient.DirEntry> session) throws IOException {
+    String remoteFileName = getFilename(remoteFile);
+    File localFile = new File(localDirectory, remoteFileName);
+    if (!(session.getClientInstance() instanceof SftpClient client) || !isFile(remoteFile) || localFile.exists()) {
+      return super.copyFileToLocalDirectory(remoteDirectoryPath, evaluationContext, remoteFile, localDirectory, session);
+    }
+    String remoteFilePath = remoteDirectoryPath != null ? remoteDirectoryPath + "/" + remoteFileName : remoteFileName;
+    File partFile = partFile(remoteFilePath);
+    download(client, remoteFilePath, partFile);
+
+    Files.createDirectories(localFile.getParentFile().toPath());
+    Files.move(partFile.toPath(), localFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    Files.deleteIfExists(sidecarFile(partFile).toPath());
+    if (preserveTimestamp && !localFile.setLastModified(getModified(remoteFile))) {
+      throw new IllegalStateException("Could not set lastModified on file: " + localFile);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the partial file used for the given remote path.
+   */
+  File partFile(String source) {
+    String name = source.substring(source.lastIndexOf('/') + 1);
+    String key = UUID.nameUUIDFromBytes(source.getBytes(StandardCharsets.UTF_8)).toString();
+    return new File(partDirectory, name + "-" + key + PART_SUFFIX);
+  }
+
+  private static File sidecarFile(File partFile) {
+    String path = partFile.getPath();
+    return new File(path.substring(0, path.length() - PART_SUFFIX.length()) + SIDECAR_SUFFIX);
+  }
+
+  /**
+   * Downloads a remote file into its partial file, continuing a previous attempt if possible.
+   */
+  void download(SftpClient client, String source, File partFile) throws IOException {
+    SftpClient.Attributes attributes = client.stat(source);
+    long modified = attributes.getModifyTime() != null ? attributes.getModifyTime().toMillis() : 0L;
+    String fingerprint = attributes.getSize() + ":" + modified;
+    File sidecar = sidecarFile(partFile);
+    long offset = resumeOffset(partFile, sidecar, fingerprint, attributes.getSize());
+    if (offset == 0) {
+      Files.createDirectories(partDirectory.toPath());
+      Files.writeString(sidecar.toPath(), fingerprint);
+    } else {
+      resumedDownloads.increment();
+      resumedBytes.increment(offset);
+      log.info("Resuming download of [{}] at byte {} of {}.", source, offset, attributes.getSize());
+    }
+
+    try (InputStream in = client.read(source);
+         OutputStream out = new FileOutputStream(partFile, offset > 0)) {
+      skipFully(in, offset);
+      in.transferTo(out);
+    }
+  }
+
+  /**
+   * Returns the length of a partial file that can be continued, or 0 after discarding a partial file
+   * whose remote file has changed since it was started.
+   */
+  private long resumeOffset(File partFile, File sidecar, String fingerprint, long remoteSize) throws IOException {
+    if (!partFile.isFile() || !sidecar.isFile()) {
+      return 0;
+    }
+    long length = partFile.length();
+    if (fingerprint.equals(Files.readString(sidecar.toPath())) && length <= remoteSize) {
+      return length;
+    }
+    log.info("Remote file changed since partial download {} was started; starting over.", partFile);
+    Files.deleteIfExists(partFile.toPath());
+    return 0;
+  }
+
+  private static void skipFully(InputStream in, long bytes) throws IOException {
+    long remaining = bytes;
+    while (remaining > 0) {
+      long skipped = in.skip(remaining);
+      if (skipped <= 0) {
+        throw new IOException("Remote file ended before the resume offset " + bytes);
+      }
+      remaining -= skipped;
+    }
+  }
+}
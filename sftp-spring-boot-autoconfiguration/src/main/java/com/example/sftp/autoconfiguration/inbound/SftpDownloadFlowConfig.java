@@ -5,25 +5,58 @@ import com.example.sftp.autoconfiguration.SftpFileProcessor;
 import com.example.sftp.autoconfiguration.SftpProperties;
 import com.example.sftp.autoconfiguration.SftpProperties.SftpServerConfig;
 import com.example.sftp.autoconfiguration.SftpSessionFactoryProvider;
+import com.example.sftp.autoconfiguration.filters.PreFilteredFileListFilter;
+import com.example.sftp.autoconfiguration.filters.SftpHighWaterMarkFileListFilter;
+import com.example.sftp.autoconfiguration.outbound.ArchivePathTemplate;
+import com.example.sftp.autoconfiguration.session.ArchiveTimeSessionFactory;
+import com.example.sftp.autoconfiguration.session.CachingDirectoryLister;
+import com.example.sftp.autoconfiguration.session.CompleteListingListener;
+import com.example.sftp.autoconfiguration.session.CompleteListingLister;
+import com.example.sftp.autoconfiguration.session.ListingSessionFactory;
+import com.example.sftp.autoconfiguration.session.PosixRenameSessionFactory;
+import com.example.sftp.autoconfiguration.session.RecursiveDirectoryLister;
+import com.example.sftp.autoconfiguration.session.RemoteDirectoryLister;
+import com.example.sftp.autoconfiguration.session.StreamingDirectoryLister;
+import com.example.sftp.autoconfiguration.transformers.ArchivePrePostProcessorTransformer;
 import com.example.sftp.autoconfiguration.transformers.DownloadPostProcessorTransformer;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.ApplicationContext;
 import org.springframework.integration.dsl.IntegrationFlow;
 import org.springframework.integration.dsl.context.IntegrationFlowContext;
+import org.springframework.integration.file.RecursiveDirectoryScanner;
+import org.springframework.integration.file.filters.AbstractFileListFilter;
 import org.springframework.integration.file.filters.CompositeFileListFilter;
+import org.springframework.integration.file.filters.FileListFilter;
+import org.springframework.integration.file.filters.FileSystemPersistentAcceptOnceFileListFilter;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
 import org.springframework.integration.handler.advice.ExpressionEvaluatingRequestHandlerAdvice;
+import org.springframework.integration.metadata.SimpleMetadataStore;
 import org.springframework.integration.scheduling.PollerMetadata;
-import org.springframework.integration.sftp.dsl.Sftp;
+import org.springframework.integration.sftp.inbound.SftpInboundFileSynchronizer;
+import org.springframework.integration.sftp.inbound.SftpInboundFileSynchronizingMessageSource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import java.io.File;
-import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 @Slf4j
 public class SftpDownloadFlowConfig extends AbstractSftpFlowConfig {
 
+  private static final long DEFAULT_LISTING_CACHE_MAX_AGE = 300_000L;
+  private static final int DEFAULT_RECURSIVE_MAX_DEPTH = 10;
+  private static final String PARTIAL_DIRECTORY_SUFFIX = ".partial";
+  private static final int DEFAULT_DELETE_BATCH_SIZE = 100;
+  private static final long DEFAULT_DELETE_BATCH_WINDOW = 200L;
+
   private final SftpProperties sftpProperties;
   private final SftpSessionFactoryProvider factoryProvider;
   private final ExpressionEvaluatingRequestHandlerAdvice errorHandlingAdvice;
@@ -51,45 +84,294 @@ public class SftpDownloadFlowConfig extends AbstractSftpFlowConfig {
     String serverName = serverConfig.getName();
     var factory = factoryProvider.getFactory(serverName);
     SftpFileProcessor fileProcessor = obtainProcessor(serverConfig);
+    // 'from' and every source share the server's session pool and one executor. With several sources each
+    // flow keeps at most one poll in the executor's queue, so the directories are polled in turn.
+    Executor taskExecutor = buildTaskExecutor();
+    boolean shared = !CollectionUtils.isEmpty(serverConfig.getSources());
 
-    // Determine local download directory using the helper
-    File localDownloadDirectory = determineLocalDirectory(serverConfig.getLocalDownloadDir(), sftpProperties.getLocalDownloadDir(), "download", serverName);
+    if (StringUtils.hasText(serverConfig.getFrom())) {
+      File localDownloadDirectory = determineLocalDirectory(serverConfig.getLocalDownloadDir(), sftpProperties.getLocalDownloadDir(), "download", serverName);
+      registerDownloadFlow(serverConfig, factory, fileProcessor,
+          shared ? new SourcePollExecutor(taskExecutor, serverName) : taskExecutor, localDownloadDirectory);
+    } else if (CollectionUtils.isEmpty(serverConfig.getSources())) {
+      log.info("No 'from' directory configured for server {}. Skipping download flow registration.", serverName);
+    }
+    if (serverConfig.getSources() != null) {
+      for (SftpProperties.SourceDirectory source : serverConfig.getSources()) {
+        SftpServerConfig sourceConfig = createSourceConfig(source);
+        File localDownloadDirectory = determineLocalDirectory(
+            StringUtils.hasText(serverConfig.getLocalDownloadDir()) ? serverConfig.getLocalDownloadDir() + "-" + source.getName() : null,
+            sftpProperties.getLocalDownloadDir(), "download", sourceConfig.getName());
+        registerDownloadFlow(sourceConfig, factory, fileProcessor,
+            new SourcePollExecutor(taskExecutor, sourceConfig.getName()), localDownloadDirectory);
+      }
+    }
+  }
+
+  /**
+   * Derives the configuration of one source directory from the server's configuration. The source is
+   * registered under the name "&lt;server&gt;-&lt;source&gt;", which keeps its flow id and metadata store keys
+   * apart from those of 'from' and the other sources.
+   */
+  private SftpServerConfig createSourceConfig(SftpProperties.SourceDirectory source) {
+    if (!StringUtils.hasText(source.getName()) || !StringUtils.hasText(source.getPath())) {
+      throw new IllegalArgumentException("Every source of server " + serverConfig.getName() + " needs a name and a path");
+    }
+    return serverConfig.toBuilder()
+        .name(serverConfig.getName() + "-" + source.getName())
+        .from(source.getPath())
+        .sources(null)
+        .filePattern(source.getFilePattern() != null ? source.getFilePattern() : serverConfig.getFilePattern())
+        .includePatterns(source.getIncludePatterns() != null ? source.getIncludePatterns() : serverConfig.getIncludePatterns())
+        .excludePatterns(source.getExcludePatterns() != null ? source.getExcludePatterns() : serverConfig.getExcludePatterns())
+        .minFileSize(source.getMinFileSize() != null ? source.getMinFileSize() : serverConfig.getMinFileSize())
+        .maxFileSize(source.getMaxFileSize() != null ? source.getMaxFileSize() : serverConfig.getMaxFileSize())
+        .minFileAge(source.getMinFileAge() != null ? source.getMinFileAge() : serverConfig.getMinFileAge())
+        .maxFetchSize(source.getMaxFetchSize() != null ? source.getMaxFetchSize() : serverConfig.getMaxFetchSize())
+        .poller(source.getPoller() != null ? source.getPoller() : serverConfig.getPoller())
+        .build();
+  }
+
+  private void registerDownloadFlow(SftpServerConfig config,
+                                    SessionFactory<SftpClient.DirEntry> factory,
+                                    SftpFileProcessor fileProcessor,
+                                    Executor taskExecutor,
+                                    File localDownloadDirectory) {
+    String serverName = serverConfig.getName();
 
     PollerMetadata pollerMetadata = buildPollerMetadata(
-        serverConfig.getPoller() != null ? serverConfig.getPoller() : sftpProperties.getDefaultPoller(),
+        config.getPoller() != null ? config.getPoller() : sftpProperties.getDefaultPoller(),
         errorHandlingAdvice);
-    pollerMetadata.setTaskExecutor(buildTaskExecutor());
+    pollerMetadata.setTaskExecutor(taskExecutor);
 
     SftpProperties.RetryProperties effectiveRetry =
-        serverConfig.getRetry() != null ? serverConfig.getRetry() : sftpProperties.getDefaultRetry();
+        config.getRetry() != null ? config.getRetry() : sftpProperties.getDefaultRetry();
 
-    if (StringUtils.hasText(serverConfig.getFrom())) {
-      var inboundAdapterBuilder = Sftp.inboundAdapter(factory)
-          .preserveTimestamp(true)
-          .remoteDirectory(serverConfig.getFrom())
-          .localDirectory(localDownloadDirectory)
-          .autoCreateLocalDirectory(true)
-          .deleteRemoteFiles(!Objects.isNull(serverConfig.getDeleteAfterDownload()) && serverConfig.getDeleteAfterDownload());
-
-      CompositeFileListFilter<SftpClient.DirEntry> compositeFilter = createRemoteCompositeFilter(serverConfig);
-      if (compositeFilter != null) {
-        inboundAdapterBuilder.filter(compositeFilter);
+    FileListFilter<SftpClient.DirEntry> acceptOnceFilter = createRemoteAcceptOnceFilter(config);
+    CompositeFileListFilter<SftpClient.DirEntry> compositeFilter = createRemoteCompositeFilter(config, acceptOnceFilter);
+    boolean recursive = Boolean.TRUE.equals(config.getRecursive());
+    boolean streaming = Boolean.TRUE.equals(config.getStreamingListing()) && !recursive;
+
+    // The high-water mark forgets failed files once a complete listing shows they are gone.
+    CompleteListingListener listingListener = acceptOnceFilter instanceof SftpHighWaterMarkFileListFilter highWaterMark
+        ? highWaterMark : null;
+    SessionFactory<SftpClient.DirEntry> downloadSessionFactory =
+        createDownloadSessionFactory(config, factory, compositeFilter, listingListener);
+    SftpInboundFileSynchronizer synchronizer;
+    if (Boolean.TRUE.equals(config.getResumableDownload())) {
+      // Partial files live next to the local directory so that the local scanner never picks them up, and
+      // on the same file system so that a completed partial file is renamed into place.
+      File partDirectory = new File(localDownloadDirectory.getAbsolutePath() + PARTIAL_DIRECTORY_SUFFIX);
+      synchronizer = new ResumableInboundFileSynchronizer(downloadSessionFactory, partDirectory, findMeterRegistry(), config.getName());
+    } else {
+      synchronizer = new SftpInboundFileSynchronizer(downloadSessionFactory);
+    }
+    synchronizer.setRemoteDirectory(config.getFrom());
+    synchronizer.setPreserveTimestamp(true);
+    // Remote files are deleted by a batched stage after processing rather than during synchronization.
+    synchronizer.setDeleteRemoteFiles(false);
+    if (compositeFilter != null) {
+      // A streaming listing has already filtered the entries; the synchronizer only needs rollback on failures.
+      synchronizer.setFilter(streaming ? new PreFilteredFileListFilter<>(compositeFilter) : compositeFilter);
+    }
+    synchronizer.setBeanFactory(applicationContext);
+
+    boolean archiveOnDownload = isArchiveOnDownload(config);
+    SftpInboundFileSynchronizingMessageSource messageSource = new SftpInboundFileSynchronizingMessageSource(synchronizer);
+    messageSource.setLocalDirectory(localDownloadDirectory);
+    messageSource.setAutoCreateLocalDirectory(true);
+    if (config.getMaxFetchSize() != null) {
+      messageSource.setMaxFetchSize(config.getMaxFetchSize());
+    }
+    if (recursive) {
+      // Files are synchronized into sub-directories, so the local side has to be scanned recursively too.
+      RecursiveDirectoryScanner scanner = new RecursiveDirectoryScanner();
+      scanner.setMaxDepth(effectiveMaxDepth(config) + 1);
+      CompositeFileListFilter<File> localFilter = new CompositeFileListFilter<>();
+      localFilter.addFilter(new AbstractFileListFilter<>() {
+        @Override
+        public boolean accept(File file) {
+          return file.isFile();
+        }
+      });
+      localFilter.addFilter(new FileSystemPersistentAcceptOnceFileListFilter(new SimpleMetadataStore(), "sftpLocal-" + config.getName() + "-"));
+      messageSource.setScanner(scanner);
+      messageSource.setLocalFilter(localFilter);
+    }
+
+    String flowId = "sftpDownloadFlow-" + config.getName();
+    log.info("Registering SFTP download flow [{}] for server [{}].", flowId, serverName);
+
+    DownloadPostProcessorTransformer transformer =
+        new DownloadPostProcessorTransformer(fileProcessor, serverName, effectiveRetry);
+    SessionFactory<SftpClient.DirEntry> archiveFactory = new PosixRenameSessionFactory(factory, serverName);
+    if (config.getArchiveRetention() != null) {
+      // Archive retention ages plain archive files from their modification time, which a rename keeps.
+      archiveFactory = new ArchiveTimeSessionFactory(archiveFactory);
+    }
+    Consumer<String> remoteDisposal = archiveOnDownload
+        ? new DownloadArchiver(archiveFactory, config.getFrom(), ArchivePathTemplate.compile(
+            StringUtils.hasText(config.getArchivePathTemplate()) ? config.getArchivePathTemplate() : config.getArchive(), serverName),
+            new ArchivePrePostProcessorTransformer(fileProcessor, serverName, true, effectiveRetry),
+            new ArchivePrePostProcessorTransformer(fileProcessor, serverName, false, effectiveRetry))
+        : createDownloadRemover(config, factory);
+
+    IntegrationFlow downloadFlow = IntegrationFlow.from(messageSource, c -> c.poller(pollerMetadata))
+        .enrichHeaders(h -> h.header("sftpFlowId", flowId))
+        .transform(File.class, file -> processDownloadedFile(file, localDownloadDirectory, transformer, acceptOnceFilter, remoteDisposal))
+        .get();
+    registerFlow(flowId, downloadFlow);
+  }
+
+  /**
+   * Wraps the server's session factory so that listings of the remote directory go through the
+   * configured {@link RemoteDirectoryLister}; returns the factory unchanged when no listing option
+   * or listener is set.
+   * <ul>
+   *   <li>A recursive listing walks the tree, listing each directory through the listing cache if enabled.</li>
+   *   <li>A streaming listing applies the remote filter itself and takes precedence over the listing cache,
+   *   which could only cache the filtered subset. It is not combined with a recursive listing.</li>
+   * </ul>
+   * The listing cache is not used with {@code minFileAge} or {@code stableListingCheck}: appending to a file
+   * does not change its directory, so a reused listing would hold stale sizes and modification times.
+   * When a {@code listingListener} is given, every listing that read the whole directory is reported to it.
+   */
+  SessionFactory<SftpClient.DirEntry> createDownloadSessionFactory(SftpServerConfig config,
+                                                                  SessionFactory<SftpClient.DirEntry> factory,
+                                                                  FileListFilter<SftpClient.DirEntry> remoteFilter,
+                                                                  CompleteListingListener listingListener) {
+    boolean listingCache = Boolean.TRUE.equals(config.getListingCache());
+    if (listingCache && (config.getMinFileAge() != null || Boolean.TRUE.equals(config.getStableListingCheck()))) {
+      log.warn("Listing cache is ignored for server [{}] because minFileAge or stableListingCheck needs fresh file attributes.",
+          config.getName());
+      listingCache = false;
+    }
+    if (Boolean.TRUE.equals(config.getRecursive())) {
+      if (Boolean.TRUE.equals(config.getStreamingListing())) {
+        log.warn("Streaming listing is ignored for server [{}] because recursive download is enabled.", config.getName());
+      }
+      RemoteDirectoryLister directoryLister = listingCache
+          ? new CachingDirectoryLister(Session::list, effectiveListingCacheMaxAge(config)) : Session::list;
+      // The synchronizer holds one pooled session while listing, so only the rest of the pool can be used concurrently.
+      int parallelism = config.getCacheSize() - 1;
+      Executor listingExecutor = parallelism > 1 ? buildListingExecutor(config, parallelism) : null;
+      return new ListingSessionFactory(factory, reportCompleteListings(
+          new RecursiveDirectoryLister(directoryLister, factory, listingExecutor, effectiveMaxDepth(config)), listingListener));
+    }
+    if (Boolean.TRUE.equals(config.getStreamingListing())) {
+      if (listingCache) {
+        log.warn("Listing cache is ignored for server [{}] because streaming listing is enabled.", config.getName());
       }
+      int maxFetchSize = config.getMaxFetchSize() != null ? config.getMaxFetchSize() : Integer.MAX_VALUE;
+      return new ListingSessionFactory(factory, new StreamingDirectoryLister(remoteFilter, maxFetchSize, listingListener));
+    }
+    if (!listingCache) {
+      return listingListener != null ? new ListingSessionFactory(factory, reportCompleteListings(Session::list, listingListener)) : factory;
+    }
+    return new ListingSessionFactory(factory, reportCompleteListings(
+        new CachingDirectoryLister(Session::list, effectiveListingCacheMaxAge(config)), listingListener));
+  }
 
-      String flowId = "sftpDownloadFlow-" + serverName;
-      log.info("Registering SFTP download flow [{}] for server [{}].", flowId, serverName);
+  private static RemoteDirectoryLister reportCompleteListings(RemoteDirectoryLister lister, CompleteListingListener listingListener) {
+    return listingListener != null ? new CompleteListingLister(lister, listingListener) : lister;
+  }
 
-      DownloadPostProcessorTransformer transformer =
-          new DownloadPostProcessorTransformer(fileProcessor, serverName, effectiveRetry);
+  private long effectiveListingCacheMaxAge(SftpServerConfig config) {
+    return config.getListingCacheMaxAge() != null
+        ? config.getListingCacheMaxAge() : DEFAULT_LISTING_CACHE_MAX_AGE;
+  }
+
+  private int effectiveMaxDepth(SftpServerConfig config) {
+    return config.getRecursiveMaxDepth() != null ? config.getRecursiveMaxDepth() : DEFAULT_RECURSIVE_MAX_DEPTH;
+  }
 
-      IntegrationFlow downloadFlow = IntegrationFlow.from(inboundAdapterBuilder,
-              c -> c.poller(pollerMetadata))
-          .enrichHeaders(h -> h.header("sftpFlowId", flowId))
-          .transform(File.class, file -> executeInTransaction(file, transformer::transform, transactionManager))
-          .get();
-      registerFlow(flowId, downloadFlow);
+  /**
+   * Returns the application's meter registry, or null when metrics are not configured.
+   */
+  private MeterRegistry findMeterRegistry() {
+    ObjectProvider<MeterRegistry> provider = applicationContext.getBeanProvider(MeterRegistry.class);
+    return provider != null ? provider.getIfAvailable() : null;
+  }
+
+  /**
+   * Builds the executor used to list the sub-directories of one level concurrently.
+   */
+  private Executor buildListingExecutor(SftpServerConfig config, int parallelism) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(parallelism);
+    executor.setMaxPoolSize(parallelism);
+    executor.setAllowCoreThreadTimeOut(true);
+    executor.setDaemon(true);
+    executor.setThreadNamePrefix("SftpList-" + config.getName() + "-");
+    executor.initialize();
+    return executor;
+  }
+
+  /**
+   * Creates the stage deleting remote files in batches once they have been processed, or returns null if
+   * deleting after download is disabled.
+   */
+  private DownloadRemover createDownloadRemover(SftpServerConfig config, SessionFactory<SftpClient.DirEntry> factory) {
+    if (!Boolean.TRUE.equals(config.getDeleteAfterDownload())) {
+      return null;
+    }
+    int batchSize = config.getDeleteBatchSize() != null ? config.getDeleteBatchSize() : DEFAULT_DELETE_BATCH_SIZE;
+    long window = config.getDeleteBatchWindow() != null ? config.getDeleteBatchWindow() : DEFAULT_DELETE_BATCH_WINDOW;
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(1);
+    scheduler.setDaemon(true);
+    scheduler.setThreadNamePrefix("SftpDelete-" + config.getName() + "-");
+    scheduler.initialize();
+    log.info("Deleting downloaded files of [{}] in batches of up to {} paths every {} ms.", config.getName(), batchSize, window);
+    return new DownloadRemover(factory, config.getFrom(), batchSize, window, scheduler);
+  }
+
+  /**
+   * Returns true if downloaded files are archived on the server as soon as they are processed. Deleting remote
+   * files after download is then disabled, since the archive rename needs them.
+   */
+  private boolean isArchiveOnDownload(SftpServerConfig config) {
+    if (!Boolean.TRUE.equals(config.getArchiveOnDownload())) {
+      return false;
+    }
+    if (!StringUtils.hasText(config.getArchive())) {
+      log.warn("Archive on download is ignored for server [{}] because no archive directory is configured.", config.getName());
+      return false;
+    }
+    if (Boolean.TRUE.equals(config.getDeleteAfterDownload())) {
+      log.warn("Delete after download is ignored for server [{}] because archive on download is enabled.", config.getName());
+    }
+    return true;
+  }
+
+  /**
+   * Runs the post-download processing in a transaction. When a high-water-mark filter is in use, the
+   * cursor is advanced only after the transaction commits and held back if processing fails. Once processing
+   * succeeded, the remote file is handed to {@code remoteDisposal}, which archives or deletes it if enabled.
+   */
+  private File processDownloadedFile(File file,
+                                     File localDownloadDirectory,
+                                     DownloadPostProcessorTransformer transformer,
+                                     FileListFilter<SftpClient.DirEntry> acceptOnceFilter,
+                                     Consumer<String> remoteDisposal) {
+    // Remote entries are named by their path relative to 'from', which matches the path below the local directory.
+    String remoteName = localDownloadDirectory.getAbsoluteFile().toPath()
+        .relativize(file.getAbsoluteFile().toPath()).toString().replace(File.separatorChar, '/');
+    File result;
+    if (!(acceptOnceFilter instanceof SftpHighWaterMarkFileListFilter highWaterMark)) {
+      result = executeInTransaction(file, transformer::transform, transactionManager);
     } else {
-      log.info("No 'from' directory configured for server {}. Skipping download flow registration.", serverName);
+      try {
+        result = executeInTransaction(file, transformer::transform, transactionManager);
+        highWaterMark.commit(remoteName);
+      } catch (RuntimeException ex) {
+        highWaterMark.revert(remoteName);
+        throw ex;
+      }
+    }
+    if (remoteDisposal != null) {
+      remoteDisposal.accept(remoteName);
     }
+    return result;
   }
 }
@@ -0,0 +1,52 @@
+package com.example.sftp.autoconfiguration.inbound;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The executor of one download flow sharing a server's inbound executor with the flows of the other source
+ * directories.
+ * <p>
+ * At most one poll of the flow waits in the shared queue: a poll triggered while the previous one is still
+ * queued is skipped, since the queued poll will list the directory anyway. A directory with a short poll
+ * interval can therefore not fill the queue, and when all workers are busy the flows with pending work are
+ * served in turn, each getting one poll per round.
+ * </p>
+ */
+@Slf4j
+public class SourcePollExecutor implements Executor {
+
+  private final Executor delegate;
+  private final String flowName;
+  private final AtomicBoolean queued = new AtomicBoolean();
+
+  /**
+   * Creates the executor of one flow.
+   *
+   * @param delegate the executor shared by the flows of the server.
+   * @param flowName the flow name, used in log messages.
+   */
+  public SourcePollExecutor(Executor delegate, String flowName) {
+    this.delegate = delegate;
+    this.flowName = flowName;
+  }
+
+  @Override
+  public void execute(Runnable poll) {
+    if (!queued.compareAndSet(false, true)) {
+      log.debug("Skipping poll of flow [{}]; its previous poll is still waiting for a worker.", flowName);
+      return;
+    }
+    try {
+      delegate.execute(() -> {
+        queued.set(false);
+        poll.run();
+      });
+    } catch (RuntimeException ex) {
+      queued.set(false);
+      throw ex;
+    }
+  }
+}
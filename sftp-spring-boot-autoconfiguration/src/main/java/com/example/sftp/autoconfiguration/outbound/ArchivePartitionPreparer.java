@@ -0,0 +1,110 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import com.example.sftp.autoconfiguration.session.PipelinedSftpOperations;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Creates the remote archive directories of today and the next {@code daysAhead} days, so that archiving
+ * into a date-partitioned layout never has to create a directory. Meant to run periodically (it starts
+ * with the nearest dates); directories created by an earlier run are not checked again.
+ */
+@Slf4j
+public class ArchivePartitionPreparer implements Runnable {
+
+  private final SessionFactory<SftpClient.DirEntry> sessionFactory;
+  private final ArchivePathTemplate template;
+  private final int daysAhead;
+  private final Clock clock;
+  private final Set<String> prepared = new HashSet<>();
+
+  public ArchivePartitionPreparer(SessionFactory<SftpClient.DirEntry> sessionFactory, ArchivePathTemplate template,
+                                  int daysAhead) {
+    this(sessionFactory, template, daysAhead, Clock.systemDefaultZone());
+  }
+
+  ArchivePartitionPreparer(SessionFactory<SftpClient.DirEntry> sessionFactory, ArchivePathTemplate template,
+                           int daysAhead, Clock clock) {
+    this.sessionFactory = sessionFactory;
+    this.template = template;
+    this.daysAhead = daysAhead;
+    this.clock = clock;
+  }
+
+  @Override
+  public synchronized void run() {
+    Set<String> directories = new LinkedHashSet<>();
+    LocalDate today = LocalDate.now(clock);
+    for (int day = 0; day <= daysAhead; day++) {
+      String directory = template.directory(today.plusDays(day));
+      if (directory != null) {
+        directories.add(directory);
+      }
+    }
+    // Only directories of the current window are remembered, so the set does not grow over time.
+    prepared.retainAll(directories);
+    directories.removeAll(prepared);
+    if (directories.isEmpty()) {
+      return;
+    }
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      makeDirectories(new PipelinedSftpOperations(session), directories);
+      prepared.addAll(directories);
+      log.debug("Prepared archive directories {}.", directories);
+    } catch (Exception ex) {
+      log.warn("Failed to prepare archive directories {}: {}", directories, ex.getMessage());
+    }
+  }
+
+  /**
+   * Checks all directories and their parents at once, then creates the missing ones one level at a time, all
+   * directories of a level together.
+   */
+  private static void makeDirectories(PipelinedSftpOperations operations, Set<String> directories) throws IOException {
+    Set<String> candidates = new LinkedHashSet<>();
+    for (String directory : directories) {
+      for (int slash = directory.indexOf('/', 1); slash > 0; slash = directory.indexOf('/', slash + 1)) {
+        candidates.add(directory.substring(0, slash));
+      }
+      candidates.add(directory);
+    }
+    List<String> paths = new ArrayList<>(candidates);
+    boolean[] exists = operations.exists(paths);
+    SortedMap<Integer, List<String>> missingByDepth = new TreeMap<>();
+    for (int i = 0; i < exists.length; i++) {
+      if (!exists[i]) {
+        int depth = (int) paths.get(i).chars().filter(c -> c == '/').count();
+        missingByDepth.computeIfAbsent(depth, d -> new ArrayList<>()).add(paths.get(i));
+      }
+    }
+    for (List<String> level : missingByDepth.values()) {
+      Exception[] failures = operations.mkdir(level);
+      List<String> failed = new ArrayList<>();
+      for (int i = 0; i < failures.length; i++) {
+        if (failures[i] != null) {
+          failed.add(level.get(i));
+        }
+      }
+      // Another process may have created them meanwhile.
+      boolean[] created = failed.isEmpty() ? new boolean[0] : operations.exists(failed);
+      for (int i = 0; i < created.length; i++) {
+        if (!created[i]) {
+          throw new IOException("Failed to create archive directory [" + failed.get(i) + "]");
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A remote archive path template such as {@code archive/{yyyy}/{MM}/{dd}/{filename}}, parsed once into
+ * literal and token segments so that rendering a path is a plain string concatenation.
+ * <p>
+ * Supported tokens are {@code {yyyy}}, {@code {MM}} and {@code {dd}} (the archive date), {@code {server}}
+ * (the server name, resolved when the template is compiled) and {@code {filename}} (the archived file's
+ * name). A template without {@code {filename}} names a directory, and the file name is appended to it.
+ * </p>
+ */
+public class ArchivePathTemplate {
+
+  private static final String FILENAME = "filename";
+
+  private final String template;
+  private final List<String> literals = new ArrayList<>();
+  private final List<String> tokens = new ArrayList<>();
+  private final int directorySegments;
+  // Matches a date partition directory (or a subdirectory of it); null if the template is not date-partitioned.
+  private final Pattern partitionPattern;
+  // Matches every path the template can render.
+  private final Pattern archivePattern;
+
+  private ArchivePathTemplate(String template, String serverName) {
+    String effective = template.contains("{" + FILENAME + "}")
+        ? template
+        : (template.endsWith("/") ? template : template + "/") + "{" + FILENAME + "}";
+    this.template = effective;
+    StringBuilder literal = new StringBuilder();
+    int i = 0;
+    while (i < effective.length()) {
+      char c = effective.charAt(i);
+      if (c != '{') {
+        literal.append(c);
+        i++;
+        continue;
+      }
+      int end = effective.indexOf('}', i);
+      if (end < 0) {
+        throw new IllegalArgumentException("Unclosed token in archive path template: " + template);
+      }
+      String token = effective.substring(i + 1, end);
+      switch (token) {
+        case "server" -> literal.append(serverName);
+        case "yyyy", "MM", "dd", FILENAME -> {
+          literals.add(literal.toString());
+          tokens.add(token);
+          literal.setLength(0);
+        }
+        default -> throw new IllegalArgumentException("Unknown token {" + token + "} in archive path template: " + template);
+      }
+      i = end + 1;
+    }
+    literals.add(literal.toString());
+    int lastFileName = tokens.lastIndexOf(FILENAME);
+    // The directory ends before the '/' preceding the last file name token, if that part holds no file name.
+    this.directorySegments = tokens.subList(0, lastFileName).contains(FILENAME) ? -1 : lastFileName;
+    this.partitionPattern = compilePartitionPattern();
+    this.archivePattern = compileArchivePattern();
+  }
+
+  private Pattern compileArchivePattern() {
+    StringBuilder regex = new StringBuilder();
+    for (int i = 0; i < tokens.size(); i++) {
+      regex.append(Pattern.quote(literals.get(i))).append(switch (tokens.get(i)) {
+        case "yyyy" -> "\\d{4}";
+        case "MM", "dd" -> "\\d{2}";
+        default -> "[^/]+";
+      });
+    }
+    return Pattern.compile(regex.append(Pattern.quote(literals.get(tokens.size()))).toString());
+  }
+
+  private Pattern compilePartitionPattern() {
+    if (directorySegments <= 0) {
+      return null;
+    }
+    String last = literals.get(directorySegments);
+    int slash = last.lastIndexOf('/');
+    if (slash < 0) {
+      return null;
+    }
+    StringBuilder regex = new StringBuilder();
+    for (int i = 0; i < directorySegments; i++) {
+      regex.append(Pattern.quote(literals.get(i))).append("yyyy".equals(tokens.get(i)) ? "(\\d{4})" : "(\\d{2})");
+    }
+    return Pattern.compile(regex.append(Pattern.quote(last.substring(0, slash))).append("(?:/.*)?").toString());
+  }
+
+  /**
+   * Compiles a template.
+   *
+   * @param template   the template, or a plain directory.
+   * @param serverName the value of the {@code {server}} token.
+   * @return the compiled template.
+   * @throws IllegalArgumentException if the template holds an unknown or unclosed token.
+   */
+  public static ArchivePathTemplate compile(String template, String serverName) {
+    return new ArchivePathTemplate(template, serverName);
+  }
+
+  /**
+   * Returns the archive path of a file archived on the given date.
+   */
+  public String render(String fileName, LocalDate date) {
+    StringBuilder path = new StringBuilder(template.length() + fileName.length());
+    for (int i = 0; i < tokens.size(); i++) {
+      path.append(literals.get(i));
+      appendToken(path, tokens.get(i), fileName, date);
+    }
+    return path.append(literals.get(tokens.size())).toString();
+  }
+
+  /**
+   * Returns the directory holding the files archived on the given date, or null if it depends on the file
+   * name.
+   */
+  public String directory(LocalDate date) {
+    if (directorySegments < 0) {
+      return null;
+    }
+    StringBuilder path = new StringBuilder(template.length());
+    for (int i = 0; i < directorySegments; i++) {
+      path.append(literals.get(i));
+      appendToken(path, tokens.get(i), null, date);
+    }
+    String prefix = path.append(literals.get(directorySegments)).toString();
+    int slash = prefix.lastIndexOf('/');
+    return slash > 0 ? prefix.substring(0, slash) : null;
+  }
+
+  /**
+   * Returns the directory all archive paths start with (the part before the first token), or null if the
+   * template starts with a token or at the root directory.
+   */
+  public String rootDirectory() {
+    String first = literals.get(0);
+    int slash = first.lastIndexOf('/');
+    return slash > 0 ? first.substring(0, slash) : null;
+  }
+
+  /**
+   * Returns the day after the last archive date whose files go to the given directory or its subdirectories,
+   * i.e. the earliest day on which all of them have been archived, or null if the directory is not a date
+   * partition of this template.
+   */
+  public LocalDate partitionEnd(String directory) {
+    Matcher matcher = partitionPattern != null ? partitionPattern.matcher(directory) : null;
+    if (matcher == null || !matcher.matches()) {
+      return null;
+    }
+    int year = -1;
+    int month = -1;
+    int day = -1;
+    for (int i = 0; i < directorySegments; i++) {
+      int value = Integer.parseInt(matcher.group(i + 1));
+      switch (tokens.get(i)) {
+        case "yyyy" -> year = value;
+        case "MM" -> month = value;
+        default -> day = value;
+      }
+    }
+    try {
+      if (year < 0 || (day >= 0 && month < 0)) {
+        return null;
+      }
+      if (day >= 0) {
+        return LocalDate.of(year, month, day).plusDays(1);
+      }
+      return month >= 0 ? LocalDate.of(year, month, 1).plusMonths(1) : LocalDate.of(year, 1, 1).plusYears(1);
+    } catch (DateTimeException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns true if the template can render the given path, i.e. the path is an archived file.
+   */
+  public boolean isArchivePath(String path) {
+    return archivePattern.matcher(path).matches();
+  }
+
+  /**
+   * Returns true if archive paths may lie below the given directory, i.e. the directory is (a parent of) a
+   * directory the template renders, such as a date partition.
+   */
+  public boolean isArchiveDirectory(String directory) {
+    Matcher matcher = archivePattern.matcher(directory.endsWith("/") ? directory : directory + "/");
+    // The directory cannot be a whole archive path, so a match stopping at the end of it is a prefix match.
+    return !matcher.matches() && matcher.hitEnd();
+  }
+
+  /**
+   * Returns true if the archive directory changes with the archive date.
+   */
+  public boolean isDatePartitioned() {
+    return directorySegments > 0;
+  }
+
+  private static void appendToken(StringBuilder path, String token, String fileName, LocalDate date) {
+    switch (token) {
+      case "yyyy" -> path.append(date.getYear());
+      case "MM" -> pad(path, date.getMonthValue());
+      case "dd" -> pad(path, date.getDayOfMonth());
+      default -> path.append(fileName);
+    }
+  }
+
+  private static void pad(StringBuilder path, int value) {
+    if (value < 10) {
+      path.append('0');
+    }
+    path.append(value);
+  }
+}
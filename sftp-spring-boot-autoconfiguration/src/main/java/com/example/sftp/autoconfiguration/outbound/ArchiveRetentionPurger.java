@@ -0,0 +1,207 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import com.example.sftp.autoconfiguration.session.PipelinedSftpOperations;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deletes archived files older than a retention period from a remote archive.
+ * <p>
+ * Given an archive path template, only the paths the template renders are visited: starting from the root
+ * directory of the template, the purge descends into the directories on the way to an archive directory
+ * (e.g. {@code archive/2026} and {@code archive/2026/03/05} for {@code archive/{yyyy}/{MM}/{dd}}) and deletes
+ * only the files whose path the template can render. Other files and directories below the root are left
+ * alone. Given a plain directory instead, every file below it is treated as archived.
+ * </p>
+ * <p>
+ * The age of a file is measured from the time it was archived. For a date-partitioned template the archive
+ * time is taken from the partition holding the file: a file below {@code archive/2026/03/05} was archived on
+ * that day at the latest and expires {@code retention} after the end of the day. Other files are aged from
+ * their modification time; renaming a file keeps it, so the archive flows set it to the archive time when
+ * archive retention is enabled (see {@link com.example.sftp.autoconfiguration.session.ArchiveTimeSessionFactory}).
+ * </p>
+ * <p>
+ * The directory is read one {@code READDIR} page at a time over a single session; the expired files of each
+ * page are removed with pipelined requests ({@link PipelinedSftpOperations}), so memory use is bounded by a
+ * page and a purge costs about one round trip per page rather than one per file. Subdirectories are purged
+ * after their parent's listing is closed, and removed once empty if they were last modified before the
+ * retention cutoff (directories prepared for upcoming days are therefore kept).
+ * </p>
+ */
+@Slf4j
+public class ArchiveRetentionPurger implements Runnable {
+
+  private final SessionFactory<SftpClient.DirEntry> sessionFactory;
+  private final String archiveDirectory;
+  private final ArchivePathTemplate archivePath;
+  private final Duration retention;
+  private final Clock clock;
+
+  /**
+   * Creates a retention purger for a directory whose files are all archived, using the system clock.
+   *
+   * @param sessionFactory   the factory providing the session of each purge.
+   * @param archiveDirectory the remote archive directory.
+   * @param retention        the age from which archived files are deleted.
+   */
+  public ArchiveRetentionPurger(SessionFactory<SftpClient.DirEntry> sessionFactory,
+                                String archiveDirectory,
+                                Duration retention) {
+    this(sessionFactory, archiveDirectory, retention, Clock.systemDefaultZone());
+  }
+
+  ArchiveRetentionPurger(SessionFactory<SftpClient.DirEntry> sessionFactory,
+                         String archiveDirectory,
+                         Duration retention,
+                         Clock clock) {
+    this(sessionFactory, archiveDirectory, null, retention, clock);
+  }
+
+  /**
+   * Creates a retention purger for the archive written through an archive path template, using the system
+   * clock. Only the paths below the root directory of the template that the template renders are purged;
+   * files in its date partitions are aged from the partition date.
+   *
+   * @param sessionFactory the factory providing the session of each purge.
+   * @param archivePath    the archive path template.
+   * @param retention      the age from which archived files are deleted.
+   * @throws IllegalArgumentException if the template has no root directory.
+   */
+  public ArchiveRetentionPurger(SessionFactory<SftpClient.DirEntry> sessionFactory,
+                                ArchivePathTemplate archivePath,
+                                Duration retention) {
+    this(sessionFactory, archivePath, retention, Clock.systemDefaultZone());
+  }
+
+  ArchiveRetentionPurger(SessionFactory<SftpClient.DirEntry> sessionFactory,
+                         ArchivePathTemplate archivePath,
+                         Duration retention,
+                         Clock clock) {
+    this(sessionFactory, rootDirectory(archivePath), archivePath, retention, clock);
+  }
+
+  private ArchiveRetentionPurger(SessionFactory<SftpClient.DirEntry> sessionFactory,
+                                 String archiveDirectory,
+                                 ArchivePathTemplate archivePath,
+                                 Duration retention,
+                                 Clock clock) {
+    this.sessionFactory = sessionFactory;
+    this.archiveDirectory = archiveDirectory;
+    this.archivePath = archivePath;
+    this.retention = retention;
+    this.clock = clock;
+  }
+
+  private static String rootDirectory(ArchivePathTemplate archivePath) {
+    String root = archivePath.rootDirectory();
+    if (root == null) {
+      throw new IllegalArgumentException("The archive path template has no root directory to purge");
+    }
+    return root;
+  }
+
+  /**
+   * Returns the purged directory.
+   */
+  public String getArchiveDirectory() {
+    return archiveDirectory;
+  }
+
+  @Override
+  public void run() {
+    try {
+      purge();
+    } catch (Exception ex) {
+      log.error("Failed to purge archive directory [{}]: {}", archiveDirectory, ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * Purges the archive directory once.
+   *
+   * @return the number of files deleted.
+   * @throws IOException if the archive directory cannot be read.
+   */
+  public int purge() throws IOException {
+    long cutoff = clock.millis() - retention.toMillis();
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      if (!(session.getClientInstance() instanceof SftpClient client)) {
+        throw new IllegalStateException("Archive retention requires an SFTP client session");
+      }
+      int[] deleted = new int[1];
+      purgeDirectory(client, new PipelinedSftpOperations(session), archiveDirectory, cutoff, deleted);
+      log.info("Purged {} archived files older than {} from [{}].", deleted[0], retention, archiveDirectory);
+      return deleted[0];
+    }
+  }
+
+  /**
+   * Purges one directory and returns whether it is empty afterwards.
+   */
+  private boolean purgeDirectory(SftpClient client, PipelinedSftpOperations operations, String directory, long cutoff,
+                                 int[] deleted) throws IOException {
+    List<SftpClient.DirEntry> subdirectories = new ArrayList<>();
+    int remaining = 0;
+    LocalDate partitionEnd = archivePath != null ? archivePath.partitionEnd(directory) : null;
+    // Files of a date partition were all archived before its end, whatever their modification time.
+    long archivedBefore = partitionEnd != null ? partitionEnd.atStartOfDay(clock.getZone()).toInstant().toEpochMilli() : -1L;
+    try (SftpClient.CloseableHandle handle = client.openDir(directory)) {
+      List<SftpClient.DirEntry> page;
+      while ((page = client.readDir(handle)) != null) {
+        List<String> expired = new ArrayList<>();
+        for (SftpClient.DirEntry entry : page) {
+          String name = entry.getFilename();
+          if (".".equals(name) || "..".equals(name)) {
+            continue;
+          }
+          SftpClient.Attributes attributes = entry.getAttributes();
+          String path = child(directory, name);
+          if (attributes.isDirectory() && (archivePath == null || archivePath.isArchiveDirectory(path))) {
+            subdirectories.add(entry);
+          } else if (attributes.isRegularFile() && (archivePath == null || archivePath.isArchivePath(path))
+              && (archivedBefore >= 0 ? archivedBefore : modified(attributes)) < cutoff) {
+            expired.add(path);
+          } else {
+            remaining++;
+          }
+        }
+        Exception[] failures = operations.remove(expired);
+        for (int i = 0; i < failures.length; i++) {
+          if (failures[i] == null) {
+            deleted[0]++;
+          } else {
+            remaining++;
+            log.warn("Failed to remove archived file [{}]: {}", expired.get(i), failures[i].getMessage());
+          }
+        }
+      }
+    }
+    for (SftpClient.DirEntry subdirectory : subdirectories) {
+      String path = child(directory, subdirectory.getFilename());
+      if (purgeDirectory(client, operations, path, cutoff, deleted) && modified(subdirectory.getAttributes()) < cutoff) {
+        client.rmdir(path);
+        log.debug("Removed empty archive directory [{}].", path);
+      } else {
+        remaining++;
+      }
+    }
+    return remaining == 0;
+  }
+
+  private static long modified(SftpClient.Attributes attributes) {
+    return attributes.getModifyTime() != null ? attributes.getModifyTime().toMillis() : Long.MAX_VALUE;
+  }
+
+  private static String child(String directory, String name) {
+    return directory.endsWith("/") ? directory + name : directory + "/" + name;
+  }
+}
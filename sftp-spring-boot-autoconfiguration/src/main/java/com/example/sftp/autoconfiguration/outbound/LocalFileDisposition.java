@@ -0,0 +1,181 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.integration.file.filters.FileListFilter;
+import org.springframework.integration.file.filters.ResettableFileListFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.concurrent.Executor;
+
+/**
+ * Disposes of local files once they have been uploaded, so that the local upload directory only holds
+ * pending files and a restart does not upload them again.
+ * <p>
+ * After a successful upload the file is, depending on the action:
+ * <ul>
+ *   <li>"keep": left in place (the default, previous behaviour).</li>
+ *   <li>"delete": deleted.</li>
+ *   <li>"move": moved into a {@code yyyy-MM-dd} subdirectory of the sent directory.</li>
+ *   <li>"link": hard-linked into the dated sent directory, then removed from the upload directory (copied if
+ *   the sent directory is on another file system).</li>
+ * </ul>
+ * Unless the action is "keep", a file whose upload failed is moved into a {@code yyyy-MM-dd} subdirectory of
+ * the quarantine directory. Both run on the given executor, after the remote file has been renamed to its
+ * final name. The file is then removed from the local accept-once filter, so that its entry does not stay in
+ * memory.
+ * </p>
+ * <p>
+ * Files keep their path below the upload directory (their shard), and a file never replaces an earlier one:
+ * if the target exists, a counter is added to the name ({@code report-1.csv}, {@code report-2.csv}, ...).
+ * </p>
+ */
+@Slf4j
+public class LocalFileDisposition {
+
+  public static final String KEEP = "keep";
+  public static final String DELETE = "delete";
+  public static final String MOVE = "move";
+  public static final String LINK = "link";
+
+  private final String action;
+  private final File sentDirectory;
+  private final File quarantineDirectory;
+  private final Executor executor;
+  private final FileListFilter<File> filter;
+  private final Clock clock;
+
+  /**
+   * Creates a disposition.
+   *
+   * @param action              "keep", "delete", "move" or "link".
+   * @param sentDirectory       the directory receiving moved or linked files, in dated subdirectories.
+   * @param quarantineDirectory the directory receiving files whose upload failed.
+   * @param executor            the executor running the file operations.
+   * @param filter              the local filter to forget disposed files in, or null.
+   */
+  public LocalFileDisposition(String action, File sentDirectory, File quarantineDirectory, Executor executor,
+                              FileListFilter<File> filter) {
+    this(action, sentDirectory, quarantineDirectory, executor, filter, Clock.systemDefaultZone());
+  }
+
+  LocalFileDisposition(String action, File sentDirectory, File quarantineDirectory, Executor executor,
+                       FileListFilter<File> filter, Clock clock) {
+    this.action = action != null ? action : KEEP;
+    this.sentDirectory = sentDirectory;
+    this.quarantineDirectory = quarantineDirectory;
+    this.executor = executor;
+    this.filter = filter;
+    this.clock = clock;
+  }
+
+  /**
+   * Returns true if uploaded files are left in the upload directory.
+   */
+  public boolean isKeep() {
+    return KEEP.equalsIgnoreCase(action);
+  }
+
+  /**
+   * Disposes of a file whose upload completed.
+   *
+   * @param file         the uploaded file.
+   * @param relativePath the path of the file below the upload directory.
+   */
+  public void uploaded(File file, String relativePath) {
+    if (isKeep()) {
+      return;
+    }
+    executor.execute(() -> {
+      try {
+        if (DELETE.equalsIgnoreCase(action)) {
+          Files.deleteIfExists(file.toPath());
+        } else {
+          Path target = freeTarget(datedDirectory(sentDirectory).resolve(relativePath));
+          if (LINK.equalsIgnoreCase(action)) {
+            link(file.toPath(), target);
+          } else {
+            move(file.toPath(), target);
+          }
+        }
+        forget(file);
+      } catch (IOException ex) {
+        log.error("Failed to {} uploaded file {}: {}", action, file, ex.getMessage(), ex);
+      }
+    });
+  }
+
+  /**
+   * Moves a file whose upload failed to the quarantine directory.
+   *
+   * @param file         the file whose upload failed.
+   * @param relativePath the path of the file below the upload directory.
+   */
+  public void failed(File file, String relativePath) {
+    if (isKeep()) {
+      return;
+    }
+    executor.execute(() -> {
+      try {
+        Path target = freeTarget(datedDirectory(quarantineDirectory).resolve(relativePath));
+        move(file.toPath(), target);
+        forget(file);
+        log.warn("Moved file {} whose upload failed to {}.", file, target);
+      } catch (IOException ex) {
+        log.error("Failed to quarantine file {}: {}", file, ex.getMessage(), ex);
+      }
+    });
+  }
+
+  private Path datedDirectory(File directory) {
+    return directory.toPath().resolve(LocalDate.now(clock).toString());
+  }
+
+  /**
+   * Returns the target, or the first numbered variant of it that does not exist yet, creating its directory.
+   * The operations run one at a time on the executor, so the returned path stays free until it is used.
+   */
+  private static Path freeTarget(Path target) throws IOException {
+    Files.createDirectories(target.getParent());
+    String name = target.getFileName().toString();
+    int extension = name.lastIndexOf('.');
+    String base = extension > 0 ? name.substring(0, extension) : name;
+    String suffix = extension > 0 ? name.substring(extension) : "";
+    Path candidate = target;
+    for (int counter = 1; Files.exists(candidate, LinkOption.NOFOLLOW_LINKS); counter++) {
+      candidate = target.resolveSibling(base + "-" + counter + suffix);
+    }
+    return candidate;
+  }
+
+  private void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException ex) {
+      Files.move(source, target);
+    }
+  }
+
+  private void link(Path source, Path target) throws IOException {
+    try {
+      Files.createLink(target, source);
+    } catch (UnsupportedOperationException | FileSystemException ex) {
+      Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+    Files.delete(source);
+  }
+
+  private void forget(File file) {
+    if (filter instanceof ResettableFileListFilter<File> resettable) {
+      resettable.remove(file);
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers remote directories known to exist for {@code ttlMillis}, so that uploads into the same
+ * directory check or create it once per TTL rather than once per file. Entries are dropped as soon as an
+ * upload into the directory fails, because the directory may have been removed.
+ */
+public class RemoteDirectoryCache {
+
+  private final long ttlMillis;
+  private final LongSupplier clock;
+  private final Map<String, Long> expiries = new ConcurrentHashMap<>();
+
+  public RemoteDirectoryCache(long ttlMillis) {
+    this(ttlMillis, System::currentTimeMillis);
+  }
+
+  RemoteDirectoryCache(long ttlMillis, LongSupplier clock) {
+    this.ttlMillis = ttlMillis;
+    this.clock = clock;
+  }
+
+  /**
+   * Returns true if the directory was seen to exist less than the TTL ago.
+   */
+  public boolean isKnown(String directory) {
+    Long expiry = expiries.get(directory);
+    if (expiry == null) {
+      return false;
+    }
+    if (expiry <= clock.getAsLong()) {
+      expiries.remove(directory, expiry);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Records that the directory exists.
+   */
+  public void markExisting(String directory) {
+    expiries.put(directory, clock.getAsLong() + ttlMillis);
+  }
+
+  /**
+   * Forgets the directory, its parents and everything below it.
+   */
+  public void invalidate(String directory) {
+    String prefix = directory.endsWith("/") ? directory : directory + "/";
+    expiries.keySet().removeIf(known -> known.equals(directory) || known.startsWith(prefix)
+        || prefix.startsWith(known.endsWith("/") ? known : known + "/"));
+  }
+}
@@ -0,0 +1,77 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.extensions.CopyDataExtension;
+import org.apache.sshd.sftp.client.extensions.CopyFileExtension;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Copies remote files to another remote path of the same server, keeping the original in place.
+ * <p>
+ * The copy runs on the server when it advertises the {@code copy-file} extension, or the {@code copy-data}
+ * extension between two handles of the same session. Otherwise the bytes are streamed from the source to the
+ * target through one session: reads and writes are pipelined and only a fixed-size buffer is held in memory,
+ * whatever the size of the file.
+ * </p>
+ */
+@Slf4j
+public class RemoteFileCopier {
+
+  private final SessionFactory<SftpClient.DirEntry> sessionFactory;
+
+  public RemoteFileCopier(SessionFactory<SftpClient.DirEntry> sessionFactory) {
+    this.sessionFactory = sessionFactory;
+  }
+
+  /**
+   * Copies {@code source} to {@code target} on a pooled session, replacing the target if it exists.
+   *
+   * @param source the remote path to copy.
+   * @param target the remote path of the copy.
+   * @throws UncheckedIOException if the copy fails.
+   */
+  public void copy(String source, String target) {
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      copy((SftpClient) session.getClientInstance(), source, target);
+      log.debug("Copied remote file [{}] to [{}].", source, target);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to copy remote file [" + source + "] to [" + target + "]", ex);
+    }
+  }
+
+  static void copy(SftpClient client, String source, String target) throws IOException {
+    CopyFileExtension copyFile = client.getExtension(CopyFileExtension.class);
+    if (copyFile.isSupported()) {
+      copyFile.copyFile(source, target, true);
+      return;
+    }
+    CopyDataExtension copyData = client.getExtension(CopyDataExtension.class);
+    if (copyData.isSupported()) {
+      try (SftpClient.CloseableHandle in = client.open(source, SftpClient.OpenMode.Read);
+           SftpClient.CloseableHandle out = client.open(target,
+               SftpClient.OpenMode.Write, SftpClient.OpenMode.Create, SftpClient.OpenMode.Truncate)) {
+        // A read length of 0 copies up to the end of the source.
+        copyData.copyData(in, 0L, 0L, out, 0L);
+      }
+      return;
+    }
+    stream(client, source, target);
+  }
+
+  /**
+   * Streams {@code source} into {@code target} through the client, without server-side copy support.
+   */
+  static void stream(SftpClient client, String source, String target) throws IOException {
+    try (InputStream in = client.read(source);
+         OutputStream out = client.write(target)) {
+      in.transferTo(out);
+    }
+  }
+}
@@ -5,22 +5,47 @@ import com.example.sftp.autoconfiguration.SftpFileProcessor;
 import com.example.sftp.autoconfiguration.SftpProperties;
 import com.example.sftp.autoconfiguration.SftpProperties.SftpServerConfig;
 import com.example.sftp.autoconfiguration.SftpSessionFactoryProvider;
+import com.example.sftp.autoconfiguration.session.ArchiveTimeSessionFactory;
+import com.example.sftp.autoconfiguration.session.PosixRenameSessionFactory;
 import com.example.sftp.autoconfiguration.transformers.ArchivePrePostProcessorTransformer;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
 import org.springframework.context.ApplicationContext;
 import org.springframework.integration.dsl.IntegrationFlow;
 import org.springframework.integration.dsl.context.IntegrationFlowContext;
+import org.springframework.integration.file.FileReadingMessageSource;
 import org.springframework.integration.file.dsl.Files;
+import org.springframework.integration.file.filters.FileListFilter;
+import org.springframework.integration.file.remote.session.SessionFactory;
 import org.springframework.integration.handler.advice.ExpressionEvaluatingRequestHandlerAdvice;
+import org.springframework.integration.scheduling.PollerMetadata;
 import org.springframework.integration.sftp.dsl.Sftp;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.PeriodicTrigger;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.StringUtils;
 
 import java.io.File;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.Objects;
 
 @Slf4j
 public class SftpArchiveFlowConfig extends AbstractSftpFlowConfig {
 
+  private static final long DEFAULT_ARCHIVE_BATCH_WINDOW = 200L;
+  private static final String GLOBAL_ERROR_CHANNEL = "globalErrorChannel";
+  private static final int DEFAULT_ARCHIVE_PARTITION_DAYS_AHEAD = 1;
+  private static final Duration PARTITION_PREPARATION_INTERVAL = Duration.ofHours(1);
+  private static final String COPY_ARCHIVE_MODE = "copy";
+  private static final long DEFAULT_ARCHIVE_RETENTION_INTERVAL = Duration.ofHours(1).toMillis();
+
   private final SftpProperties sftpProperties;
   private final SftpSessionFactoryProvider factoryProvider;
   private final ExpressionEvaluatingRequestHandlerAdvice errorHandlingAdvice;
@@ -46,7 +71,7 @@ public class SftpArchiveFlowConfig extends AbstractSftpFlowConfig {
 
   private void registerFlowForServer() {
     String serverName = serverConfig.getName();
-    var factory = factoryProvider.getFactory(serverName);
+    var factory = new PosixRenameSessionFactory(factoryProvider.getFactory(serverName), serverName);
     SftpFileProcessor fileProcessor = obtainProcessor(serverConfig);
 
     // Determine local archive directory using helper method.
@@ -54,12 +79,9 @@ public class SftpArchiveFlowConfig extends AbstractSftpFlowConfig {
 
     var fileSourceSpec = Files.inboundAdapter(localArchiveDirectory)
         .autoCreateDirectory(true);
-    var compositeFilter = createLocalCompositeFilter(serverConfig);
-    if (compositeFilter != null) {
-      fileSourceSpec.filter(compositeFilter);
-    }
+    FileListFilter<File> localFilter = configureLocalFileSource(serverConfig, fileSourceSpec, "archive");
 
-    var pollerMetadata = buildPollerMetadata(sftpProperties.getDefaultPoller(), errorHandlingAdvice);
+    var pollerMetadata = buildLocalPollerMetadata(serverConfig, errorHandlingAdvice);
     pollerMetadata.setTaskExecutor(buildTaskExecutor());
 
     String flowId = "sftpArchiveFlow-" + serverName;
@@ -73,18 +95,193 @@ public class SftpArchiveFlowConfig extends AbstractSftpFlowConfig {
     ArchivePrePostProcessorTransformer postTransformer =
         new ArchivePrePostProcessorTransformer(fileProcessor, serverName, false, effectiveRetry);
 
+    boolean templated = StringUtils.hasText(serverConfig.getArchivePathTemplate());
+    ArchivePathTemplate archivePath = ArchivePathTemplate.compile(
+        templated ? serverConfig.getArchivePathTemplate() : serverConfig.getArchive(), serverName);
+    if (archivePath.isDatePartitioned()) {
+      schedulePartitionPreparation(factory, archivePath, serverName);
+    }
+    if (serverConfig.getArchiveRetention() != null) {
+      scheduleRetentionPurge(factory, archivePath, serverName);
+    }
+
+    if (COPY_ARCHIVE_MODE.equalsIgnoreCase(serverConfig.getArchiveMode())) {
+      if (serverConfig.getArchiveBatchSize() != null) {
+        log.warn("Archive batches are not used by server [{}] in copy mode.", serverName);
+      }
+      registerCopyArchiveFlow(flowId, fileSourceSpec.getObject(), localFilter, pollerMetadata, factory, archivePath, preTransformer, postTransformer);
+      return;
+    }
+
+    if (serverConfig.getArchiveBatchSize() != null) {
+      registerBatchArchiveFlow(flowId, fileSourceSpec.getObject(), localFilter, pollerMetadata, factory, archivePath, preTransformer, postTransformer);
+      return;
+    }
+
     IntegrationFlow archiveFlow = IntegrationFlow.from(fileSourceSpec.getObject(), c -> c.poller(pollerMetadata))
         .enrichHeaders(h -> h.header("sftpFlowId", flowId)
-            .header("destinationPath", serverConfig.getArchive()))
+            .headerFunction("destinationPath", message -> templated
+                ? archivePath.render(fileName(message.getPayload()), LocalDate.now())
+                : serverConfig.getArchive()))
         .transform(String.class, remotePath -> executeInTransaction(remotePath, preTransformer::transform, transactionManager))
         .filter(Objects::nonNull)
         .handle(
-            Sftp.outboundGateway(factory, "mv", "payload")
+            Sftp.outboundGateway(isStampArchiveTime() ? new ArchiveTimeSessionFactory(factory) : factory, "mv", "payload")
                 .renameExpression("headers.destinationPath"),
             spec -> spec.advice(errorHandlingAdvice))
         .transform(String.class, remotePath -> executeInTransaction(remotePath, postTransformer::transform, transactionManager))
         .get();
 
-    registerFlow(flowId, archiveFlow);
+    registerFlow(flowId, archiveFlow, localFilter);
+  }
+
+  /**
+   * Registers the archive flow renaming paths in batches over a single session. The afterArchive callback runs
+   * for each archived path; a path whose rename failed is reported on the global error channel.
+   */
+  private void registerBatchArchiveFlow(String flowId,
+                                        FileReadingMessageSource fileSource,
+                                        FileListFilter<File> localFilter,
+                                        PollerMetadata pollerMetadata,
+                                        SessionFactory<SftpClient.DirEntry> factory,
+                                        ArchivePathTemplate archivePath,
+                                        ArchivePrePostProcessorTransformer preTransformer,
+                                        ArchivePrePostProcessorTransformer postTransformer) {
+    String serverName = serverConfig.getName();
+    long window = serverConfig.getArchiveBatchWindow() != null
+        ? serverConfig.getArchiveBatchWindow() : DEFAULT_ARCHIVE_BATCH_WINDOW;
+    log.info("Archiving files of server [{}] in batches of up to {} paths every {} ms.",
+        serverName, serverConfig.getArchiveBatchSize(), window);
+
+    SftpBatchArchiveHandler batchHandler = new SftpBatchArchiveHandler(factory,
+        serverConfig.getArchiveBatchSize(),
+        window,
+        buildBatchScheduler(serverName),
+        message -> archivePath.render(fileName(message.getPayload()), LocalDate.now()),
+        remotePath -> executeInTransaction(remotePath, postTransformer::transform, transactionManager),
+        this::reportArchiveFailure,
+        isStampArchiveTime());
+
+    IntegrationFlow archiveFlow = IntegrationFlow.from(fileSource, c -> c.poller(pollerMetadata))
+        .enrichHeaders(h -> h.header("sftpFlowId", flowId))
+        .transform(String.class, remotePath -> executeInTransaction(remotePath, preTransformer::transform, transactionManager))
+        .filter(Objects::nonNull)
+        .handle(batchHandler, spec -> spec.advice(errorHandlingAdvice))
+        .get();
+
+    registerFlow(flowId, archiveFlow, localFilter);
+  }
+
+  /**
+   * Registers the archive flow copying each path into the archive on the server, keeping the original in place.
+   */
+  private void registerCopyArchiveFlow(String flowId,
+                                       FileReadingMessageSource fileSource,
+                                       FileListFilter<File> localFilter,
+                                       PollerMetadata pollerMetadata,
+                                       SessionFactory<SftpClient.DirEntry> factory,
+                                       ArchivePathTemplate archivePath,
+                                       ArchivePrePostProcessorTransformer preTransformer,
+                                       ArchivePrePostProcessorTransformer postTransformer) {
+    log.info("Archiving files of server [{}] by copying them.", serverConfig.getName());
+    RemoteFileCopier copier = new RemoteFileCopier(factory);
+
+    IntegrationFlow archiveFlow = IntegrationFlow.from(fileSource, c -> c.poller(pollerMetadata))
+        .enrichHeaders(h -> h.header("sftpFlowId", flowId))
+        .transform(String.class, remotePath -> executeInTransaction(remotePath, preTransformer::transform, transactionManager))
+        .filter(Objects::nonNull)
+        .<String>handle((remotePath, headers) -> {
+          copier.copy(remotePath, archivePath.render(fileName(remotePath), LocalDate.now()));
+          return remotePath;
+        }, spec -> spec.advice(errorHandlingAdvice))
+        .transform(String.class, remotePath -> executeInTransaction(remotePath, postTransformer::transform, transactionManager))
+        .get();
+
+    registerFlow(flowId, archiveFlow, localFilter);
+  }
+
+  /**
+   * Returns whether renamed files get the archive time as modification time, which a rename would keep:
+   * archive retention ages files outside date partitions from their modification time. Copies are new files,
+   * whose modification time already is the archive time.
+   */
+  private boolean isStampArchiveTime() {
+    return serverConfig.getArchiveRetention() != null;
+  }
+
+  /**
+   * Returns the name of the file behind an archive message, whose payload is a file or a path.
+   */
+  private static String fileName(Object payload) {
+    if (payload instanceof File file) {
+      return file.getName();
+    }
+    String path = String.valueOf(payload);
+    return path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf(File.separatorChar)) + 1);
+  }
+
+  /**
+   * Creates the date-partitioned archive directories of today and the next days now and then every hour, so
+   * that they exist before the first file of a day is archived.
+   */
+  private void schedulePartitionPreparation(SessionFactory<SftpClient.DirEntry> factory,
+                                            ArchivePathTemplate archivePath,
+                                            String serverName) {
+    int daysAhead = serverConfig.getArchivePartitionDaysAhead() != null
+        ? serverConfig.getArchivePartitionDaysAhead() : DEFAULT_ARCHIVE_PARTITION_DAYS_AHEAD;
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(1);
+    scheduler.setDaemon(true);
+    scheduler.setThreadNamePrefix("SftpArchivePartitions-" + serverName + "-");
+    scheduler.initialize();
+    scheduler.scheduleAtFixedRate(new ArchivePartitionPreparer(factory, archivePath, daysAhead), PARTITION_PREPARATION_INTERVAL);
+    log.info("Preparing archive partitions of server [{}] {} day(s) ahead.", serverName, daysAhead);
+  }
+
+  /**
+   * Purges archived files older than the retention period from the root directory of the archive path
+   * template at the configured interval. When the server polls in a time window, purges only run within that
+   * window.
+   */
+  private void scheduleRetentionPurge(SessionFactory<SftpClient.DirEntry> factory, ArchivePathTemplate archivePath,
+                                      String serverName) {
+    ArchiveRetentionPurger purger =
+        new ArchiveRetentionPurger(factory, archivePath, Duration.ofMillis(serverConfig.getArchiveRetention()));
+    long interval = serverConfig.getArchiveRetentionInterval() != null
+        ? serverConfig.getArchiveRetentionInterval() : DEFAULT_ARCHIVE_RETENTION_INTERVAL;
+    SftpProperties.PollerProperties poller =
+        serverConfig.getPoller() != null ? serverConfig.getPoller() : sftpProperties.getDefaultPoller();
+    Trigger windowTrigger = buildTimeWindowTrigger(poller, interval);
+    Trigger trigger = windowTrigger != null ? windowTrigger : new PeriodicTrigger(Duration.ofMillis(interval));
+
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(1);
+    scheduler.setDaemon(true);
+    scheduler.setThreadNamePrefix("SftpArchiveRetention-" + serverName + "-");
+    scheduler.initialize();
+    scheduler.schedule(purger, trigger);
+    log.info("Purging files older than {} ms from archive [{}] of server [{}] every {} ms{}.",
+        serverConfig.getArchiveRetention(), purger.getArchiveDirectory(), serverName, interval,
+        windowTrigger != null ? " within its polling window" : "");
+  }
+
+  private void reportArchiveFailure(Message<?> message, Exception cause) {
+    log.error("Failed to archive [{}] for server [{}]: {}", message.getPayload(), serverConfig.getName(), cause.getMessage());
+    if (applicationContext.containsBean(GLOBAL_ERROR_CHANNEL)) {
+      applicationContext.getBean(GLOBAL_ERROR_CHANNEL, MessageChannel.class)
+          .send(new ErrorMessage(new MessagingException(message, "Failed to archive [" + message.getPayload() + "]", cause)));
+    }
+  }
+
+  /**
+   * Builds the scheduler flushing archive batches whose window elapsed.
+   */
+  private TaskScheduler buildBatchScheduler(String serverName) {
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(1);
+    scheduler.setDaemon(true);
+    scheduler.setThreadNamePrefix("SftpArchiveBatch-" + serverName + "-");
+    scheduler.initialize();
+    return scheduler;
   }
-}
\ No newline at end of file
+}
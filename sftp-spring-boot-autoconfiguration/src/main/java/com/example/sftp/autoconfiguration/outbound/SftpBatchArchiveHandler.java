@@ -0,0 +1,217 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import com.example.sftp.autoconfiguration.session.PipelinedSftpOperations;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.handler.AbstractMessageHandler;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Archives remote files by renaming them in batches over a single session.
+ * <p>
+ * Each message carries the remote path to archive; its target is computed by {@code targetResolver}.
+ * Messages are collected until {@code batchSize} paths are pending or {@code windowMillis} have elapsed since
+ * the first one, then the renames of the batch are pipelined on one borrowed session with
+ * {@link PipelinedSftpOperations}, using {@code posix-rename@openssh.com} when the server supports it so that
+ * existing targets are replaced. A rename the server rejects (e.g. because the target
+ * exists on an SFTP v3 server) is retried with the session's regular rename, which replaces the target.
+ * </p>
+ * <p>
+ * Results are reported per path: {@code onArchived} receives each archived path and {@code onFailure} each
+ * message whose rename failed, together with the cause.
+ * </p>
+ * <p>
+ * With {@code stampArchiveTime}, the modification time of the renamed files is then set to the archive time
+ * in one more pipelined round, as a rename keeps the time the file was last written (see
+ * {@link com.example.sftp.autoconfiguration.session.ArchiveTimeSessionFactory}).
+ * </p>
+ */
+@Slf4j
+public class SftpBatchArchiveHandler extends AbstractMessageHandler {
+
+  private final SessionFactory<SftpClient.DirEntry> sessionFactory;
+  private final int batchSize;
+  private final long windowMillis;
+  private final TaskScheduler scheduler;
+  private final Function<Message<?>, String> targetResolver;
+  private final Consumer<String> onArchived;
+  private final BiConsumer<Message<?>, Exception> onFailure;
+  private final boolean stampArchiveTime;
+  private List<Message<?>> pending = new ArrayList<>();
+
+  /**
+   * Creates a batching archive handler.
+   *
+   * @param sessionFactory the factory providing the session of each batch.
+   * @param batchSize      the number of paths that triggers a batch.
+   * @param windowMillis   the maximum time a path waits for its batch to fill.
+   * @param scheduler      the scheduler flushing batches whose window elapsed.
+   * @param targetResolver computes the archive path of a message.
+   * @param onArchived     called with each archived path.
+   * @param onFailure      called with each message whose rename failed.
+   */
+  public SftpBatchArchiveHandler(SessionFactory<SftpClient.DirEntry> sessionFactory,
+                                 int batchSize,
+                                 long windowMillis,
+                                 TaskScheduler scheduler,
+                                 Function<Message<?>, String> targetResolver,
+                                 Consumer<String> onArchived,
+                                 BiConsumer<Message<?>, Exception> onFailure) {
+    this(sessionFactory, batchSize, windowMillis, scheduler, targetResolver, onArchived, onFailure, false);
+  }
+
+  /**
+   * Creates a batching archive handler.
+   *
+   * @param sessionFactory   the factory providing the session of each batch.
+   * @param batchSize        the number of paths that triggers a batch.
+   * @param windowMillis     the maximum time a path waits for its batch to fill.
+   * @param scheduler        the scheduler flushing batches whose window elapsed.
+   * @param targetResolver   computes the archive path of a message.
+   * @param onArchived       called with each archived path.
+   * @param onFailure        called with each message whose rename failed.
+   * @param stampArchiveTime whether the modification time of archived files is set to the archive time.
+   */
+  public SftpBatchArchiveHandler(SessionFactory<SftpClient.DirEntry> sessionFactory,
+                                 int batchSize,
+                                 long windowMillis,
+                                 TaskScheduler scheduler,
+                                 Function<Message<?>, String> targetResolver,
+                                 Consumer<String> onArchived,
+                                 BiConsumer<Message<?>, Exception> onFailure,
+                                 boolean stampArchiveTime) {
+    this.sessionFactory = sessionFactory;
+    this.batchSize = batchSize;
+    this.windowMillis = windowMillis;
+    this.scheduler = scheduler;
+    this.targetResolver = targetResolver;
+    this.onArchived = onArchived;
+    this.onFailure = onFailure;
+    this.stampArchiveTime = stampArchiveTime;
+  }
+
+  @Override
+  protected void handleMessageInternal(Message<?> message) {
+    List<Message<?>> batch = null;
+    synchronized (this) {
+      pending.add(message);
+      if (pending.size() >= batchSize) {
+        batch = takePending();
+      } else if (pending.size() == 1) {
+        List<Message<?>> window = pending;
+        scheduler.schedule(() -> flushWindow(window), Instant.now().plus(Duration.ofMillis(windowMillis)));
+      }
+    }
+    if (batch != null) {
+      archive(batch);
+    }
+  }
+
+  /**
+   * Archives the paths still pending, without waiting for their window to elapse.
+   */
+  public void flush() {
+    List<Message<?>> batch;
+    synchronized (this) {
+      batch = takePending();
+    }
+    if (!batch.isEmpty()) {
+      archive(batch);
+    }
+  }
+
+  private void flushWindow(List<Message<?>> window) {
+    List<Message<?>> batch = null;
+    synchronized (this) {
+      // The batch may already have been sent because it filled up.
+      if (pending == window && !pending.isEmpty()) {
+        batch = takePending();
+      }
+    }
+    if (batch != null) {
+      archive(batch);
+    }
+  }
+
+  private List<Message<?>> takePending() {
+    List<Message<?>> batch = pending;
+    pending = new ArrayList<>();
+    return batch;
+  }
+
+  private void archive(List<Message<?>> batch) {
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      List<String> sources = new ArrayList<>(batch.size());
+      List<String> targets = new ArrayList<>(batch.size());
+      for (Message<?> message : batch) {
+        sources.add(String.valueOf(message.getPayload()));
+        targets.add(targetResolver.apply(message));
+      }
+      PipelinedSftpOperations operations = new PipelinedSftpOperations(session);
+      Exception[] failures = operations.rename(sources, targets);
+      for (int i = 0; i < batch.size(); i++) {
+        if (failures[i] != null) {
+          try {
+            session.rename(sources.get(i), targets.get(i));
+            failures[i] = null;
+          } catch (Exception ex) {
+            failures[i] = ex;
+          }
+        }
+      }
+      if (stampArchiveTime) {
+        stampArchiveTime(operations, targets, failures);
+      }
+      for (int i = 0; i < batch.size(); i++) {
+        try {
+          if (failures[i] != null) {
+            throw failures[i];
+          }
+          onArchived.accept(sources.get(i));
+        } catch (Exception ex) {
+          onFailure.accept(batch.get(i), ex);
+        }
+      }
+      log.debug("Archived a batch of {} files.", batch.size());
+    } catch (Exception ex) {
+      log.error("Failed to archive a batch of {} files: {}", batch.size(), ex.getMessage(), ex);
+      for (Message<?> message : batch) {
+        onFailure.accept(message, ex);
+      }
+    }
+  }
+
+  /**
+   * Sets the modification time of the renamed files; a failure is only logged, as the files are archived.
+   */
+  private static void stampArchiveTime(PipelinedSftpOperations operations, List<String> targets, Exception[] renameFailures) {
+    List<String> archived = new ArrayList<>(targets.size());
+    for (int i = 0; i < targets.size(); i++) {
+      if (renameFailures[i] == null) {
+        archived.add(targets.get(i));
+      }
+    }
+    try {
+      Exception[] failures = operations.setModifyTime(archived, System.currentTimeMillis());
+      for (int i = 0; i < failures.length; i++) {
+        if (failures[i] != null) {
+          log.warn("Failed to set the archive time of [{}]: {}", archived.get(i), failures[i].getMessage());
+        }
+      }
+    } catch (IOException ex) {
+      log.warn("Failed to set the archive time of a batch of {} files: {}", archived.size(), ex.getMessage());
+    }
+  }
+}
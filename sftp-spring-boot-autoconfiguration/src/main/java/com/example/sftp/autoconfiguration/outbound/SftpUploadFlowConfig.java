@@ -5,27 +5,41 @@ import com.example.sftp.autoconfiguration.SftpFileProcessor;
 import com.example.sftp.autoconfiguration.SftpProperties;
 import com.example.sftp.autoconfiguration.SftpProperties.SftpServerConfig;
 import com.example.sftp.autoconfiguration.SftpSessionFactoryProvider;
+import com.example.sftp.autoconfiguration.session.PosixRenameSessionFactory;
+import com.example.sftp.autoconfiguration.transformers.PayloadUploadPreProcessorTransformer;
 import com.example.sftp.autoconfiguration.transformers.UploadPreProcessorTransformer;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
 import org.springframework.context.ApplicationContext;
 import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.dsl.IntegrationFlowBuilder;
 import org.springframework.integration.dsl.context.IntegrationFlowContext;
 import org.springframework.integration.file.dsl.Files;
-import org.springframework.integration.file.filters.CompositeFileListFilter;
+import org.springframework.integration.file.filters.FileListFilter;
+import org.springframework.integration.file.remote.session.SessionFactory;
 import org.springframework.integration.handler.advice.ExpressionEvaluatingRequestHandlerAdvice;
-import org.springframework.integration.sftp.dsl.Sftp;
+import org.springframework.integration.util.CallerBlocksPolicy;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.StringUtils;
 
 import java.io.File;
+import java.util.concurrent.Executor;
 
 @Slf4j
 public class SftpUploadFlowConfig extends AbstractSftpFlowConfig {
 
+  private static final int UPLOAD_BATCH_PER_WORKER = 10;
+  private static final int DEFAULT_CHUNKED_UPLOAD_PARALLELISM = 4;
+  private static final long DEFAULT_REMOTE_DIRECTORY_CACHE_TTL = 300_000L;
+
   private final SftpProperties sftpProperties;
   private final SftpSessionFactoryProvider factoryProvider;
   private final ExpressionEvaluatingRequestHandlerAdvice errorHandlingAdvice;
   private final PlatformTransactionManager transactionManager;
   private final SftpServerConfig serverConfig;
+  private RemoteDirectoryCache directoryCache;
 
   public SftpUploadFlowConfig(ApplicationContext applicationContext,
                               SftpProperties sftpProperties,
@@ -57,13 +71,10 @@ public class SftpUploadFlowConfig extends AbstractSftpFlowConfig {
     // Create the local file source using SI 6.x DSL.
     var fileSourceSpec = Files.inboundAdapter(localUploadDirectory)
         .autoCreateDirectory(true);
-    CompositeFileListFilter<File> compositeFilter = createLocalCompositeFilter(serverConfig);
-    if (compositeFilter != null) {
-      fileSourceSpec.filter(compositeFilter);
-    }
+    FileListFilter<File> localFilter = configureLocalFileSource(serverConfig, fileSourceSpec, "upload");
 
-    // Build poller metadata and assign a custom executor.
-    var pollerMetadata = buildPollerMetadata(sftpProperties.getDefaultPoller(), errorHandlingAdvice);
+    // Build poller metadata (watching the directory if configured) and assign a custom executor.
+    var pollerMetadata = buildLocalPollerMetadata(serverConfig, errorHandlingAdvice);
     pollerMetadata.setTaskExecutor(buildTaskExecutor());
 
     SftpProperties.RetryProperties effectiveRetry =
@@ -76,23 +87,180 @@ public class SftpUploadFlowConfig extends AbstractSftpFlowConfig {
     UploadPreProcessorTransformer transformer =
         new UploadPreProcessorTransformer(fileProcessor, serverName, effectiveRetry);
 
-    // Get SFTP session factory for outbound adapter.
-    var factory = factoryProvider.getFactory(serverName);
+    // Get SFTP session factory for the upload handler; temporary files are renamed with posix-rename if possible.
+    var factory = new PosixRenameSessionFactory(factoryProvider.getFactory(serverName), serverName);
 
     // Build integration flow:
     // - Read file from the local directory.
     // - Enrich with flow-identifying header.
+    // - Optionally dispatch to a bounded pool of upload workers.
     // - Pre-process the file in a transaction.
-    // - Finally, handle the file using an outbound adapter which uploads the file to the remote directory.
-    IntegrationFlow uploadFlow = IntegrationFlow.from(fileSourceSpec.getObject(), c -> c.poller(pollerMetadata))
-        .enrichHeaders(h -> h.header("sftpFlowId", flowId))
+    // - Finally, upload the file to the remote directory through a temporary file, resuming failed attempts.
+    int concurrency = effectiveUploadConcurrency();
+    IntegrationFlowBuilder flowBuilder = IntegrationFlow.from(fileSourceSpec.getObject(), c -> c.poller(pollerMetadata))
+        .enrichHeaders(h -> h.header("sftpFlowId", flowId));
+    if (concurrency > 1) {
+      // Hand a batch of files to a bounded worker pool on each poll; the poller blocks while all workers
+      // are busy, so files are only picked up when a session can be used for them.
+      pollerMetadata.setMaxMessagesPerPoll((long) concurrency * UPLOAD_BATCH_PER_WORKER);
+      flowBuilder.channel(c -> c.executor(buildUploadExecutor(concurrency, serverName)));
+      log.info("Uploading up to {} files concurrently for server [{}].", concurrency, serverName);
+    }
+    SftpUploadHandler uploadHandler = createUploadHandler(factory, effectiveRetry, serverName);
+    uploadHandler.setDisposition(createDisposition(localUploadDirectory, localFilter, serverName));
+    IntegrationFlow uploadFlow = flowBuilder
         .transform(File.class, file -> executeInTransaction(file, transformer::transform, transactionManager))
-        .handle(Sftp.outboundAdapter(factory)
-                .remoteDirectory(serverConfig.getTo())
-                .autoCreateDirectory(true),
-            spec -> spec.advice(errorHandlingAdvice))
+        .handle(uploadHandler, spec -> spec.advice(errorHandlingAdvice))
         .get();
 
-    registerFlow(flowId, uploadFlow);
+    registerFlow(flowId, uploadFlow, localFilter);
+    registerPayloadUploadFlow(fileProcessor, factory, effectiveRetry, serverName);
+  }
+
+  /**
+   * Registers the flow uploading in-memory content sent to the server's upload channel, e.g. by the
+   * {@link SftpUploadGateway}. The content (a byte array, input stream or resource) is written straight to
+   * the remote temporary file, named after the {@code file_name} header, without staging it to local disk.
+   * The handler has no error-handling advice: the channel is a direct channel, so a failed upload is thrown
+   * back to the sender instead of being reported to the error channel.
+   */
+  private void registerPayloadUploadFlow(SftpFileProcessor fileProcessor,
+                                         SessionFactory<SftpClient.DirEntry> factory,
+                                         SftpProperties.RetryProperties effectiveRetry,
+                                         String serverName) {
+    String flowId = "sftpPayloadUploadFlow-" + serverName;
+    String channelName = SftpUploadGateway.uploadChannelName(serverName);
+    log.info("Registering SFTP payload upload flow [{}] on channel [{}] for server [{}].", flowId, channelName, serverName);
+
+    PayloadUploadPreProcessorTransformer transformer =
+        new PayloadUploadPreProcessorTransformer(fileProcessor, serverName, effectiveRetry);
+
+    IntegrationFlow payloadFlow = IntegrationFlow.from(channelName)
+        .enrichHeaders(h -> h.header("sftpFlowId", flowId))
+        .transform(Message.class, message -> executeInTransaction((Message<?>) message, transformer::transform, transactionManager))
+        .handle(createUploadHandler(factory, effectiveRetry, serverName))
+        .get();
+
+    registerFlow(flowId, payloadFlow);
+  }
+
+  /**
+   * Creates what happens to local files after their upload, or null to leave them in place. Sent and
+   * quarantined files go to directories next to the upload directory by default, so that they are never
+   * scanned again.
+   */
+  private LocalFileDisposition createDisposition(File localUploadDirectory, FileListFilter<File> localFilter,
+                                                 String serverName) {
+    String action = serverConfig.getUploadDisposition();
+    if (!StringUtils.hasText(action) || LocalFileDisposition.KEEP.equalsIgnoreCase(action)) {
+      return null;
+    }
+    File sentDirectory = StringUtils.hasText(serverConfig.getUploadSentDir())
+        ? new File(serverConfig.getUploadSentDir()) : new File(localUploadDirectory.getPath() + ".sent");
+    File quarantineDirectory = StringUtils.hasText(serverConfig.getUploadQuarantineDir())
+        ? new File(serverConfig.getUploadQuarantineDir()) : new File(localUploadDirectory.getPath() + ".quarantine");
+    log.info("Uploaded files of server [{}] are disposed of with action [{}]; failed files go to {}.",
+        serverName, action, quarantineDirectory);
+    return new LocalFileDisposition(action, sentDirectory, quarantineDirectory,
+        buildDispositionExecutor(serverName), localFilter);
+  }
+
+  /**
+   * Builds the single-threaded executor moving or deleting local files after their upload.
+   */
+  private Executor buildDispositionExecutor(String serverName) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setAllowCoreThreadTimeOut(true);
+    executor.setDaemon(true);
+    executor.setThreadNamePrefix("SftpDisposition-" + serverName + "-");
+    executor.initialize();
+    return executor;
+  }
+
+  /**
+   * Creates the handler that uploads files to the remote 'to' directory. Unless resumable uploads are
+   * disabled for the server, a retried upload continues from the remote temporary file. Files above the
+   * chunked upload threshold are written in concurrent ranges, as many as the session pool allows. Remote
+   * directories found or created are remembered for the directory cache TTL, shared by all handlers of the
+   * server.
+   */
+  private SftpUploadHandler createUploadHandler(SessionFactory<SftpClient.DirEntry> factory,
+                                             SftpProperties.RetryProperties effectiveRetry,
+                                             String serverName) {
+    SftpUploadHandler handler = createChunkingUploadHandler(factory, effectiveRetry, serverName);
+    handler.setKeepShardPaths(Boolean.TRUE.equals(serverConfig.getRemoteShardPaths()));
+    long directoryCacheTtl = serverConfig.getRemoteDirectoryCacheTtl() != null
+        ? serverConfig.getRemoteDirectoryCacheTtl() : DEFAULT_REMOTE_DIRECTORY_CACHE_TTL;
+    if (directoryCacheTtl > 0) {
+      if (directoryCache == null) {
+        directoryCache = new RemoteDirectoryCache(directoryCacheTtl);
+      }
+      handler.setDirectoryCache(directoryCache);
+    }
+    return handler;
+  }
+
+  private SftpUploadHandler createChunkingUploadHandler(SessionFactory<SftpClient.DirEntry> factory,
+                                                        SftpProperties.RetryProperties effectiveRetry,
+                                                        String serverName) {
+    boolean resume = !Boolean.FALSE.equals(serverConfig.getResumableUpload());
+    if (serverConfig.getChunkedUploadThreshold() == null) {
+      return new SftpUploadHandler(factory, serverConfig.getTo(), resume, effectiveRetry, serverName);
+    }
+    // Every concurrent upload may split into this many ranges, each holding a session of the pool.
+    int requested = serverConfig.getChunkedUploadParallelism() != null
+        ? serverConfig.getChunkedUploadParallelism() : DEFAULT_CHUNKED_UPLOAD_PARALLELISM;
+    int chunks = Math.min(requested, Math.max(1, serverConfig.getCacheSize() / effectiveUploadConcurrency()));
+    if (chunks < 2) {
+      log.warn("Chunked uploads are disabled for server [{}]: its session cache is too small for more than one chunk per upload.", serverName);
+      return new SftpUploadHandler(factory, serverConfig.getTo(), resume, effectiveRetry, serverName);
+    }
+    return new SftpUploadHandler(factory, serverConfig.getTo(), resume, effectiveRetry, serverName,
+        serverConfig.getChunkedUploadThreshold(), chunks, buildChunkExecutor(chunks * effectiveUploadConcurrency(), serverName));
+  }
+
+  /**
+   * Builds the executor writing the ranges of chunked uploads.
+   */
+  private Executor buildChunkExecutor(int threads, String serverName) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setAllowCoreThreadTimeOut(true);
+    executor.setDaemon(true);
+    executor.setThreadNamePrefix("SftpChunk-" + serverName + "-");
+    executor.initialize();
+    return executor;
+  }
+
+  /**
+   * Returns the number of files uploaded concurrently, limited to the size of the server's session pool
+   * so that every worker can hold its own session.
+   */
+  int effectiveUploadConcurrency() {
+    int requested = serverConfig.getUploadConcurrency() != null ? serverConfig.getUploadConcurrency() : 1;
+    if (requested > serverConfig.getCacheSize()) {
+      log.warn("Upload concurrency {} for server [{}] exceeds its session cache size; using {}.",
+          requested, serverConfig.getName(), serverConfig.getCacheSize());
+      return serverConfig.getCacheSize();
+    }
+    return requested;
+  }
+
+  /**
+   * Builds the executor of the upload workers. Files are handed to the workers without a queue: while all
+   * workers are busy, submitting the next file blocks the caller (the poller) until one of them is free.
+   */
+  ThreadPoolTaskExecutor buildUploadExecutor(int concurrency, String serverName) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(concurrency);
+    executor.setMaxPoolSize(concurrency);
+    executor.setQueueCapacity(0);
+    executor.setRejectedExecutionHandler(new CallerBlocksPolicy(Long.MAX_VALUE));
+    executor.setThreadNamePrefix("SftpUpload-" + serverName + "-");
+    executor.initialize();
+    return executor;
   }
 }
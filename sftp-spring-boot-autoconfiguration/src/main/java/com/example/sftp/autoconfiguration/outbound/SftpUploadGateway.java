@@ -0,0 +1,59 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.core.MessagingTemplate;
+import org.springframework.integration.file.FileHeaders;
+import org.springframework.integration.support.MessageBuilder;
+
+/**
+ * Uploads in-memory content to a configured SFTP server without staging it to local disk first.
+ * <p>
+ * The content is sent to the server's upload channel ({@code sftpUploadOutboundChannel-<server>}) and goes
+ * through the same pre-processing, retries and temporary file as files picked up from the local upload
+ * directory. Byte arrays and resources that can be reopened are retried; an input stream can only be read
+ * once, so its upload is attempted once. The call returns when the upload has completed, and throws if it
+ * failed.
+ * </p>
+ */
+@Slf4j
+public class SftpUploadGateway {
+
+  private final MessagingTemplate messagingTemplate;
+
+  /**
+   * Constructs the gateway.
+   *
+   * @param beanFactory the bean factory used to resolve the upload channels by name
+   */
+  public SftpUploadGateway(BeanFactory beanFactory) {
+    this.messagingTemplate = new MessagingTemplate();
+    this.messagingTemplate.setBeanFactory(beanFactory);
+  }
+
+  /**
+   * Returns the name of the channel accepting in-memory uploads for the given server.
+   *
+   * @param serverName the server name
+   * @return the upload channel name (e.g. "sftpUploadOutboundChannel-myServer")
+   */
+  public static String uploadChannelName(String serverName) {
+    return "sftpUploadOutboundChannel-" + serverName;
+  }
+
+  /**
+   * Uploads the given content to the remote 'to' directory of the server.
+   *
+   * @param serverName the SFTP server name
+   * @param fileName   the remote file name, without any directory
+   * @param content    a {@code byte[]}, {@code InputStream} or {@code Resource}
+   * @throws org.springframework.messaging.MessagingException if the file name is not a plain name or the
+   *                                                          upload failed
+   */
+  public void upload(String serverName, String fileName, Object content) {
+    log.debug("Uploading in-memory content as [{}] to server [{}].", fileName, serverName);
+    messagingTemplate.send(uploadChannelName(serverName), MessageBuilder.withPayload(content)
+        .setHeader(FileHeaders.FILENAME, fileName)
+        .build());
+  }
+}
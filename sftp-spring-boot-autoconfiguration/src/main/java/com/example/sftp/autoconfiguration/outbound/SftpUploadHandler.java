@@ -0,0 +1,447 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import com.example.sftp.autoconfiguration.SftpProperties.RetryProperties;
+import com.example.sftp.autoconfiguration.util.RetryUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.extensions.openssh.OpenSSHFsyncExtension;
+import org.apache.sshd.sftp.client.impl.AbstractSftpClient;
+import org.apache.sshd.sftp.client.impl.SftpOutputStreamAsync;
+import org.apache.sshd.sftp.common.SftpConstants;
+import org.apache.sshd.sftp.common.SftpException;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
+import org.springframework.integration.file.FileHeaders;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.handler.AbstractMessageHandler;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Uploads {@link File} payloads to a remote directory through a temporary file that is renamed to the
+ * final name once complete, retrying failed attempts with the server's retry settings. A file is uploaded
+ * under its own name, whatever its shard below the local directory, unless shard paths are kept: it then keeps
+ * its path below the local directory (the {@link FileHeaders#RELATIVE_PATH} header), so that files with the
+ * same name in different shards do not collide, and missing remote subdirectories are created. {@code byte[]},
+ * {@link Resource} and {@link InputStream} payloads are streamed the same way to the file named by the
+ * {@link FileHeaders#FILENAME} header, which must be a plain name within the remote directory; streams,
+ * which cannot be read twice, get a single attempt.
+ * <p>
+ * When resuming is enabled, the size and modification time of the local file are recorded in a small
+ * {@code .resume.writing} marker next to the remote temporary file before the upload starts. A retry, also
+ * after a restart of the application, stats the temporary file left by the failed attempt and appends the
+ * rest of the local file to it, provided the marker matches the local file. Otherwise, or when the remote
+ * file is larger than the local one, the upload starts over. The marker is removed with the upload.
+ * </p>
+ * <p>
+ * Files of at least {@code chunkThreshold} bytes are split into {@code chunks} disjoint ranges that are
+ * written concurrently into the temporary file, each over its own pooled session and read with positional
+ * reads from the local file. Each range is fsync'ed when the server supports {@code fsync@openssh.com}.
+ * Chunked uploads are not resumed; a failed attempt rewrites all ranges.
+ * </p>
+ */
+@Slf4j
+public class SftpUploadHandler extends AbstractMessageHandler {
+
+  static final String TEMPORARY_FILE_SUFFIX = ".writing";
+  static final String RESUME_MARKER_SUFFIX = ".resume" + TEMPORARY_FILE_SUFFIX;
+  private static final int CHUNK_BUFFER_SIZE = 32 * 1024;
+
+  private final SessionFactory<SftpClient.DirEntry> sessionFactory;
+  private final String remoteDirectory;
+  private final boolean resume;
+  private final RetryProperties retryProperties;
+  private final String serverName;
+  private final long chunkThreshold;
+  private final int chunks;
+  private final Executor chunkExecutor;
+  private RemoteDirectoryCache directoryCache;
+  private LocalFileDisposition disposition;
+  private boolean keepShardPaths;
+  /**
+   * Local size and modification time of the file behind each unfinished remote temporary file, as recorded
+   * in its marker.
+   */
+  private final Map<String, String> pendingUploads = new ConcurrentHashMap<>();
+
+  public SftpUploadHandler(SessionFactory<SftpClient.DirEntry> sessionFactory,
+                           String remoteDirectory,
+                           boolean resume,
+                           RetryProperties retryProperties,
+                           String serverName) {
+    this(sessionFactory, remoteDirectory, resume, retryProperties, serverName, Long.MAX_VALUE, 1, null);
+  }
+
+  /**
+   * Creates an upload handler that uploads large files in concurrent chunks.
+   *
+   * @param chunkThreshold the minimum size (in bytes) of a file uploaded in chunks.
+   * @param chunks         the number of ranges written concurrently; each uses its own session.
+   * @param chunkExecutor  the executor running the range uploads, or null to disable chunked uploads.
+   */
+  public SftpUploadHandler(SessionFactory<SftpClient.DirEntry> sessionFactory,
+                           String remoteDirectory,
+                           boolean resume,
+                           RetryProperties retryProperties,
+                           String serverName,
+                           long chunkThreshold,
+                           int chunks,
+                           Executor chunkExecutor) {
+    this.sessionFactory = sessionFactory;
+    this.remoteDirectory = remoteDirectory;
+    this.resume = resume;
+    this.retryProperties = retryProperties;
+    this.serverName = serverName;
+    this.chunkThreshold = chunkThreshold;
+    this.chunks = chunks;
+    this.chunkExecutor = chunkExecutor;
+  }
+
+  /**
+   * Sets the cache of remote directories known to exist; without one every upload checks the directory.
+   */
+  public void setDirectoryCache(RemoteDirectoryCache directoryCache) {
+    this.directoryCache = directoryCache;
+  }
+
+  /**
+   * Sets what happens to a local file after its upload succeeded or failed; without one it is left in place.
+   */
+  public void setDisposition(LocalFileDisposition disposition) {
+    this.disposition = disposition;
+  }
+
+  /**
+   * Sets whether a file keeps its path below the local directory remotely, rather than being uploaded under its
+   * own name into the remote directory. Defaults to false.
+   */
+  public void setKeepShardPaths(boolean keepShardPaths) {
+    this.keepShardPaths = keepShardPaths;
+  }
+
+  @Override
+  protected void handleMessageInternal(Message<?> message) {
+    Object payload = message.getPayload();
+    if (payload instanceof File file) {
+      String relativePath = relativePath(message, file);
+      String remoteName = keepShardPaths ? relativePath : file.getName();
+      try {
+        runWithRetry(() -> upload(file, remoteName), true);
+      } catch (RuntimeException ex) {
+        if (disposition != null) {
+          disposition.failed(file, relativePath);
+        }
+        throw ex;
+      }
+      if (disposition != null) {
+        disposition.uploaded(file, relativePath);
+      }
+      return;
+    }
+    String fileName = message.getHeaders().get(FileHeaders.FILENAME, String.class);
+    if (!StringUtils.hasText(fileName)) {
+      throw new MessagingException(message, "A " + FileHeaders.FILENAME + " header is required to upload a "
+          + payload.getClass().getName() + " payload");
+    }
+    if (fileName.contains("/") || fileName.contains("\\") || ".".equals(fileName) || "..".equals(fileName)) {
+      throw new MessagingException(message, "The " + FileHeaders.FILENAME + " header must be a plain file name: " + fileName);
+    }
+    if (payload instanceof byte[] bytes) {
+      runWithRetry(() -> upload(new ByteArrayResource(bytes), fileName), true);
+    } else if (payload instanceof Resource resource) {
+      runWithRetry(() -> upload(resource, fileName), !resource.isOpen());
+    } else if (payload instanceof InputStream stream) {
+      // A stream cannot be read a second time, so it gets a single attempt.
+      runWithRetry(() -> upload(new InputStreamResource(stream), fileName), false);
+    } else {
+      throw new MessagingException(message, "Unsupported payload type for upload: " + payload.getClass().getName());
+    }
+  }
+
+  /**
+   * Runs the upload with the server's retry settings, or once if the content cannot be read again.
+   */
+  private void runWithRetry(IOAction upload, boolean retryable) {
+    RetryUtils.retryCall(() -> {
+      upload.run();
+      return null;
+    }, retryProperties.getInitialInterval(), retryProperties.getMultiplier(), retryProperties.getMaxInterval(),
+        retryable ? retryProperties.getMaxAttempts() : 1, serverName, "upload");
+  }
+
+  /**
+   * Returns the path of a local file below the local directory if known, or its name.
+   */
+  private static String relativePath(Message<?> message, File file) {
+    String relativePath = message.getHeaders().get(FileHeaders.RELATIVE_PATH, String.class);
+    if (!StringUtils.hasText(relativePath)) {
+      return file.getName();
+    }
+    String path = relativePath.replace(File.separatorChar, '/');
+    for (String segment : path.split("/", -1)) {
+      if (segment.isEmpty() || ".".equals(segment) || "..".equals(segment)) {
+        throw new MessagingException(message, "The " + FileHeaders.RELATIVE_PATH
+            + " header must be a relative path below the local directory: " + relativePath);
+      }
+    }
+    return path;
+  }
+
+  /**
+   * Uploads one file to the given path below the remote directory, continuing a previous partial upload
+   * when possible.
+   */
+  void upload(File file, String remoteName) throws IOException {
+    String target = remotePath(remoteName);
+    try {
+      doUpload(file, target);
+    } catch (IOException | RuntimeException ex) {
+      invalidateDirectory(parentOf(target));
+      throw ex;
+    }
+  }
+
+  /**
+   * Streams in-memory or resource content to the remote file {@code fileName}, through the temporary file.
+   */
+  void upload(InputStreamSource content, String fileName) throws IOException {
+    String target = remotePath(fileName);
+    String temporary = target + TEMPORARY_FILE_SUFFIX;
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession();
+         InputStream in = content.getInputStream()) {
+      makeDirectories(session, remoteDirectory);
+      session.write(in, temporary);
+      session.rename(temporary, target);
+      log.debug("Uploaded payload to [{}] on server [{}].", target, serverName);
+    } catch (IOException | RuntimeException ex) {
+      invalidateDirectory(remoteDirectory);
+      throw ex;
+    }
+  }
+
+  /**
+   * Forgets the given directory and its parents, so that the next upload checks them again.
+   */
+  private void invalidateDirectory(String directory) {
+    if (directoryCache == null) {
+      return;
+    }
+    for (String path = directory; !path.isEmpty(); path = parentOf(path)) {
+      directoryCache.invalidate(path);
+    }
+  }
+
+  private static String parentOf(String path) {
+    int end = path.lastIndexOf('/');
+    return end > 0 ? path.substring(0, end) : "";
+  }
+
+  private String remotePath(String fileName) {
+    return remoteDirectory.endsWith("/") ? remoteDirectory + fileName : remoteDirectory + "/" + fileName;
+  }
+
+  private void doUpload(File file, String target) throws IOException {
+    String directory = parentOf(target);
+    String temporary = target + TEMPORARY_FILE_SUFFIX;
+    String fingerprint = file.length() + ":" + file.lastModified();
+    if (chunkExecutor != null && chunks > 1 && file.length() >= chunkThreshold
+        && uploadInChunks(file, directory, temporary)) {
+      try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+        session.rename(temporary, target);
+      }
+      log.debug("Uploaded [{}] to [{}] in {} chunks on server [{}].", file, target, chunks, serverName);
+      return;
+    }
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      makeDirectories(session, directory);
+      long offset = resume ? resumeOffset(session, target, fingerprint, file.length()) : 0L;
+      try (InputStream in = new FileInputStream(file)) {
+        if (offset > 0) {
+          log.info("Resuming upload of [{}] to [{}] at byte {} of {}.", file, temporary, offset, file.length());
+          in.skipNBytes(offset);
+          session.append(in, temporary);
+        } else {
+          session.write(in, temporary);
+        }
+      }
+      session.rename(temporary, target);
+      if (pendingUploads.remove(temporary) != null) {
+        removeMarker(session, target + RESUME_MARKER_SUFFIX);
+      }
+      log.debug("Uploaded [{}] to [{}] on server [{}].", file, target, serverName);
+    }
+  }
+
+  /**
+   * Writes the file into the remote temporary file as concurrent ranges. Returns false, without writing,
+   * if the session's client cannot write at an offset.
+   */
+  private boolean uploadInChunks(File file, String directory, String temporary) throws IOException {
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      if (!(session.getClientInstance() instanceof AbstractSftpClient)) {
+        return false;
+      }
+      makeDirectories(session, directory);
+      session.write(InputStream.nullInputStream(), temporary);
+    }
+    long length = file.length();
+    long rangeSize = (length + chunks - 1) / chunks;
+    List<CompletableFuture<Void>> ranges = new ArrayList<>();
+    for (long start = 0; start < length; start += rangeSize) {
+      long from = start;
+      long to = Math.min(start + rangeSize, length);
+      ranges.add(CompletableFuture.runAsync(() -> uploadRange(file, temporary, from, to), chunkExecutor));
+    }
+    try {
+      CompletableFuture.allOf(ranges.toArray(CompletableFuture[]::new)).join();
+    } catch (CompletionException ex) {
+      ranges.forEach(range -> range.cancel(false));
+      if (ex.getCause() instanceof UncheckedIOException io) {
+        throw io.getCause();
+      }
+      throw ex;
+    }
+    return true;
+  }
+
+  private void uploadRange(File file, String temporary, long from, long to) {
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession();
+         FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      AbstractSftpClient client = (AbstractSftpClient) session.getClientInstance();
+      try (SftpClient.CloseableHandle handle = client.open(temporary, SftpClient.OpenMode.Write)) {
+        SftpOutputStreamAsync out = new SftpOutputStreamAsync(client, CHUNK_BUFFER_SIZE, temporary, handle, false);
+        out.setOffset(from);
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BUFFER_SIZE);
+        long position = from;
+        while (position < to) {
+          buffer.clear().limit((int) Math.min(CHUNK_BUFFER_SIZE, to - position));
+          int read = channel.read(buffer, position);
+          if (read < 0) {
+            throw new IOException("Local file " + file + " ended at " + position + " while uploading chunk " + from + "-" + to);
+          }
+          out.write(buffer.array(), 0, read);
+          position += read;
+        }
+        out.close();
+        OpenSSHFsyncExtension fsync = client.getExtension(OpenSSHFsyncExtension.class);
+        if (fsync != null && fsync.isSupported()) {
+          fsync.fsync(handle);
+        }
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to upload bytes " + from + "-" + to + " of " + file, ex);
+    }
+  }
+
+  /**
+   * Returns the size of the remote temporary file if its marker shows it was started from the same local
+   * file, or 0 after recording the local file in the marker for a fresh upload.
+   */
+  private long resumeOffset(Session<SftpClient.DirEntry> session, String target, String fingerprint, long length)
+      throws IOException {
+    if (!(session.getClientInstance() instanceof SftpClient client)) {
+      return 0L;
+    }
+    String temporary = target + TEMPORARY_FILE_SUFFIX;
+    String marker = target + RESUME_MARKER_SUFFIX;
+    String started = pendingUploads.get(temporary);
+    if (started == null) {
+      started = readMarker(client, marker);
+    }
+    if (fingerprint.equals(started)) {
+      long offset = remoteSize(session, temporary);
+      if (offset <= length) {
+        pendingUploads.put(temporary, fingerprint);
+        return offset;
+      }
+    }
+    try (OutputStream out = client.write(marker)) {
+      out.write(fingerprint.getBytes(StandardCharsets.UTF_8));
+    }
+    pendingUploads.put(temporary, fingerprint);
+    return 0L;
+  }
+
+  private static String readMarker(SftpClient client, String marker) throws IOException {
+    try (InputStream in = client.read(marker)) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    } catch (SftpException ex) {
+      if (ex.getStatus() == SftpConstants.SSH_FX_NO_SUCH_FILE) {
+        return null;
+      }
+      throw ex;
+    }
+  }
+
+  private void removeMarker(Session<SftpClient.DirEntry> session, String marker) {
+    try {
+      ((SftpClient) session.getClientInstance()).remove(marker);
+    } catch (IOException ex) {
+      log.warn("Failed to remove resume marker [{}] on server [{}]: {}", marker, serverName, ex.getMessage());
+    }
+  }
+
+  private static long remoteSize(Session<SftpClient.DirEntry> session, String path) throws IOException {
+    if (!(session.getClientInstance() instanceof SftpClient client)) {
+      return 0L;
+    }
+    try {
+      return client.stat(path).getSize();
+    } catch (SftpException ex) {
+      if (ex.getStatus() == SftpConstants.SSH_FX_NO_SUCH_FILE) {
+        return 0L;
+      }
+      throw ex;
+    }
+  }
+
+  private void makeDirectories(Session<SftpClient.DirEntry> session, String directory) throws IOException {
+    if (directory.isEmpty() || (directoryCache != null && directoryCache.isKnown(directory))) {
+      return;
+    }
+    if (!session.exists(directory)) {
+      int parentEnd = directory.lastIndexOf('/');
+      if (parentEnd > 0) {
+        makeDirectories(session, directory.substring(0, parentEnd));
+      }
+      try {
+        session.mkdir(directory);
+      } catch (IOException ex) {
+        // Another upload may have created it in the meantime.
+        if (!session.exists(directory)) {
+          throw ex;
+        }
+      }
+    }
+    if (directoryCache != null) {
+      directoryCache.markExisting(directory);
+    }
+  }
+
+  @FunctionalInterface
+  private interface IOAction {
+    void run() throws IOException;
+  }
+}
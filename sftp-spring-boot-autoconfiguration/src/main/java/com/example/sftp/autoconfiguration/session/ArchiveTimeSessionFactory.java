@@ -0,0 +1,51 @@
+package com.example.sftp.autoconfiguration.session;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A session factory decorator whose sessions set the modification time of a renamed file to the time of the
+ * rename. A rename keeps the modification time of the file, so without it a file renamed into an archive
+ * would be aged by archive retention from when it was last written rather than from when it was archived.
+ * <p>
+ * A failure to set the time is logged and does not fail the rename, which has already happened.
+ * </p>
+ */
+@Slf4j
+public class ArchiveTimeSessionFactory implements SessionFactory<SftpClient.DirEntry> {
+
+  private final SessionFactory<SftpClient.DirEntry> delegate;
+
+  public ArchiveTimeSessionFactory(SessionFactory<SftpClient.DirEntry> delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public Session<SftpClient.DirEntry> getSession() {
+    return new ArchiveTimeSession(delegate.getSession());
+  }
+
+  /**
+   * The session returned by {@link ArchiveTimeSessionFactory}.
+   */
+  static class ArchiveTimeSession extends DelegatingSession {
+
+    ArchiveTimeSession(Session<SftpClient.DirEntry> target) {
+      super(target);
+    }
+
+    @Override
+    public void rename(String pathFrom, String pathTo) throws IOException {
+      target.rename(pathFrom, pathTo);
+      Exception failure = new PipelinedSftpOperations(target).setModifyTime(List.of(pathTo), System.currentTimeMillis())[0];
+      if (failure != null) {
+        log.warn("Failed to set the archive time of [{}]: {}", pathTo, failure.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.example.sftp.autoconfiguration.session;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.remote.session.Session;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A directory lister that {@code stat}s the directory first and reuses the previous listing when the
+ * directory's modification time and size are unchanged.
+ * <p>
+ * Creating, deleting or renaming an entry updates the directory's modification time, but rewriting a
+ * file in place does not, and servers with coarse (one second) timestamps can miss a change made in the
+ * same second as the previous listing. A full listing is therefore forced once the cached listing is
+ * older than {@code maxAgeMillis}. Servers that do not maintain directory modification times should not
+ * use this lister.
+ * </p>
+ */
+@Slf4j
+public class CachingDirectoryLister implements RemoteDirectoryLister {
+
+  private final RemoteDirectoryLister delegate;
+  private final long maxAgeMillis;
+  private final Map<String, CachedListing> listings = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a caching lister.
+   *
+   * @param delegate     the lister used for a full listing.
+   * @param maxAgeMillis the maximum age of a reused listing.
+   */
+  public CachingDirectoryLister(RemoteDirectoryLister delegate, long maxAgeMillis) {
+    this.delegate = delegate;
+    this.maxAgeMillis = maxAgeMillis;
+  }
+
+  @Override
+  public SftpClient.DirEntry[] list(Session<SftpClient.DirEntry> session, String path) throws IOException {
+    if (!(session.getClientInstance() instanceof SftpClient client)) {
+      return delegate.list(session, path);
+    }
+    // Stat before listing so that a change made during the listing is seen on the next poll.
+    SftpClient.Attributes attributes = client.stat(path);
+    if (!attributes.isDirectory() || attributes.getModifyTime() == null) {
+      return delegate.list(session, path);
+    }
+    long modified = attributes.getModifyTime().toMillis();
+    long size = attributes.getSize();
+    long now = System.currentTimeMillis();
+    CachedListing cached = listings.get(path);
+    if (cached != null && cached.modified == modified && cached.size == size && now - cached.listedAt < maxAgeMillis) {
+      log.debug("Remote directory [{}] unchanged since last listing; reusing {} cached entries.", path, cached.entries.length);
+      return cached.entries.clone();
+    }
+    SftpClient.DirEntry[] entries = delegate.list(session, path);
+    listings.put(path, new CachedListing(modified, size, now, entries.clone()));
+    return entries;
+  }
+
+  /**
+   * Drops all cached listings.
+   */
+  public void clear() {
+    listings.clear();
+  }
+
+  private record CachedListing(long modified, long size, long listedAt, SftpClient.DirEntry[] entries) {
+  }
+}
@@ -0,0 +1,27 @@
+package com.example.sftp.autoconfiguration.session;
+
+import java.util.Set;
+
+/**
+ * Told which files a remote directory no longer holds, once a listing has read the directory to its end.
+ * Listings cut short (e.g. by a streaming listing's {@code maxFetchSize}) are not reported, as a file they
+ * did not return may still exist.
+ */
+public interface CompleteListingListener {
+
+  /**
+   * Called before a remote directory is listed.
+   *
+   * @param path the remote directory.
+   * @return the file names the listing should look for; an empty set skips the report.
+   */
+  Set<String> listingStarted(String path);
+
+  /**
+   * Called once the remote directory has been listed completely.
+   *
+   * @param path    the remote directory.
+   * @param missing the names returned by {@link #listingStarted(String)} that the listing did not contain.
+   */
+  void listingCompleted(String path, Set<String> missing);
+}
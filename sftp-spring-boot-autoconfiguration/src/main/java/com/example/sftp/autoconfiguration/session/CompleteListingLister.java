@@ -0,0 +1,37 @@
+package com.example.sftp.autoconfiguration.session;
+
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.remote.session.Session;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A directory lister that reports the listings of a {@code delegate} returning every file of the directory
+ * (a plain, cached or recursive listing) to a {@link CompleteListingListener}. A failed listing is not
+ * reported.
+ */
+public class CompleteListingLister implements RemoteDirectoryLister {
+
+  private final RemoteDirectoryLister delegate;
+  private final CompleteListingListener listener;
+
+  public CompleteListingLister(RemoteDirectoryLister delegate, CompleteListingListener listener) {
+    this.delegate = delegate;
+    this.listener = listener;
+  }
+
+  @Override
+  public SftpClient.DirEntry[] list(Session<SftpClient.DirEntry> session, String path) throws IOException {
+    Set<String> missing = new HashSet<>(listener.listingStarted(path));
+    SftpClient.DirEntry[] entries = delegate.list(session, path);
+    if (!missing.isEmpty()) {
+      for (SftpClient.DirEntry entry : entries) {
+        missing.remove(entry.getFilename());
+      }
+      listener.listingCompleted(path, missing);
+    }
+    return entries;
+  }
+}
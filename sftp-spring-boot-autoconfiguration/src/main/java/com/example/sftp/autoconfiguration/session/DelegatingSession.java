@@ -0,0 +1,111 @@
+package com.example.sftp.autoconfiguration.session;
+
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.remote.session.Session;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A session that forwards every operation to a target session. The session decorators of this package
+ * extend it and override only the operations they change.
+ */
+abstract class DelegatingSession implements Session<SftpClient.DirEntry> {
+
+  protected final Session<SftpClient.DirEntry> target;
+
+  protected DelegatingSession(Session<SftpClient.DirEntry> target) {
+    this.target = target;
+  }
+
+  @Override
+  public SftpClient.DirEntry[] list(String path) throws IOException {
+    return target.list(path);
+  }
+
+  @Override
+  public boolean remove(String path) throws IOException {
+    return target.remove(path);
+  }
+
+  @Override
+  public void read(String source, OutputStream outputStream) throws IOException {
+    target.read(source, outputStream);
+  }
+
+  @Override
+  public void write(InputStream inputStream, String destination) throws IOException {
+    target.write(inputStream, destination);
+  }
+
+  @Override
+  public void append(InputStream inputStream, String destination) throws IOException {
+    target.append(inputStream, destination);
+  }
+
+  @Override
+  public boolean mkdir(String directory) throws IOException {
+    return target.mkdir(directory);
+  }
+
+  @Override
+  public boolean rmdir(String directory) throws IOException {
+    return target.rmdir(directory);
+  }
+
+  @Override
+  public void rename(String pathFrom, String pathTo) throws IOException {
+    target.rename(pathFrom, pathTo);
+  }
+
+  @Override
+  public void close() {
+    target.close();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return target.isOpen();
+  }
+
+  @Override
+  public boolean exists(String path) throws IOException {
+    return target.exists(path);
+  }
+
+  @Override
+  public String[] listNames(String path) throws IOException {
+    return target.listNames(path);
+  }
+
+  @Override
+  public InputStream readRaw(String source) throws IOException {
+    return target.readRaw(source);
+  }
+
+  @Override
+  public boolean finalizeRaw() throws IOException {
+    return target.finalizeRaw();
+  }
+
+  @Override
+  public Object getClientInstance() {
+    return target.getClientInstance();
+  }
+
+  @Override
+  public String getHostPort() {
+    return target.getHostPort();
+  }
+
+  @Override
+  public boolean test() {
+    return target.test();
+  }
+
+  @Override
+  public void dirty() {
+    target.dirty();
+  }
+}
@@ -0,0 +1,45 @@
+package com.example.sftp.autoconfiguration.session;
+
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+
+import java.io.IOException;
+
+/**
+ * A session factory decorator whose sessions delegate {@link Session#list(String)} to a
+ * {@link RemoteDirectoryLister}. Every other operation goes straight to the wrapped session.
+ */
+public class ListingSessionFactory implements SessionFactory<SftpClient.DirEntry> {
+
+  private final SessionFactory<SftpClient.DirEntry> delegate;
+  private final RemoteDirectoryLister lister;
+
+  public ListingSessionFactory(SessionFactory<SftpClient.DirEntry> delegate, RemoteDirectoryLister lister) {
+    this.delegate = delegate;
+    this.lister = lister;
+  }
+
+  @Override
+  public Session<SftpClient.DirEntry> getSession() {
+    return new ListingSession(delegate.getSession(), lister);
+  }
+
+  /**
+   * The session returned by {@link ListingSessionFactory}.
+   */
+  static class ListingSession extends DelegatingSession {
+
+    private final RemoteDirectoryLister lister;
+
+    ListingSession(Session<SftpClient.DirEntry> target, RemoteDirectoryLister lister) {
+      super(target);
+      this.lister = lister;
+    }
+
+    @Override
+    public SftpClient.DirEntry[] list(String path) throws IOException {
+      return lister.list(target, path);
+    }
+  }
+}
@@ -0,0 +1,290 @@
+package com.example.sftp.autoconfiguration.session;
+
+import org.apache.sshd.common.util.buffer.Buffer;
+import org.apache.sshd.common.util.buffer.ByteArrayBuffer;
+import org.apache.sshd.sftp.client.RawSftpClient;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.extensions.openssh.OpenSSHPosixRenameExtension;
+import org.apache.sshd.sftp.client.impl.SftpResponse;
+import org.apache.sshd.sftp.client.impl.SftpStatus;
+import org.apache.sshd.sftp.common.SftpConstants;
+import org.apache.sshd.sftp.common.SftpException;
+import org.apache.sshd.sftp.common.extensions.openssh.PosixRenameExtensionParser;
+import org.springframework.integration.file.remote.session.Session;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Runs batches of remote metadata operations (remove, rename, mkdir, modification times, existence checks) over
+ * one session with several requests in flight.
+ * <p>
+ * Up to {@code maxInFlight} requests of a batch are sent before the first reply is read; each reply is
+ * matched to its request by id, and a new request is sent as soon as one is answered. A batch therefore costs
+ * about one round trip per {@code maxInFlight} operations instead of one per operation. Renames use
+ * {@code posix-rename@openssh.com} when the server supports it, so that existing targets are replaced.
+ * </p>
+ * <p>
+ * Sessions without a raw SFTP client run the operations one by one through the session. Each operation
+ * fails on its own: the result of a batch holds the failure of each operation, or null if it succeeded.
+ * </p>
+ */
+public class PipelinedSftpOperations {
+
+  /**
+   * Default number of requests in flight.
+   */
+  public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
+  private final Session<SftpClient.DirEntry> session;
+  private final int maxInFlight;
+
+  public PipelinedSftpOperations(Session<SftpClient.DirEntry> session) {
+    this(session, DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  /**
+   * Creates the operations of a session.
+   *
+   * @param session     the session the operations run on; it stays owned by the caller.
+   * @param maxInFlight the maximum number of requests sent but not answered yet.
+   */
+  public PipelinedSftpOperations(Session<SftpClient.DirEntry> session, int maxInFlight) {
+    this.session = session;
+    this.maxInFlight = Math.max(maxInFlight, 1);
+  }
+
+  /**
+   * Removes remote files.
+   *
+   * @param paths the files to remove.
+   * @return the failure of each removal, or null where it succeeded.
+   * @throws IOException if the session fails.
+   */
+  public Exception[] remove(List<String> paths) throws IOException {
+    if (!(session.getClientInstance() instanceof RawSftpClient raw)) {
+      Exception[] failures = new Exception[paths.size()];
+      for (int i = 0; i < failures.length; i++) {
+        try {
+          session.remove(paths.get(i));
+        } catch (IOException ex) {
+          failures[i] = ex;
+        }
+      }
+      return failures;
+    }
+    Exception[] failures = new Exception[paths.size()];
+    pipeline(raw, SftpConstants.SSH_FXP_REMOVE, paths.size(), i -> {
+      Buffer buffer = new ByteArrayBuffer();
+      buffer.putString(paths.get(i), StandardCharsets.UTF_8);
+      return buffer;
+    }, (i, response) -> failures[i] = statusFailure(response));
+    return failures;
+  }
+
+  /**
+   * Renames remote files, replacing existing targets where the server allows it.
+   *
+   * @param sources the files to rename.
+   * @param targets the new path of each file.
+   * @return the failure of each rename, or null where it succeeded.
+   * @throws IOException if the session fails.
+   */
+  public Exception[] rename(List<String> sources, List<String> targets) throws IOException {
+    if (!(session.getClientInstance() instanceof RawSftpClient raw)
+        || !(session.getClientInstance() instanceof SftpClient client)) {
+      Exception[] failures = new Exception[sources.size()];
+      for (int i = 0; i < failures.length; i++) {
+        try {
+          session.rename(sources.get(i), targets.get(i));
+        } catch (IOException ex) {
+          failures[i] = ex;
+        }
+      }
+      return failures;
+    }
+    boolean posix = client.getExtension(OpenSSHPosixRenameExtension.class).isSupported();
+    boolean overwrite = !posix && client.getVersion() >= SftpConstants.SFTP_V5;
+    Exception[] failures = new Exception[sources.size()];
+    pipeline(raw, posix ? SftpConstants.SSH_FXP_EXTENDED : SftpConstants.SSH_FXP_RENAME, sources.size(), i -> {
+      Buffer buffer = new ByteArrayBuffer();
+      if (posix) {
+        buffer.putString(PosixRenameExtensionParser.NAME, StandardCharsets.UTF_8);
+      }
+      buffer.putString(sources.get(i), StandardCharsets.UTF_8);
+      buffer.putString(targets.get(i), StandardCharsets.UTF_8);
+      if (overwrite) {
+        buffer.putInt(SftpConstants.SSH_FXP_RENAME_OVERWRITE);
+      }
+      return buffer;
+    }, (i, response) -> failures[i] = statusFailure(response));
+    return failures;
+  }
+
+  /**
+   * Creates remote directories, whose parents must exist. Directories are created independently of each
+   * other, so a directory and its parent must not be part of the same batch.
+   *
+   * @param directories the directories to create.
+   * @return the failure of each creation, or null where it succeeded.
+   * @throws IOException if the session fails.
+   */
+  public Exception[] mkdir(List<String> directories) throws IOException {
+    if (!(session.getClientInstance() instanceof RawSftpClient raw)
+        || !(session.getClientInstance() instanceof SftpClient client)) {
+      Exception[] failures = new Exception[directories.size()];
+      for (int i = 0; i < failures.length; i++) {
+        try {
+          session.mkdir(directories.get(i));
+        } catch (IOException ex) {
+          failures[i] = ex;
+        }
+      }
+      return failures;
+    }
+    int version = client.getVersion();
+    Exception[] failures = new Exception[directories.size()];
+    pipeline(raw, SftpConstants.SSH_FXP_MKDIR, directories.size(), i -> {
+      Buffer buffer = new ByteArrayBuffer();
+      buffer.putString(directories.get(i), StandardCharsets.UTF_8);
+      // Empty attributes: no flags, plus the file type from version 4 on.
+      buffer.putInt(0);
+      if (version >= SftpConstants.SFTP_V4) {
+        buffer.putByte((byte) SftpConstants.SSH_FILEXFER_TYPE_DIRECTORY);
+      }
+      return buffer;
+    }, (i, response) -> failures[i] = statusFailure(response));
+    return failures;
+  }
+
+  /**
+   * Sets the access and modification time of remote files.
+   *
+   * @param paths          the files to update.
+   * @param modifiedMillis the new access and modification time, in milliseconds (the server keeps seconds).
+   * @return the failure of each update, or null where it succeeded.
+   * @throws IOException if the session fails.
+   */
+  public Exception[] setModifyTime(List<String> paths, long modifiedMillis) throws IOException {
+    if (!(session.getClientInstance() instanceof RawSftpClient raw)
+        || !(session.getClientInstance() instanceof SftpClient client)) {
+      // Plain sessions cannot set attributes, so the client is needed even without pipelining.
+      SftpClient sftpClient = session.getClientInstance() instanceof SftpClient sftp ? sftp : null;
+      SftpClient.Attributes attributes = new SftpClient.Attributes()
+          .accessTime(modifiedMillis, TimeUnit.MILLISECONDS).modifyTime(modifiedMillis, TimeUnit.MILLISECONDS);
+      Exception[] failures = new Exception[paths.size()];
+      for (int i = 0; i < failures.length; i++) {
+        try {
+          if (sftpClient == null) {
+            throw new IOException("Cannot set the modification time of [" + paths.get(i) + "] without an SFTP client");
+          }
+          sftpClient.setStat(paths.get(i), attributes);
+        } catch (IOException ex) {
+          failures[i] = ex;
+        }
+      }
+      return failures;
+    }
+    int version = client.getVersion();
+    long seconds = TimeUnit.MILLISECONDS.toSeconds(modifiedMillis);
+    Exception[] failures = new Exception[paths.size()];
+    pipeline(raw, SftpConstants.SSH_FXP_SETSTAT, paths.size(), i -> {
+      Buffer buffer = new ByteArrayBuffer();
+      buffer.putString(paths.get(i), StandardCharsets.UTF_8);
+      if (version >= SftpConstants.SFTP_V4) {
+        // Flags, file type, then the access and modification time as 64-bit seconds.
+        buffer.putInt(SftpConstants.SSH_FILEXFER_ATTR_ACCESSTIME | SftpConstants.SSH_FILEXFER_ATTR_MODIFYTIME);
+        buffer.putByte((byte) SftpConstants.SSH_FILEXFER_TYPE_REGULAR);
+        buffer.putLong(seconds);
+        buffer.putLong(seconds);
+      } else {
+        buffer.putInt(SftpConstants.SSH_FILEXFER_ATTR_ACMODTIME);
+        buffer.putUInt(seconds);
+        buffer.putUInt(seconds);
+      }
+      return buffer;
+    }, (i, response) -> failures[i] = statusFailure(response));
+    return failures;
+  }
+
+  /**
+   * Checks whether remote paths exist.
+   *
+   * @param paths the paths to check.
+   * @return whether each path exists.
+   * @throws IOException if the session fails or a path cannot be checked.
+   */
+  public boolean[] exists(List<String> paths) throws IOException {
+    boolean[] exists = new boolean[paths.size()];
+    if (!(session.getClientInstance() instanceof RawSftpClient raw)
+        || !(session.getClientInstance() instanceof SftpClient client)) {
+      for (int i = 0; i < exists.length; i++) {
+        exists[i] = session.exists(paths.get(i));
+      }
+      return exists;
+    }
+    int version = client.getVersion();
+    IOException[] failure = new IOException[1];
+    pipeline(raw, SftpConstants.SSH_FXP_STAT, paths.size(), i -> {
+      Buffer buffer = new ByteArrayBuffer();
+      buffer.putString(paths.get(i), StandardCharsets.UTF_8);
+      if (version >= SftpConstants.SFTP_V4) {
+        buffer.putInt(SftpConstants.SSH_FILEXFER_ATTR_SIZE);
+      }
+      return buffer;
+    }, (i, response) -> {
+      if (response.getType() == SftpConstants.SSH_FXP_ATTRS) {
+        exists[i] = true;
+        return;
+      }
+      Exception ex = statusFailure(response);
+      if (ex instanceof SftpException sftp && sftp.getStatus() == SftpConstants.SSH_FX_NO_SUCH_FILE) {
+        return;
+      }
+      if (failure[0] == null) {
+        failure[0] = ex instanceof IOException io ? io : new IOException("Failed to check [" + paths.get(i) + "]", ex);
+      }
+    });
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+    return exists;
+  }
+
+  /**
+   * Sends {@code count} requests, keeping at most {@code maxInFlight} of them unanswered, and hands each reply
+   * to the handler in request order.
+   */
+  private void pipeline(RawSftpClient raw, int command, int count, IntFunction<Buffer> request,
+                        ResponseHandler handler) throws IOException {
+    int[] ids = new int[count];
+    int sent = 0;
+    for (int received = 0; received < count; received++) {
+      while (sent < count && sent - received < maxInFlight) {
+        ids[sent] = raw.send(command, request.apply(sent));
+        sent++;
+      }
+      handler.handle(received, SftpResponse.parse(command, raw.receive(ids[received])));
+    }
+  }
+
+  /**
+   * Returns the failure reported by a status reply, or null if it reports success.
+   */
+  private static Exception statusFailure(SftpResponse response) {
+    try {
+      SftpStatus status = SftpStatus.parse(response);
+      return status.isOk() ? null : new SftpException(status.getStatusCode(), status.getMessage());
+    } catch (SftpException ex) {
+      return ex;
+    }
+  }
+
+  @FunctionalInterface
+  private interface ResponseHandler {
+    void handle(int index, SftpResponse response) throws IOException;
+  }
+}
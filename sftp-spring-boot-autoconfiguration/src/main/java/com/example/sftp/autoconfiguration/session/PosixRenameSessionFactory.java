@@ -0,0 +1,94 @@
+package com.example.sftp.autoconfiguration.session;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.extensions.openssh.OpenSSHPosixRenameExtension;
+import org.apache.sshd.sftp.common.SftpConstants;
+import org.apache.sshd.sftp.common.SftpException;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+
+import java.io.IOException;
+
+/**
+ * A session factory decorator whose sessions rename with the {@code posix-rename@openssh.com} extension when
+ * the server supports it. Such a rename is a single atomic request that replaces an existing target, whereas
+ * a plain SFTP v3 rename fails on an existing target and has to be preceded by a remove.
+ * <p>
+ * Whether the server supports the extension is found out on the first rename and kept for the lifetime of
+ * the factory, i.e. once per server. Servers without the extension keep the delegate's rename.
+ * </p>
+ */
+@Slf4j
+public class PosixRenameSessionFactory implements SessionFactory<SftpClient.DirEntry> {
+
+  private final SessionFactory<SftpClient.DirEntry> delegate;
+  private final String serverName;
+  private volatile Boolean posixRenameSupported;
+
+  /**
+   * Creates a posix-rename session factory.
+   *
+   * @param delegate   the factory providing the sessions.
+   * @param serverName the server name, used in log messages.
+   */
+  public PosixRenameSessionFactory(SessionFactory<SftpClient.DirEntry> delegate, String serverName) {
+    this.delegate = delegate;
+    this.serverName = serverName;
+  }
+
+  @Override
+  public Session<SftpClient.DirEntry> getSession() {
+    return new PosixRenameSession(delegate.getSession());
+  }
+
+  /**
+   * Returns whether the server supports posix-rename, or null if no rename was attempted yet.
+   */
+  Boolean isPosixRenameSupported() {
+    return posixRenameSupported;
+  }
+
+  /**
+   * The session returned by {@link PosixRenameSessionFactory}.
+   */
+  class PosixRenameSession extends DelegatingSession {
+
+    PosixRenameSession(Session<SftpClient.DirEntry> target) {
+      super(target);
+    }
+
+    @Override
+    public void rename(String pathFrom, String pathTo) throws IOException {
+      OpenSSHPosixRenameExtension extension = posixRenameExtension();
+      if (extension == null) {
+        target.rename(pathFrom, pathTo);
+        return;
+      }
+      try {
+        extension.posixRename(pathFrom, pathTo);
+      } catch (SftpException ex) {
+        if (ex.getStatus() != SftpConstants.SSH_FX_OP_UNSUPPORTED) {
+          throw ex;
+        }
+        log.info("Server [{}] rejected posix-rename; using plain renames.", serverName);
+        posixRenameSupported = false;
+        target.rename(pathFrom, pathTo);
+      }
+    }
+
+    private OpenSSHPosixRenameExtension posixRenameExtension() {
+      Boolean supported = posixRenameSupported;
+      if (Boolean.FALSE.equals(supported) || !(target.getClientInstance() instanceof SftpClient client)) {
+        return null;
+      }
+      OpenSSHPosixRenameExtension extension = client.getExtension(OpenSSHPosixRenameExtension.class);
+      if (supported == null) {
+        supported = extension.isSupported();
+        posixRenameSupported = supported;
+        log.info("Server [{}] {} posix-rename@openssh.com.", serverName, supported ? "supports" : "does not support");
+      }
+      return supported ? extension : null;
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package com.example.sftp.autoconfiguration.session;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * A directory lister that walks a remote tree breadth first, up to {@code maxDepth} levels below the
+ * listed directory, and returns the regular files it finds with their path relative to that directory
+ * as file name (for example {@code 2024-06-01/customer-a/orders.csv}). Filters therefore see relative
+ * paths, and the inbound synchronizer recreates the same sub-directories locally.
+ * <p>
+ * The directories of one level are listed concurrently on {@code executor}, each task borrowing its own
+ * session from {@code sessionFactory}, so a wide tree is listed in roughly one round trip per level.
+ * Without an executor every directory is listed sequentially on the caller's session. Symbolic links
+ * are not followed.
+ * </p>
+ */
+@Slf4j
+public class RecursiveDirectoryLister implements RemoteDirectoryLister {
+
+  private static final String SEPARATOR = "/";
+
+  private final RemoteDirectoryLister delegate;
+  private final SessionFactory<SftpClient.DirEntry> sessionFactory;
+  private final Executor executor;
+  private final int maxDepth;
+
+  /**
+   * Creates a recursive lister.
+   *
+   * @param delegate       the lister used for each single directory.
+   * @param sessionFactory the (pooled) factory used by concurrent listing tasks; may be null if {@code executor} is null.
+   * @param executor       the executor for concurrent listing, or null to list sequentially.
+   * @param maxDepth       how many levels below the listed directory are visited; 0 lists only the directory itself.
+   */
+  public RecursiveDirectoryLister(RemoteDirectoryLister delegate, SessionFactory<SftpClient.DirEntry> sessionFactory,
+                                  Executor executor, int maxDepth) {
+    this.delegate = delegate;
+    this.sessionFactory = sessionFactory;
+    this.executor = executor;
+    this.maxDepth = Math.max(maxDepth, 0);
+  }
+
+  @Override
+  public SftpClient.DirEntry[] list(Session<SftpClient.DirEntry> session, String path) throws IOException {
+    List<SftpClient.DirEntry> files = new ArrayList<>();
+    List<String> level = List.of("");
+    for (int depth = 0; !level.isEmpty(); depth++) {
+      List<String> nextLevel = new ArrayList<>();
+      for (Map.Entry<String, SftpClient.DirEntry[]> listing : listLevel(session, path, level).entrySet()) {
+        String relativeDir = listing.getKey();
+        for (SftpClient.DirEntry entry : listing.getValue()) {
+          String name = entry.getFilename();
+          SftpClient.Attributes attributes = entry.getAttributes();
+          if (".".equals(name) || "..".equals(name) || attributes == null || attributes.isSymbolicLink()) {
+            continue;
+          }
+          String relativePath = relativeDir.isEmpty() ? name : relativeDir + SEPARATOR + name;
+          if (attributes.isDirectory()) {
+            if (depth < maxDepth) {
+              nextLevel.add(relativePath);
+            }
+          } else {
+            files.add(new SftpClient.DirEntry(relativePath, entry.getLongFilename(), attributes));
+          }
+        }
+      }
+      level = nextLevel;
+    }
+    log.debug("Recursive listing of [{}] found {} files.", path, files.size());
+    return files.toArray(SftpClient.EMPTY_DIR_ENTRIES);
+  }
+
+  private Map<String, SftpClient.DirEntry[]> listLevel(Session<SftpClient.DirEntry> session, String root,
+                                                       List<String> relativeDirs) throws IOException {
+    Map<String, SftpClient.DirEntry[]> listings = new LinkedHashMap<>();
+    if (executor == null || sessionFactory == null || relativeDirs.size() == 1) {
+      for (String relativeDir : relativeDirs) {
+        listings.put(relativeDir, delegate.list(session, resolve(root, relativeDir)));
+      }
+      return listings;
+    }
+    Map<String, CompletableFuture<SftpClient.DirEntry[]>> pending = new LinkedHashMap<>();
+    for (String relativeDir : relativeDirs) {
+      pending.put(relativeDir, CompletableFuture.supplyAsync(() -> listWithPooledSession(resolve(root, relativeDir)), executor));
+    }
+    try {
+      for (Map.Entry<String, CompletableFuture<SftpClient.DirEntry[]>> entry : pending.entrySet()) {
+        listings.put(entry.getKey(), entry.getValue().join());
+      }
+    } catch (CompletionException ex) {
+      pending.values().forEach(future -> future.cancel(false));
+      if (ex.getCause() instanceof UncheckedIOException io) {
+        throw io.getCause();
+      }
+      throw ex;
+    }
+    return listings;
+  }
+
+  private SftpClient.DirEntry[] listWithPooledSession(String directory) {
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      return delegate.list(session, directory);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to list remote directory " + directory, ex);
+    }
+  }
+
+  private static String resolve(String root, String relativeDir) {
+    if (relativeDir.isEmpty()) {
+      return root;
+    }
+    return root.endsWith(SEPARATOR) ? root + relativeDir : root + SEPARATOR + relativeDir;
+  }
+}
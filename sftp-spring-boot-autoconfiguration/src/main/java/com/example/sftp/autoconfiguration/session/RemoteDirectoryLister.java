@@ -0,0 +1,23 @@
+package com.example.sftp.autoconfiguration.session;
+
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.remote.session.Session;
+
+import java.io.IOException;
+
+/**
+ * Strategy used by {@link ListingSessionFactory} sessions to list a remote directory.
+ */
+@FunctionalInterface
+public interface RemoteDirectoryLister {
+
+  /**
+   * Lists a remote directory.
+   *
+   * @param session the session to list with.
+   * @param path    the remote directory.
+   * @return the directory entries.
+   * @throws IOException if the listing fails.
+   */
+  SftpClient.DirEntry[] list(Session<SftpClient.DirEntry> session, String path) throws IOException;
+}
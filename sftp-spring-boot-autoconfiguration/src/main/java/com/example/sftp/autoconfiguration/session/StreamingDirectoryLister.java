@@ -0,0 +1,99 @@
+package com.example.sftp.autoconfiguration.session;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.springframework.integration.file.filters.FileListFilter;
+import org.springframework.integration.file.remote.session.Session;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A directory lister that reads the directory one {@code READDIR} page at a time, runs each regular file
+ * through the filter as soon as its page arrives and stops reading once {@code maxFetchSize} entries have
+ * been accepted. Memory use is bounded by the fetch size (plus one page) rather than by the size of the
+ * directory.
+ * <p>
+ * The returned entries have already been filtered, so the inbound synchronizer should be given a
+ * {@link com.example.sftp.autoconfiguration.filters.PreFilteredFileListFilter} around the same filter.
+ * Entries are returned in server order; no sorting is applied. Only a listing that read the directory to
+ * its end, rather than stopping at {@code maxFetchSize}, is reported to the {@link CompleteListingListener}.
+ * </p>
+ */
+@Slf4j
+public class StreamingDirectoryLister implements RemoteDirectoryLister {
+
+  private final FileListFilter<SftpClient.DirEntry> filter;
+  private final int maxFetchSize;
+  private final CompleteListingListener listingListener;
+
+  /**
+   * Creates a streaming lister.
+   *
+   * @param filter       the filter applied to each entry, or null to accept every regular file.
+   * @param maxFetchSize the maximum number of entries returned per listing.
+   */
+  public StreamingDirectoryLister(FileListFilter<SftpClient.DirEntry> filter, int maxFetchSize) {
+    this(filter, maxFetchSize, null);
+  }
+
+  /**
+   * Creates a streaming lister that reports the listings which read the directory to its end.
+   *
+   * @param filter          the filter applied to each entry, or null to accept every regular file.
+   * @param maxFetchSize    the maximum number of entries returned per listing.
+   * @param listingListener told about complete listings, or null.
+   */
+  public StreamingDirectoryLister(FileListFilter<SftpClient.DirEntry> filter, int maxFetchSize,
+                                  CompleteListingListener listingListener) {
+    this.filter = filter;
+    this.maxFetchSize = Math.max(maxFetchSize, 1);
+    this.listingListener = listingListener;
+  }
+
+  @Override
+  public SftpClient.DirEntry[] list(Session<SftpClient.DirEntry> session, String path) throws IOException {
+    if (!(session.getClientInstance() instanceof SftpClient client)) {
+      return session.list(path);
+    }
+    // Only the names the listener looks for are tracked, so memory stays bounded by the fetch size.
+    Set<String> missing = listingListener != null ? new HashSet<>(listingListener.listingStarted(path)) : new HashSet<>();
+    boolean report = !missing.isEmpty();
+    List<SftpClient.DirEntry> accepted = new ArrayList<>();
+    int scanned = 0;
+    boolean complete = false;
+    try (SftpClient.CloseableHandle handle = client.openDir(path)) {
+      while (accepted.size() < maxFetchSize) {
+        List<SftpClient.DirEntry> page = client.readDir(handle);
+        if (page == null) {
+          complete = true;
+          break;
+        }
+        for (SftpClient.DirEntry entry : page) {
+          scanned++;
+          missing.remove(entry.getFilename());
+          if (isRegularFile(entry) && (filter == null || filter.accept(entry))) {
+            accepted.add(entry);
+            if (accepted.size() >= maxFetchSize) {
+              break;
+            }
+          }
+        }
+      }
+    }
+    log.debug("Streamed listing of [{}]: scanned {} entries, accepted {}.", path, scanned, accepted.size());
+    if (complete && report) {
+      listingListener.listingCompleted(path, missing);
+    }
+    return accepted.toArray(SftpClient.EMPTY_DIR_ENTRIES);
+  }
+
+  private static boolean isRegularFile(SftpClient.DirEntry entry) {
+    SftpClient.Attributes attributes = entry.getAttributes();
+    return attributes != null && !attributes.isDirectory() && !attributes.isSymbolicLink()
+        && !".".equals(entry.getFilename()) && !"..".equals(entry.getFilename());
+  }
+}
@@ -0,0 +1,34 @@
+package com.example.sftp.autoconfiguration.transformers;
+
+import com.example.sftp.autoconfiguration.SftpFileProcessor;
+import com.example.sftp.autoconfiguration.SftpProperties.RetryProperties;
+import com.example.sftp.autoconfiguration.util.RetryUtils;
+import org.springframework.integration.core.GenericTransformer;
+import org.springframework.integration.file.FileHeaders;
+import org.springframework.messaging.Message;
+
+/**
+ * Transformer that wraps a call to processor.beforePayloadUpload in retry logic. The message is returned
+ * unchanged.
+ */
+public class PayloadUploadPreProcessorTransformer implements GenericTransformer<Message<?>, Message<?>> {
+
+  private final SftpFileProcessor processor;
+  private final String serverName;
+  private final RetryProperties retryProps;
+
+  public PayloadUploadPreProcessorTransformer(SftpFileProcessor processor, String serverName, RetryProperties retryProps) {
+    this.processor = processor;
+    this.serverName = serverName;
+    this.retryProps = retryProps;
+  }
+
+  @Override
+  public Message<?> transform(Message<?> message) {
+    String fileName = message.getHeaders().get(FileHeaders.FILENAME, String.class);
+    return RetryUtils.retryCall(() -> {
+      processor.beforePayloadUpload(fileName, serverName);
+      return message;
+    }, retryProps.getInitialInterval(), retryProps.getMultiplier(), retryProps.getMaxInterval(), retryProps.getMaxAttempts(), serverName, "beforePayloadUpload");
+  }
+}
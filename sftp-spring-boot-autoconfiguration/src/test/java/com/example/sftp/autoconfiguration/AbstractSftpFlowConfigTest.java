@@ -1,17 +1,30 @@
 package com.example.sftp.autoconfiguration;
 
+import com.example.sftp.autoconfiguration.filters.BoundedAcceptOnceFileListFilter;
+import com.example.sftp.autoconfiguration.filters.SftpHighWaterMarkFileListFilter;
 import org.apache.sshd.sftp.client.SftpClient;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationContext;
+import org.springframework.integration.dsl.IntegrationFlow;
 import org.springframework.integration.dsl.context.IntegrationFlowContext;
+import org.springframework.integration.file.FileReadingMessageSource;
+import org.springframework.integration.file.dsl.FileInboundChannelAdapterSpec;
+import org.springframework.integration.file.dsl.Files;
 import org.springframework.integration.file.filters.CompositeFileListFilter;
 import org.springframework.integration.file.filters.RegexPatternFileListFilter;
 import org.springframework.integration.handler.advice.ExpressionEvaluatingRequestHandlerAdvice;
 import org.springframework.integration.scheduling.PollerMetadata;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.support.PeriodicTrigger;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
 import java.util.concurrent.TimeUnit;
 
@@ -129,6 +142,27 @@ public class AbstractSftpFlowConfigTest {
     assertThat(metadata).isNotNull();
   }
 
+  @Test
+  void shouldBuildTimeWindowTriggerOnlyForCompleteTimeWindowPoller() {
+    SftpProperties.PollerProperties poller = new SftpProperties.PollerProperties();
+    poller.setType("timeWindow");
+    poller.setStartTime("08:00");
+    poller.setEndTime("17:00");
+    poller.setTimeZone("UTC");
+
+    ApplicationContext context = Mockito.mock(ApplicationContext.class);
+    SftpProperties props = SftpProperties.builder().build();
+    SftpFileProcessor processor = Mockito.mock(SftpFileProcessor.class);
+    IntegrationFlowContext flowContext = Mockito.mock(IntegrationFlowContext.class);
+    DummySftpFlowConfig config = new DummySftpFlowConfig(context, props, processor, flowContext);
+
+    assertThat(config.buildTimeWindowTrigger(poller, 60_000L)).hasToString(
+        "TimeWindowTrigger{interval=60000, startTime=08:00, endTime=17:00, zoneId=UTC}");
+    poller.setType("fixed");
+    assertThat(config.buildTimeWindowTrigger(poller, 60_000L)).isNull();
+    assertThat(config.buildTimeWindowTrigger(null, 60_000L)).isNull();
+  }
+
   @Test
   void shouldBuildPollerMetadataFallbackWhenPollerIsInvalid() {
     // given a poller configuration that doesn't satisfy fixed or timeWindow conditions.
@@ -145,6 +179,88 @@ public class AbstractSftpFlowConfigTest {
     assertThat(metadata).isNotNull();
   }
 
+  @Test
+  void shouldWatchLocalDirectoryInWatchScanMode(@TempDir Path directory) throws Exception {
+    SftpProperties.SftpServerConfig serverConfig = new SftpProperties.SftpServerConfig();
+    serverConfig.setName("watchServer");
+    serverConfig.setLocalScanMode("watch");
+    serverConfig.setLocalWatchInterval(50L);
+    FileInboundChannelAdapterSpec fileSourceSpec = Files.inboundAdapter(directory.toFile());
+
+    ApplicationContext context = Mockito.mock(ApplicationContext.class);
+    SftpProperties props = SftpProperties.builder().build();
+    SftpFileProcessor processor = Mockito.mock(SftpFileProcessor.class);
+    IntegrationFlowContext flowContext = Mockito.mock(IntegrationFlowContext.class);
+    DummySftpFlowConfig config = new DummySftpFlowConfig(context, props, processor, flowContext);
+
+    config.configureLocalFileSource(serverConfig, fileSourceSpec, "upload");
+    PollerMetadata metadata = config.buildLocalPollerMetadata(serverConfig, new ExpressionEvaluatingRequestHandlerAdvice());
+    assertThat(metadata.getTrigger()).isInstanceOf(PeriodicTrigger.class);
+    assertThat(((PeriodicTrigger) metadata.getTrigger()).getPeriodDuration()).hasMillis(50L);
+
+    FileReadingMessageSource source = fileSourceSpec.getObject();
+    source.setBeanFactory(Mockito.mock(BeanFactory.class));
+    source.afterPropertiesSet();
+    source.start();
+    try {
+      java.nio.file.Files.writeString(directory.resolve("new.txt"), "data");
+      Message<File> message = null;
+      for (int i = 0; i < 50 && message == null; i++) {
+        message = source.receive();
+        if (message == null) {
+          Thread.sleep(100);
+        }
+      }
+      assertThat(message).isNotNull();
+      assertThat(message.getPayload().getName()).isEqualTo("new.txt");
+    } finally {
+      source.stop();
+    }
+  }
+
+  @Test
+  void shouldPickUpWatchedFileWrittenAfterItWasCreatedEmpty(@TempDir Path directory) throws Exception {
+    SftpProperties.SftpServerConfig serverConfig = new SftpProperties.SftpServerConfig();
+    serverConfig.setName("watchServer");
+    serverConfig.setLocalScanMode("watch");
+    serverConfig.setLocalWatchQuietPeriod(200L);
+    serverConfig.setMinFileSize(4L);
+    serverConfig.setEnableMetadataStore(true);
+    FileInboundChannelAdapterSpec fileSourceSpec = Files.inboundAdapter(directory.toFile());
+
+    ApplicationContext context = Mockito.mock(ApplicationContext.class);
+    SftpProperties props = SftpProperties.builder().build();
+    SftpFileProcessor processor = Mockito.mock(SftpFileProcessor.class);
+    IntegrationFlowContext flowContext = Mockito.mock(IntegrationFlowContext.class);
+    DummySftpFlowConfig config = new DummySftpFlowConfig(context, props, processor, flowContext);
+
+    config.configureLocalFileSource(serverConfig, fileSourceSpec, "upload");
+    FileReadingMessageSource source = fileSourceSpec.getObject();
+    source.setBeanFactory(Mockito.mock(BeanFactory.class));
+    source.afterPropertiesSet();
+    source.start();
+    try {
+      Path file = java.nio.file.Files.createFile(directory.resolve("late.txt"));
+      for (int i = 0; i < 6; i++) {
+        assertThat(source.receive()).isNull();
+        Thread.sleep(100);
+      }
+
+      java.nio.file.Files.writeString(file, "data");
+      Message<File> message = null;
+      for (int i = 0; i < 50 && message == null; i++) {
+        message = source.receive();
+        if (message == null) {
+          Thread.sleep(100);
+        }
+      }
+      assertThat(message).isNotNull();
+      assertThat(message.getPayload().getName()).isEqualTo("late.txt");
+    } finally {
+      source.stop();
+    }
+  }
+
   @Test
   void shouldCreateAndApplyRemoteCompositeFilter() {
     SftpProperties.SftpServerConfig serverConfig = new SftpProperties.SftpServerConfig();
@@ -194,6 +310,72 @@ public class AbstractSftpFlowConfigTest {
     assertThat(remoteFilter.accept(entryTooSmall)).isFalse();
   }
 
+  @Test
+  void shouldDownloadOnceStableAlongsideMetadataStoreFilter() {
+    SftpProperties.SftpServerConfig serverConfig = new SftpProperties.SftpServerConfig();
+    serverConfig.setName("stableServer");
+    serverConfig.setEnableMetadataStore(true);
+    serverConfig.setStableListingCheck(true);
+
+    ApplicationContext context = Mockito.mock(ApplicationContext.class);
+    Mockito.when(context.getBean(org.springframework.integration.metadata.ConcurrentMetadataStore.class))
+        .thenReturn(new org.springframework.integration.metadata.SimpleMetadataStore());
+    DummySftpFlowConfig config = new DummySftpFlowConfig(context, SftpProperties.builder().build(),
+        Mockito.mock(SftpFileProcessor.class), Mockito.mock(IntegrationFlowContext.class));
+    CompositeFileListFilter<SftpClient.DirEntry> remoteFilter = config.createRemoteCompositeFilter(serverConfig);
+
+    long modified = System.currentTimeMillis();
+    SftpClient.DirEntry[] listing = {remoteEntry("batch.csv", 500L, modified)};
+    // First poll: not yet stable, so the metadata store must not record it.
+    assertThat(remoteFilter.filterFiles(listing)).isEmpty();
+    // Second poll: unchanged since the first one, so it is downloaded, and only once.
+    assertThat(remoteFilter.filterFiles(listing)).extracting(SftpClient.DirEntry::getFilename).containsExactly("batch.csv");
+    assertThat(remoteFilter.filterFiles(listing)).isEmpty();
+
+    // The same holds when the synchronizer filters the entries one by one.
+    SftpClient.DirEntry single = remoteEntry("single.csv", 500L, modified);
+    assertThat(remoteFilter.accept(single)).isFalse();
+    assertThat(remoteFilter.accept(single)).isTrue();
+    assertThat(remoteFilter.accept(single)).isFalse();
+  }
+
+  @Test
+  void shouldAdvanceHighWaterMarkPastPatternRejectedFiles() {
+    SftpProperties.SftpServerConfig serverConfig = new SftpProperties.SftpServerConfig();
+    serverConfig.setName("markServer");
+    serverConfig.setEnableMetadataStore(true);
+    serverConfig.setMetadataStoreMode("highWaterMark");
+    serverConfig.setFilePattern(".*\\.csv");
+
+    ApplicationContext context = Mockito.mock(ApplicationContext.class);
+    Mockito.when(context.getBean(org.springframework.integration.metadata.ConcurrentMetadataStore.class))
+        .thenReturn(new org.springframework.integration.metadata.SimpleMetadataStore());
+    DummySftpFlowConfig config = new DummySftpFlowConfig(context, SftpProperties.builder().build(),
+        Mockito.mock(SftpFileProcessor.class), Mockito.mock(IntegrationFlowContext.class));
+    SftpHighWaterMarkFileListFilter highWaterMark =
+        (SftpHighWaterMarkFileListFilter) config.createRemoteAcceptOnceFilter(serverConfig);
+    CompositeFileListFilter<SftpClient.DirEntry> remoteFilter = config.createRemoteCompositeFilter(serverConfig, highWaterMark);
+
+    SftpClient.DirEntry[] listing = {
+        remoteEntry("a.csv", 10L, 1000L), remoteEntry("notes.txt", 10L, 500L), remoteEntry("b.csv", 10L, 2000L)};
+    assertThat(remoteFilter.filterFiles(listing)).extracting(SftpClient.DirEntry::getFilename).containsExactly("a.csv", "b.csv");
+    assertThat(remoteFilter.accept(remoteEntry("later.txt", 10L, 100L))).isFalse();
+    highWaterMark.commit("a.csv");
+    highWaterMark.commit("b.csv");
+
+    assertThat(highWaterMark.getCursorTime()).isEqualTo(2000L);
+  }
+
+  private static SftpClient.DirEntry remoteEntry(String name, long size, long modified) {
+    SftpClient.DirEntry entry = Mockito.mock(SftpClient.DirEntry.class);
+    SftpClient.Attributes attributes = Mockito.mock(SftpClient.Attributes.class);
+    Mockito.when(attributes.getSize()).thenReturn(size);
+    Mockito.when(attributes.getModifyTime()).thenReturn(FileTime.fromMillis(modified));
+    Mockito.when(entry.getFilename()).thenReturn(name);
+    Mockito.when(entry.getAttributes()).thenReturn(attributes);
+    return entry;
+  }
+
   @Test
   void shouldReturnNullRemoteCompositeFilterWhenNoFilterApplicable() {
     SftpProperties.SftpServerConfig serverConfig = new SftpProperties.SftpServerConfig();
@@ -226,7 +408,7 @@ public class AbstractSftpFlowConfigTest {
     IntegrationFlowContext flowContext = Mockito.mock(IntegrationFlowContext.class);
     DummySftpFlowConfig config = new DummySftpFlowConfig(context, props, processor, flowContext);
 
-    CompositeFileListFilter<File> localFilter = config.createLocalCompositeFilter(serverConfig);
+    CompositeFileListFilter<File> localFilter = config.createLocalCompositeFilter(serverConfig, "upload");
     assertThat(localFilter).isNotNull();
     // Create a dummy File that should be accepted.
     File matchingFile = Mockito.mock(File.class);
@@ -247,6 +429,27 @@ public class AbstractSftpFlowConfigTest {
     assertThat(localFilter.accept(tooSmall)).isFalse();
   }
 
+  @Test
+  void shouldRecordLocalFileOnlyOnceOtherFiltersAcceptIt(@TempDir Path directory) throws Exception {
+    SftpProperties.SftpServerConfig serverConfig = new SftpProperties.SftpServerConfig();
+    serverConfig.setEnableMetadataStore(true);
+    serverConfig.setMinFileSize(4L);
+
+    ApplicationContext context = Mockito.mock(ApplicationContext.class);
+    SftpProperties props = SftpProperties.builder().build();
+    SftpFileProcessor processor = Mockito.mock(SftpFileProcessor.class);
+    IntegrationFlowContext flowContext = Mockito.mock(IntegrationFlowContext.class);
+    DummySftpFlowConfig config = new DummySftpFlowConfig(context, props, processor, flowContext);
+
+    CompositeFileListFilter<File> localFilter = config.createLocalCompositeFilter(serverConfig, "upload");
+    File file = java.nio.file.Files.createFile(directory.resolve("growing.txt")).toFile();
+    assertThat(localFilter.filterFiles(new File[] {file})).isEmpty();
+
+    java.nio.file.Files.writeString(file.toPath(), "data");
+    assertThat(localFilter.filterFiles(new File[] {file})).containsExactly(file);
+    assertThat(localFilter.filterFiles(new File[] {file})).isEmpty();
+  }
+
   @Test
   void shouldReturnNullLocalCompositeFilterWhenNoFilterApplicable() {
     SftpProperties.SftpServerConfig serverConfig = new SftpProperties.SftpServerConfig();
@@ -261,10 +464,58 @@ public class AbstractSftpFlowConfigTest {
     IntegrationFlowContext flowContext = Mockito.mock(IntegrationFlowContext.class);
     DummySftpFlowConfig config = new DummySftpFlowConfig(context, props, processor, flowContext);
 
-    CompositeFileListFilter<File> filter = config.createLocalCompositeFilter(serverConfig);
+    CompositeFileListFilter<File> filter = config.createLocalCompositeFilter(serverConfig, "upload");
     assertThat(filter).isNull();
   }
 
+  @Test
+  void shouldGiveEachFlowKindItsOwnSpillFile(@TempDir Path directory) throws Exception {
+    SftpProperties.SftpServerConfig serverConfig = new SftpProperties.SftpServerConfig();
+    serverConfig.setEnableMetadataStore(true);
+    serverConfig.setLocalAcceptOnce(SftpProperties.LocalAcceptOnceProperties.builder()
+        .spillFile(directory.resolve("spill.dat").toString())
+        .spillCapacity(16L)
+        .build());
+
+    ApplicationContext context = Mockito.mock(ApplicationContext.class);
+    SftpProperties props = SftpProperties.builder().build();
+    SftpFileProcessor processor = Mockito.mock(SftpFileProcessor.class);
+    IntegrationFlowContext flowContext = Mockito.mock(IntegrationFlowContext.class);
+    DummySftpFlowConfig config = new DummySftpFlowConfig(context, props, processor, flowContext);
+
+    try (BoundedAcceptOnceFileListFilter upload = config.createLocalAcceptOnceFilter(serverConfig, "upload");
+         BoundedAcceptOnceFileListFilter archive = config.createLocalAcceptOnceFilter(serverConfig, "archive")) {
+      assertThat(directory.resolve("spill-upload.dat")).exists();
+      assertThat(directory.resolve("spill-archive.dat")).exists();
+      assertThat(directory.resolve("spill.dat")).doesNotExist();
+    }
+  }
+
+  @Test
+  void shouldCloseLocalFilterWhenFlowIsRemoved() throws Exception {
+    ApplicationContext context = Mockito.mock(ApplicationContext.class);
+    SftpProperties props = SftpProperties.builder().build();
+    SftpFileProcessor processor = Mockito.mock(SftpFileProcessor.class);
+    IntegrationFlowContext flowContext = Mockito.mock(IntegrationFlowContext.class);
+    IntegrationFlowContext.IntegrationFlowRegistrationBuilder registration =
+        Mockito.mock(IntegrationFlowContext.IntegrationFlowRegistrationBuilder.class);
+    IntegrationFlow flow = Mockito.mock(IntegrationFlow.class);
+    Mockito.when(flowContext.registration(flow)).thenReturn(registration);
+    Mockito.when(registration.id("uploadFlow")).thenReturn(registration);
+    DummySftpFlowConfig config = new DummySftpFlowConfig(context, props, processor, flowContext);
+    @SuppressWarnings("unchecked")
+    CompositeFileListFilter<File> localFilter = Mockito.mock(CompositeFileListFilter.class);
+
+    config.registerFlow("uploadFlow", flow, localFilter);
+
+    ArgumentCaptor<Object> bean = ArgumentCaptor.forClass(Object.class);
+    Mockito.verify(registration).addBean(Mockito.eq("uploadFlow.localFilter"), bean.capture());
+    Mockito.verify(registration).register();
+    // Removing the flow destroys its beans.
+    ((DisposableBean) bean.getValue()).destroy();
+    Mockito.verify(localFilter).close();
+  }
+
   @Test
   void shouldAcceptFileWithinSizeLimitsInLocalFileSizeFilter() {
     AbstractSftpFlowConfig.LocalFileSizeFilter filter = new AbstractSftpFlowConfig.LocalFileSizeFilter(100L, 200L);
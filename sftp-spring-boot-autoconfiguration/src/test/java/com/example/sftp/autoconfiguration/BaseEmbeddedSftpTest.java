@@ -0,0 +1,88 @@
+package com.example.sftp.autoconfiguration;
+
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.integration.sftp.session.DefaultSftpSessionFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Base class of tests running against an embedded SFTP server whose root is a temporary directory.
+ * <p>
+ * The server is started once per test class on a free port and accepts user "user" with password
+ * "password"; {@link #sessionFactory} connects to it. Files written below {@link #root} are visible on the
+ * server straight away.
+ * </p>
+ */
+public abstract class BaseEmbeddedSftpTest {
+
+  public static final String USER = "user";
+  public static final String PASSWORD = "password";
+
+  @TempDir
+  protected static Path root;
+
+  protected static DefaultSftpSessionFactory sessionFactory;
+
+  private static SshServer sshd;
+
+  @BeforeAll
+  static void startSftpServer() throws IOException {
+    sshd = startServer(root);
+    sessionFactory = sessionFactory(sshd.getPort());
+  }
+
+  @AfterAll
+  static void stopSftpServer() throws IOException {
+    if (sshd != null) {
+      sshd.stop();
+      sshd = null;
+    }
+  }
+
+  /**
+   * Starts an SFTP server on a free port.
+   *
+   * @param root the directory served as the root, or null to serve the default file system.
+   * @return the started server.
+   * @throws IOException if the server cannot be started.
+   */
+  public static SshServer startServer(Path root) throws IOException {
+    SshServer server = SshServer.setUpDefaultServer();
+    server.setPort(0);
+    server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider(Paths.get("target/hostkey.ser")));
+    server.setSubsystemFactories(List.of(new SftpSubsystemFactory()));
+    if (root != null) {
+      server.setFileSystemFactory(new VirtualFileSystemFactory(root));
+    }
+    server.setPasswordAuthenticator((username, password, session) ->
+        Objects.equals(username, USER) && Objects.equals(password, PASSWORD));
+    server.start();
+    return server;
+  }
+
+  /**
+   * Creates a session factory connecting to a local server started by {@link #startServer(Path)}.
+   *
+   * @param port the port of the server.
+   * @return the session factory.
+   */
+  public static DefaultSftpSessionFactory sessionFactory(int port) {
+    DefaultSftpSessionFactory factory = new DefaultSftpSessionFactory();
+    factory.setHost("localhost");
+    factory.setPort(port);
+    factory.setUser(USER);
+    factory.setPassword(PASSWORD);
+    factory.setAllowUnknownKeys(true);
+    return factory;
+  }
+}
@@ -1,9 +1,14 @@
 package com.example.sftp.autoconfiguration;
 
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 class SftpPropertiesTest {
 
@@ -25,4 +30,28 @@ class SftpPropertiesTest {
     Assertions.assertThat(properties.getServers()).isNotNull();
     Assertions.assertThat(properties.getServers().get(0).getName()).isEqualTo("server1");
   }
+
+  @Test
+  void shouldValidateSourcesOnlyServerAndCascadeToSources() {
+    Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    SftpProperties.SftpServerConfig server = SftpProperties.SftpServerConfig.builder()
+        .name("server1")
+        .host("localhost")
+        .port(22)
+        .username("user")
+        .sources(List.of(SftpProperties.SourceDirectory.builder().name("orders").path("/remote/orders").build()))
+        .build();
+    SftpProperties properties = SftpProperties.builder()
+        .localDownloadDir("downloadDir")
+        .defaultPoller(SftpProperties.PollerProperties.builder().type("fixed").fixedInterval(1000L).build())
+        .servers(List.of(server))
+        .build();
+    Assertions.assertThat(validator.validate(properties)).isEmpty();
+
+    server.setSources(List.of(SftpProperties.SourceDirectory.builder().name("orders").build()));
+    Set<ConstraintViolation<SftpProperties>> violations = validator.validate(properties);
+    Assertions.assertThat(violations)
+        .extracting(violation -> violation.getPropertyPath().toString())
+        .containsExactly("servers[0].sources[0].path");
+  }
 }
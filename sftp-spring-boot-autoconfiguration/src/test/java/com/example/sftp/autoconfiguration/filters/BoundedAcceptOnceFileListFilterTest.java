@@ -0,0 +1,101 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoundedAcceptOnceFileListFilterTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void shouldAcceptOnlyOnce() {
+    BoundedAcceptOnceFileListFilter filter = new BoundedAcceptOnceFileListFilter(10, null);
+    File file = new File("/data/out/a.csv");
+
+    assertThat(filter.accept(file)).isTrue();
+    assertThat(filter.accept(file)).isFalse();
+  }
+
+  @Test
+  void shouldKeepMemoryBoundedUnderChurn() {
+    BoundedAcceptOnceFileListFilter filter = new BoundedAcceptOnceFileListFilter(1_000, null);
+    for (int i = 0; i < 200_000; i++) {
+      assertThat(filter.accept(new File("/data/out/file-" + i + ".csv"))).isTrue();
+    }
+    assertThat(filter.size()).isEqualTo(1_000);
+  }
+
+  @Test
+  void shouldKeepRecentlySeenEntriesWhenEvicting() {
+    BoundedAcceptOnceFileListFilter filter = new BoundedAcceptOnceFileListFilter(2, null);
+    File a = new File("/data/out/a.csv");
+    File b = new File("/data/out/b.csv");
+    File c = new File("/data/out/c.csv");
+    filter.accept(a);
+    filter.accept(b);
+    // Seeing 'a' again makes 'b' the least recently seen entry.
+    assertThat(filter.accept(a)).isFalse();
+    filter.accept(c);
+
+    assertThat(filter.accept(a)).isFalse();
+    // Without a spill file an evicted entry is accepted again.
+    assertThat(filter.accept(b)).isTrue();
+  }
+
+  @Test
+  void shouldStillRejectEvictedEntriesWithSpillFile() throws Exception {
+    Path spill = tempDir.resolve("accept-once.spill");
+    try (BoundedAcceptOnceFileListFilter filter =
+             new BoundedAcceptOnceFileListFilter(100, null, spill, 65_536)) {
+      for (int i = 0; i < 10_000; i++) {
+        filter.accept(new File("/data/out/file-" + i + ".csv"));
+      }
+      assertThat(filter.size()).isEqualTo(100);
+      for (int i = 0; i < 10_000; i++) {
+        assertThat(filter.accept(new File("/data/out/file-" + i + ".csv"))).isFalse();
+      }
+      assertThat(filter.accept(new File("/data/out/new.csv"))).isTrue();
+    }
+    assertThat(Files.size(spill)).isLessThanOrEqualTo(65_536L * 16);
+  }
+
+  @Test
+  void shouldForgetEntriesOlderThanMaxAge() throws Exception {
+    BoundedAcceptOnceFileListFilter filter = new BoundedAcceptOnceFileListFilter(10, 50L);
+    File file = new File("/data/out/a.csv");
+    assertThat(filter.accept(file)).isTrue();
+
+    Thread.sleep(120);
+    assertThat(filter.accept(new File("/data/out/b.csv"))).isTrue();
+    assertThat(filter.size()).isEqualTo(1);
+    assertThat(filter.accept(file)).isTrue();
+  }
+
+  @Test
+  void shouldAcceptAgainAfterRemoveAndRollback() throws Exception {
+    try (BoundedAcceptOnceFileListFilter filter =
+             new BoundedAcceptOnceFileListFilter(1, null, tempDir.resolve("rollback.spill"), 1_024)) {
+      File a = new File("/data/out/a.csv");
+      File b = new File("/data/out/b.csv");
+      File c = new File("/data/out/c.csv");
+      List<File> accepted = filter.filterFiles(new File[] {a, b, c});
+      assertThat(accepted).containsExactly(a, b, c);
+
+      filter.rollback(b, accepted);
+      assertThat(filter.accept(a)).isFalse();
+      assertThat(filter.accept(b)).isTrue();
+      assertThat(filter.accept(c)).isTrue();
+
+      assertThat(filter.remove(c)).isTrue();
+      assertThat(filter.accept(c)).isTrue();
+    }
+  }
+}
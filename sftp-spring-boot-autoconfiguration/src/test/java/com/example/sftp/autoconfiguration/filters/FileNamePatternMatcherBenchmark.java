@@ -0,0 +1,91 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the compiled include/exclude matcher with the single large alternation regex it replaces,
+ * over one million generated file names.
+ * <p>
+ * Not part of the unit test run. Start {@link #main(String[])} from the IDE, or run
+ * {@code org.openjdk.jmh.Main FileNamePatternMatcherBenchmark} on the module's test classpath after
+ * {@code mvn test-compile}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileNamePatternMatcherBenchmark {
+
+  private static final int NAMES = 1_000_000;
+
+  private static final List<String> INCLUDES = List.of(
+      "*.csv", "*.json", "inbound_*", "manifest.xml", "report-{daily,weekly}-*.txt", "batch_[0-9][0-9]*.dat");
+  private static final List<String> EXCLUDES = List.of("*_partial.csv", "*.tmp", "regex:\\..*");
+
+  // The hand-written alternations the patterns above replace.
+  private static final Pattern INCLUDE_REGEX = Pattern.compile(
+      ".*\\.csv|.*\\.json|inbound_.*|manifest\\.xml|report-(daily|weekly)-.*\\.txt|batch_[0-9][0-9].*\\.dat");
+  private static final Pattern EXCLUDE_REGEX = Pattern.compile(".*_partial\\.csv|.*\\.tmp|\\..*");
+
+  private String[] names;
+  private FileNamePatternMatcher matcher;
+
+  @Setup
+  public void setUp() {
+    String[] stems = {"orders", "inbound_", "report-daily-", "report-monthly-", "batch_42", ".hidden", "manifest"};
+    String[] extensions = {".csv", ".json", ".txt", ".dat", ".xml", ".tmp", "_partial.csv", ".bin"};
+    Random random = new Random(42);
+    names = new String[NAMES];
+    for (int i = 0; i < NAMES; i++) {
+      names[i] = stems[random.nextInt(stems.length)] + "20240101_" + random.nextInt(1_000_000)
+          + extensions[random.nextInt(extensions.length)];
+    }
+    matcher = FileNamePatternMatcher.compile(INCLUDES, EXCLUDES);
+  }
+
+  @Benchmark
+  public int compiledMatcher() {
+    int matched = 0;
+    for (String name : names) {
+      if (matcher.matches(name)) {
+        matched++;
+      }
+    }
+    return matched;
+  }
+
+  @Benchmark
+  public int alternationRegex() {
+    int matched = 0;
+    for (String name : names) {
+      if (INCLUDE_REGEX.matcher(name).matches() && !EXCLUDE_REGEX.matcher(name).matches()) {
+        matched++;
+      }
+    }
+    return matched;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(FileNamePatternMatcherBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,131 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FileNamePatternMatcherTest {
+
+  @Test
+  void shouldMatchEveryNameWhenNoPatternsConfigured() {
+    FileNamePatternMatcher matcher = FileNamePatternMatcher.compile(null, List.of());
+    assertThat(matcher.isEmpty()).isTrue();
+    assertThat(matcher.matches("anything.bin")).isTrue();
+  }
+
+  @Test
+  void shouldMatchLiteralPrefixAndSuffixGlobs() {
+    FileNamePatternMatcher matcher = FileNamePatternMatcher.compile(
+        List.of("manifest.xml", "glob:inbound_*", "*.csv"), null);
+
+    assertThat(matcher.matches("manifest.xml")).isTrue();
+    assertThat(matcher.matches("inbound_2024.dat")).isTrue();
+    assertThat(matcher.matches("orders.csv")).isTrue();
+    assertThat(matcher.matches("orders.csv.tmp")).isFalse();
+    assertThat(matcher.matches("manifest.xml.bak")).isFalse();
+  }
+
+  @Test
+  void shouldMatchGeneralGlobs() {
+    FileNamePatternMatcher matcher = FileNamePatternMatcher.compile(
+        List.of("report-{daily,weekly}-*.txt", "batch_[0-9][0-9]?.dat", "*[!~]_final*"), null);
+
+    assertThat(matcher.matches("report-daily-2024.txt")).isTrue();
+    assertThat(matcher.matches("report-weekly-.txt")).isTrue();
+    assertThat(matcher.matches("report-monthly-2024.txt")).isFalse();
+    assertThat(matcher.matches("batch_12x.dat")).isTrue();
+    assertThat(matcher.matches("batch_1x.dat")).isFalse();
+    assertThat(matcher.matches("doc_final.pdf")).isTrue();
+    assertThat(matcher.matches("~_final.pdf")).isFalse();
+  }
+
+  @Test
+  void shouldMatchRegexesIncludingShortcutForms() {
+    FileNamePatternMatcher matcher = FileNamePatternMatcher.compile(
+        List.of("regex:.*\\.json", "regex:tmp_.*", "regex:data-\\d{4}\\.bin"), null);
+
+    assertThat(matcher.matches("a.json")).isTrue();
+    assertThat(matcher.matches("tmp_x")).isTrue();
+    assertThat(matcher.matches("data-2024.bin")).isTrue();
+    assertThat(matcher.matches("data-24.bin")).isFalse();
+    assertThat(matcher.matches("ajson")).isFalse();
+  }
+
+  @Test
+  void shouldKeepBackreferencesOfEachRegex() {
+    FileNamePatternMatcher matcher = FileNamePatternMatcher.compile(
+        List.of("regex:(x|y)z.*\\.log", "regex:(a)\\1\\.txt"), null);
+
+    assertThat(matcher.matches("aa.txt")).isTrue();
+    assertThat(matcher.matches("ax.txt")).isFalse();
+    assertThat(matcher.matches("xz1.log")).isTrue();
+  }
+
+  @Test
+  void shouldKeepInlineFlagsAndGroupNamesWithinTheirRegex() {
+    FileNamePatternMatcher matcher = FileNamePatternMatcher.compile(
+        List.of("regex:(?i)report.*\\.csv", "regex:data\\d+\\.(csv|bin)",
+            "regex:(?<kind>in)_.*\\.xml", "regex:(?<kind>out)_\\d+\\.xml"), null);
+
+    assertThat(matcher.matches("REPORT-1.CSV")).isTrue();
+    assertThat(matcher.matches("data1.csv")).isTrue();
+    assertThat(matcher.matches("DATA1.CSV")).isFalse();
+    assertThat(matcher.matches("in_a.xml")).isTrue();
+    assertThat(matcher.matches("out_1.xml")).isTrue();
+    assertThat(matcher.matches("OUT_1.xml")).isFalse();
+  }
+
+  @Test
+  void shouldApplyExcludesAfterIncludes() {
+    FileNamePatternMatcher matcher = FileNamePatternMatcher.compile(
+        List.of("*.csv"), List.of("*_partial.csv", "regex:\\..*"));
+
+    assertThat(matcher.matches("orders.csv")).isTrue();
+    assertThat(matcher.matches("orders_partial.csv")).isFalse();
+    assertThat(matcher.matches(".hidden.csv")).isFalse();
+
+    FileNamePatternMatcher excludeOnly = FileNamePatternMatcher.compile(null, List.of("*.tmp"));
+    assertThat(excludeOnly.matches("a.txt")).isTrue();
+    assertThat(excludeOnly.matches("a.tmp")).isFalse();
+  }
+
+  @Test
+  void shouldMatchLongNamesWithManyWildcardsInLinearTime() {
+    FileNamePatternMatcher matcher = FileNamePatternMatcher.compile(List.of("*a*a*a*a*a*a*a*b"), null);
+    String name = "a".repeat(100_000);
+    assertThat(matcher.matches(name)).isFalse();
+    assertThat(matcher.matches(name + "b")).isTrue();
+  }
+
+  @Test
+  void shouldRejectMalformedPatterns() {
+    assertThatThrownBy(() -> FileNamePatternMatcher.compile(List.of("regex:(unclosed"), null))
+        .isInstanceOf(IllegalArgumentException.class);
+    // Only valid once wrapped into the alternation as (?:a)|(b).
+    assertThatThrownBy(() -> FileNamePatternMatcher.compile(List.of("regex:a)|(b", "regex:c.+d"), null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> FileNamePatternMatcher.compile(List.of("report-{a,b"), null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldFilterRemoteAndLocalFilesWithSameMatcher() {
+    FileNamePatternMatcher matcher = FileNamePatternMatcher.compile(List.of("*.csv"), null);
+    FileNamePatternFileListFilter<SftpClient.DirEntry> remote =
+        new FileNamePatternFileListFilter<>(matcher, SftpClient.DirEntry::getFilename);
+    FileNamePatternFileListFilter<File> local = new FileNamePatternFileListFilter<>(matcher, File::getName);
+
+    SftpClient.DirEntry entry = mock(SftpClient.DirEntry.class);
+    when(entry.getFilename()).thenReturn("remote.csv");
+    assertThat(remote.accept(entry)).isTrue();
+    assertThat(local.accept(new File("/tmp/local.csv"))).isTrue();
+    assertThat(local.accept(new File("/tmp/local.txt"))).isFalse();
+  }
+}
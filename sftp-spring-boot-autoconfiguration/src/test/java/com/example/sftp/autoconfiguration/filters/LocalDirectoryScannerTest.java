@@ -0,0 +1,57 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.integration.file.filters.AbstractFileListFilter;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalDirectoryScannerTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void shouldPassScannedAttributesToFiltersAndReturnPlainFiles() throws Exception {
+    // given
+    Files.writeString(directory.resolve("small.txt"), "x");
+    Files.writeString(directory.resolve("large.txt"), "x".repeat(100));
+    Files.createDirectory(directory.resolve("shard"));
+    List<File> filtered = new ArrayList<>();
+    LocalDirectoryScanner scanner = new LocalDirectoryScanner(0);
+    scanner.setFilter(new AbstractFileListFilter<>() {
+      @Override
+      public boolean accept(File file) {
+        filtered.add(file);
+        return file.length() >= 10;
+      }
+    });
+    // when
+    List<File> files = scanner.listFiles(directory.toFile());
+    // then
+    assertThat(filtered).hasSize(2).allMatch(AttributedFile.class::isInstance);
+    assertThat(files).extracting(File::getName).containsExactly("large.txt");
+    assertThat(files.get(0)).isNotInstanceOf(AttributedFile.class);
+  }
+
+  @Test
+  void shouldScanShardDirectoriesUpToDepth() throws Exception {
+    // given
+    Files.createDirectories(directory.resolve("a/b"));
+    Files.writeString(directory.resolve("root.txt"), "r");
+    Files.writeString(directory.resolve("a/one.txt"), "1");
+    Files.writeString(directory.resolve("a/b/two.txt"), "2");
+    // when
+    List<File> shallow = new LocalDirectoryScanner(0).listFiles(directory.toFile());
+    List<File> sharded = new LocalDirectoryScanner(1).listFiles(directory.toFile());
+    // then
+    assertThat(shallow).extracting(File::getName).containsExactly("root.txt");
+    assertThat(sharded).extracting(File::getName).containsExactlyInAnyOrder("root.txt", "one.txt");
+  }
+}
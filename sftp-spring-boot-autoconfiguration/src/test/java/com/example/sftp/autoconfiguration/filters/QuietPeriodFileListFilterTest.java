@@ -0,0 +1,65 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.integration.file.filters.AcceptAllFileListFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QuietPeriodFileListFilterTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void shouldHoldBackFileUntilQuietAndRecheckItWithoutNewEvents() throws IOException {
+    QuietPeriodFileListFilter filter = new QuietPeriodFileListFilter(new AcceptAllFileListFilter<>(), 60_000L);
+    File file = Files.writeString(directory.resolve("a.csv"), "data").toFile();
+
+    assertThat(filter.filterFiles(new File[] {file})).isEmpty();
+    assertThat(filter.getPendingCount()).isEqualTo(1);
+
+    assertThat(file.setLastModified(System.currentTimeMillis() - 120_000L)).isTrue();
+    assertThat(filter.filterFiles(new File[0])).containsExactly(file);
+    assertThat(filter.getPendingCount()).isZero();
+  }
+
+  @Test
+  void shouldDropPendingFileOnceDeleted() throws IOException {
+    QuietPeriodFileListFilter filter = new QuietPeriodFileListFilter(new AcceptAllFileListFilter<>(), 60_000L);
+    File file = Files.writeString(directory.resolve("gone.csv"), "data").toFile();
+    filter.filterFiles(new File[] {file});
+
+    Files.delete(file.toPath());
+
+    assertThat(filter.filterFiles(new File[0])).isEmpty();
+    assertThat(filter.getPendingCount()).isZero();
+  }
+
+  @Test
+  void shouldOfferFileRejectedByDelegateAgainOnNextEvent() throws IOException {
+    QuietPeriodFileListFilter filter = new QuietPeriodFileListFilter(files -> {
+      List<File> accepted = new ArrayList<>();
+      for (File candidate : files) {
+        if (candidate.length() >= 4) {
+          accepted.add(candidate);
+        }
+      }
+      return accepted;
+    }, 0L);
+    File file = Files.createFile(directory.resolve("empty.csv")).toFile();
+
+    assertThat(filter.filterFiles(new File[] {file})).isEmpty();
+    assertThat(filter.getPendingCount()).isZero();
+
+    Files.writeString(file.toPath(), "data");
+    assertThat(filter.filterFiles(new File[] {file})).containsExactly(file);
+  }
+}
@@ -0,0 +1,202 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.file.filters.ChainFileListFilter;
+import org.springframework.integration.metadata.SimpleMetadataStore;
+import org.springframework.integration.sftp.filters.SftpRegexPatternFileListFilter;
+
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SftpHighWaterMarkFileListFilterTest {
+
+  private static final String KEY = "sftpHighWaterMark-test";
+
+  private SimpleMetadataStore metadataStore;
+  private SftpHighWaterMarkFileListFilter filter;
+
+  @BeforeEach
+  void setUp() {
+    metadataStore = new SimpleMetadataStore();
+    filter = new SftpHighWaterMarkFileListFilter(metadataStore, KEY);
+  }
+
+  @Test
+  void shouldNotAdvanceCursorBeforeCommit() {
+    assertThat(filter.accept(entry("a.csv", 1000L))).isTrue();
+    assertThat(metadataStore.get(KEY)).isNull();
+    // Pending entries are not offered twice.
+    assertThat(filter.accept(entry("a.csv", 1000L))).isFalse();
+  }
+
+  @Test
+  void shouldPersistSingleCursorAfterCommits() {
+    filter.accept(entry("a.csv", 1000L));
+    filter.accept(entry("b.csv", 2000L));
+    filter.accept(entry("c.csv", 2000L));
+    filter.commit("a.csv");
+    filter.commit("b.csv");
+    filter.commit("c.csv");
+
+    assertThat(metadataStore.get(KEY)).isEqualTo("2000/b.csv/c.csv");
+    assertThat(filter.accept(entry("a.csv", 1000L))).isFalse();
+    assertThat(filter.accept(entry("c.csv", 2000L))).isFalse();
+    assertThat(filter.accept(entry("d.csv", 2000L))).isTrue();
+    assertThat(filter.accept(entry("e.csv", 3000L))).isTrue();
+  }
+
+  @Test
+  void shouldHoldCursorBehindOlderPendingEntry() {
+    filter.accept(entry("old.csv", 1000L));
+    filter.accept(entry("new.csv", 2000L));
+    filter.commit("new.csv");
+    assertThat(metadataStore.get(KEY)).isNull();
+
+    filter.commit("old.csv");
+    assertThat(metadataStore.get(KEY)).isEqualTo("2000/new.csv");
+  }
+
+  @Test
+  void shouldRedeliverRevertedEntry() {
+    filter.accept(entry("fail.csv", 1000L));
+    filter.accept(entry("ok.csv", 2000L));
+    filter.revert("fail.csv");
+    filter.commit("ok.csv");
+    assertThat(metadataStore.get(KEY)).isNull();
+
+    assertThat(filter.accept(entry("fail.csv", 1000L))).isTrue();
+    filter.commit("fail.csv");
+    assertThat(filter.getCursorTime()).isEqualTo(2000L);
+  }
+
+  @Test
+  void shouldRevertRemainingEntriesOnRollback() {
+    SftpClient.DirEntry first = entry("1.csv", 1000L);
+    SftpClient.DirEntry second = entry("2.csv", 2000L);
+    List<SftpClient.DirEntry> listed = filter.filterFiles(new SftpClient.DirEntry[] {first, second});
+    assertThat(listed).hasSize(2);
+
+    filter.rollback(second, listed);
+    assertThat(filter.accept(entry("2.csv", 2000L))).isTrue();
+    assertThat(filter.accept(entry("1.csv", 1000L))).isFalse();
+  }
+
+  @Test
+  void shouldResumeFromPersistedCursor() {
+    metadataStore.put(KEY, "5000/x.csv");
+    SftpHighWaterMarkFileListFilter restarted = new SftpHighWaterMarkFileListFilter(metadataStore, KEY);
+
+    assertThat(restarted.accept(entry("x.csv", 5000L))).isFalse();
+    assertThat(restarted.accept(entry("old.csv", 4000L))).isFalse();
+    assertThat(restarted.accept(entry("y.csv", 5000L))).isTrue();
+  }
+
+  @Test
+  void shouldRevertEntryPendingLongerThanTimeout() {
+    MutableClock clock = new MutableClock();
+    SftpHighWaterMarkFileListFilter expiring =
+        new SftpHighWaterMarkFileListFilter(metadataStore, KEY, Duration.ofMinutes(10), clock);
+    expiring.accept(entry("dropped.csv", 1000L));
+    expiring.accept(entry("ok.csv", 2000L));
+    expiring.commit("ok.csv");
+    assertThat(expiring.accept(entry("dropped.csv", 1000L))).isFalse();
+
+    clock.advance(Duration.ofMinutes(11));
+
+    // The stuck entry is offered again and no longer blocks the cursor once committed.
+    assertThat(expiring.accept(entry("dropped.csv", 1000L))).isTrue();
+    expiring.commit("dropped.csv");
+    assertThat(expiring.getCursorTime()).isEqualTo(2000L);
+  }
+
+  @Test
+  void shouldStopHoldingCursorForRevertedEntryNoLongerListed() {
+    filter.accept(entry("gone.csv", 1000L));
+    filter.accept(entry("ok.csv", 2000L));
+    filter.revert("gone.csv");
+    filter.commit("ok.csv");
+    assertThat(metadataStore.get(KEY)).isNull();
+
+    assertThat(filter.listingStarted("/from")).containsExactly("gone.csv");
+    filter.listingCompleted("/from", Set.of("gone.csv"));
+
+    assertThat(metadataStore.get(KEY)).isEqualTo("2000/ok.csv");
+  }
+
+  @Test
+  void shouldKeepRevertedEntriesOutsideCompleteListings() {
+    filter.accept(entry("missing.csv", 1000L));
+    filter.accept(entry("ok.csv", 2000L));
+    filter.revert("missing.csv");
+    filter.commit("ok.csv");
+
+    // Only the listing itself decides what is gone; a filtered or cut-off view of it never prunes.
+    filter.filterFiles(new SftpClient.DirEntry[] {entry("ok.csv", 2000L)});
+    filter.listingCompleted("/from", Set.of());
+
+    assertThat(metadataStore.get(KEY)).isNull();
+    assertThat(filter.accept(entry("missing.csv", 1000L))).isTrue();
+  }
+
+  @Test
+  void shouldNotRecordEntriesRejectedEarlierInTheChain() {
+    ChainFileListFilter<SftpClient.DirEntry> chain = new ChainFileListFilter<>();
+    chain.addFilter(new SftpRegexPatternFileListFilter(".*\\.csv"));
+    chain.addFilter(filter);
+    SftpClient.DirEntry[] listing = {entry("a.csv", 1000L), entry("skipped.txt", 500L), entry("b.csv", 2000L)};
+
+    assertThat(chain.filterFiles(listing)).extracting(SftpClient.DirEntry::getFilename).containsExactly("a.csv", "b.csv");
+    assertThat(chain.accept(entry("late.txt", 100L))).isFalse();
+    filter.commit("a.csv");
+    filter.commit("b.csv");
+
+    // The rejected files were never pending, so they do not hold the cursor back.
+    assertThat(filter.getCursorTime()).isEqualTo(2000L);
+    assertThat(filter.listingStarted("/from")).isEmpty();
+  }
+
+  private static final class MutableClock extends Clock {
+
+    private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+
+  private static SftpClient.DirEntry entry(String name, long modified) {
+    SftpClient.DirEntry entry = mock(SftpClient.DirEntry.class);
+    SftpClient.Attributes attributes = mock(SftpClient.Attributes.class);
+    when(entry.getFilename()).thenReturn(name);
+    when(entry.getAttributes()).thenReturn(attributes);
+    when(attributes.getModifyTime()).thenReturn(FileTime.fromMillis(modified));
+    return entry;
+  }
+}
@@ -0,0 +1,76 @@
+package com.example.sftp.autoconfiguration.filters;
+
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SftpStableFileListFilterTest {
+
+  @Test
+  void shouldAcceptFilesOlderThanMinimumAge() {
+    SftpStableFileListFilter filter = new SftpStableFileListFilter(60_000L, false, 100);
+    long now = System.currentTimeMillis();
+
+    assertThat(filter.accept(entry("old.csv", 10L, now - 120_000L))).isTrue();
+    assertThat(filter.accept(entry("new.csv", 10L, now))).isFalse();
+    assertThat(filter.getCandidateCount()).isZero();
+  }
+
+  @Test
+  void shouldAcceptOnceUnchangedAcrossTwoListings() {
+    SftpStableFileListFilter filter = new SftpStableFileListFilter(null, true, 100);
+    long now = System.currentTimeMillis();
+
+    assertThat(filter.accept(entry("a.csv", 10L, now))).isFalse();
+    // Still growing.
+    assertThat(filter.accept(entry("a.csv", 20L, now + 5))).isFalse();
+    assertThat(filter.accept(entry("a.csv", 20L, now + 5))).isTrue();
+    assertThat(filter.getCandidateCount()).isZero();
+  }
+
+  @Test
+  void shouldPreferAgeOverStabilityWhenBothConfigured() {
+    SftpStableFileListFilter filter = new SftpStableFileListFilter(60_000L, true, 100);
+    long now = System.currentTimeMillis();
+
+    assertThat(filter.accept(entry("old.csv", 10L, now - 120_000L))).isTrue();
+    assertThat(filter.accept(entry("new.csv", 10L, now))).isFalse();
+    assertThat(filter.accept(entry("new.csv", 10L, now))).isTrue();
+  }
+
+  @Test
+  void shouldBoundCandidateMap() {
+    SftpStableFileListFilter filter = new SftpStableFileListFilter(null, true, 3);
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 10; i++) {
+      filter.accept(entry("f" + i + ".csv", 1L, now));
+    }
+    assertThat(filter.getCandidateCount()).isEqualTo(3);
+    // The eldest candidate was dropped, so it needs another listing.
+    assertThat(filter.accept(entry("f0.csv", 1L, now))).isFalse();
+    assertThat(filter.accept(entry("f9.csv", 1L, now))).isTrue();
+  }
+
+  @Test
+  void shouldRejectEntriesWithoutAttributes() {
+    SftpStableFileListFilter filter = new SftpStableFileListFilter(1L, true, 10);
+    SftpClient.DirEntry entry = mock(SftpClient.DirEntry.class);
+    assertThat(filter.accept(entry)).isFalse();
+    assertThat(filter.accept(null)).isFalse();
+  }
+
+  private static SftpClient.DirEntry entry(String name, long size, long modified) {
+    SftpClient.DirEntry entry = mock(SftpClient.DirEntry.class);
+    SftpClient.Attributes attributes = mock(SftpClient.Attributes.class);
+    when(entry.getFilename()).thenReturn(name);
+    when(entry.getAttributes()).thenReturn(attributes);
+    when(attributes.getSize()).thenReturn(size);
+    when(attributes.getModifyTime()).thenReturn(FileTime.fromMillis(modified));
+    return entry;
+  }
+}
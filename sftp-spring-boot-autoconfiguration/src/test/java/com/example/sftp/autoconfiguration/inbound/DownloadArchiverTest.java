@@ -0,0 +1,59 @@
+package com.example.sftp.autoconfiguration.inbound;
+
+import com.example.sftp.autoconfiguration.SftpFileProcessor;
+import com.example.sftp.autoconfiguration.SftpProperties.RetryProperties;
+import com.example.sftp.autoconfiguration.outbound.ArchivePathTemplate;
+import com.example.sftp.autoconfiguration.transformers.ArchivePrePostProcessorTransformer;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+public class DownloadArchiverTest {
+
+  private SftpFileProcessor processor;
+  private Session<SftpClient.DirEntry> session;
+  private DownloadArchiver archiver;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    processor = mock(SftpFileProcessor.class);
+    session = mock(Session.class);
+    SessionFactory<SftpClient.DirEntry> sessionFactory = mock(SessionFactory.class);
+    when(sessionFactory.getSession()).thenReturn(session);
+    RetryProperties retry = RetryProperties.builder()
+        .maxAttempts(1).initialInterval(1L).multiplier(1.0).maxInterval(1L).build();
+    archiver = new DownloadArchiver(sessionFactory, "inbox", ArchivePathTemplate.compile("archive/", "server1"),
+        new ArchivePrePostProcessorTransformer(processor, "server1", true, retry),
+        new ArchivePrePostProcessorTransformer(processor, "server1", false, retry));
+  }
+
+  @Test
+  void shouldRenameProcessedFileIntoArchive() throws Exception {
+    // when
+    archiver.accept("2024/report.csv");
+    // then
+    var inOrder = inOrder(processor, session);
+    inOrder.verify(processor).beforeArchive("inbox/2024/report.csv", "server1");
+    inOrder.verify(session).rename("inbox/2024/report.csv", "archive/report.csv");
+    inOrder.verify(processor).afterArchive("inbox/2024/report.csv", "server1");
+    verify(session).close();
+  }
+
+  @Test
+  void shouldNotCallAfterArchiveWhenRenameFails() throws Exception {
+    // given
+    doThrow(new IOException("no such file")).when(session).rename(anyString(), anyString());
+    // when / then
+    assertThatThrownBy(() -> archiver.accept("report.csv")).isInstanceOf(UncheckedIOException.class);
+    verify(processor, never()).afterArchive(anyString(), anyString());
+  }
+}
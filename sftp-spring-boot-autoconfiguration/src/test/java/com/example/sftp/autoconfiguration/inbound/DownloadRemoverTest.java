@@ -0,0 +1,78 @@
+package com.example.sftp.autoconfiguration.inbound;
+
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.io.IOException;
+
+import static org.mockito.Mockito.*;
+
+public class DownloadRemoverTest {
+
+  private Session<SftpClient.DirEntry> session;
+  private SessionFactory<SftpClient.DirEntry> sessionFactory;
+  private ThreadPoolTaskScheduler scheduler;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    session = mock(Session.class);
+    // A session without a raw client removes the files one by one.
+    when(session.getClientInstance()).thenReturn(new Object());
+    sessionFactory = mock(SessionFactory.class);
+    when(sessionFactory.getSession()).thenReturn(session);
+    scheduler = new ThreadPoolTaskScheduler();
+    scheduler.initialize();
+  }
+
+  @AfterEach
+  void tearDown() {
+    scheduler.shutdown();
+  }
+
+  @Test
+  void shouldRemoveFullBatchAsynchronouslyOverOneSession() throws Exception {
+    // given
+    DownloadRemover remover = new DownloadRemover(sessionFactory, "inbox/", 3, 60_000L, scheduler);
+    // when
+    remover.accept("a.csv");
+    remover.accept("2024/b.csv");
+    verify(session, never()).remove(anyString());
+    remover.accept("c.csv");
+    // then
+    verify(session, timeout(5000)).remove("inbox/c.csv");
+    verify(session).remove("inbox/a.csv");
+    verify(session).remove("inbox/2024/b.csv");
+    verify(sessionFactory, times(1)).getSession();
+    verify(session, timeout(5000)).close();
+  }
+
+  @Test
+  void shouldRemovePartialBatchOnceWindowElapsed() throws Exception {
+    // given
+    DownloadRemover remover = new DownloadRemover(sessionFactory, "inbox", 100, 50L, scheduler);
+    // when
+    remover.accept("a.csv");
+    // then
+    verify(session, timeout(5000)).remove("inbox/a.csv");
+  }
+
+  @Test
+  void shouldKeepRemovingAfterFailedRemoval() throws Exception {
+    // given
+    doThrow(new IOException("permission denied")).when(session).remove("inbox/a.csv");
+    DownloadRemover remover = new DownloadRemover(sessionFactory, "inbox", 100, 60_000L, scheduler);
+    remover.accept("a.csv");
+    remover.accept("b.csv");
+    // when
+    remover.flush();
+    // then
+    verify(session).remove("inbox/b.csv");
+    verify(session).close();
+  }
+}
@@ -0,0 +1,100 @@
+package com.example.sftp.autoconfiguration.inbound;
+
+import com.example.sftp.autoconfiguration.BaseEmbeddedSftpTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.file.remote.session.Session;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class ResumableInboundFileSynchronizerTest extends BaseEmbeddedSftpTest {
+
+  @TempDir
+  Path localDirectory;
+
+  private Path partDirectory;
+  private SimpleMeterRegistry meterRegistry;
+  private ResumableInboundFileSynchronizer synchronizer;
+  private byte[] content;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    content = new byte[300_000];
+    new Random(42).nextBytes(content);
+    Files.createDirectories(root.resolve("inbound"));
+    Files.write(root.resolve("inbound/large.bin"), content);
+    // SFTP v3 carries modification times in whole seconds.
+    Files.setLastModifiedTime(root.resolve("inbound/large.bin"), FileTime.fromMillis(1_700_000_000_000L));
+    partDirectory = localDirectory.resolve("parts");
+    meterRegistry = new SimpleMeterRegistry();
+    synchronizer = new ResumableInboundFileSynchronizer(sessionFactory, partDirectory.toFile(), meterRegistry, "test");
+    synchronizer.setRemoteDirectory("/inbound");
+    synchronizer.setPreserveTimestamp(true);
+    synchronizer.setBeanFactory(mock(BeanFactory.class));
+    synchronizer.afterPropertiesSet();
+  }
+
+  @Test
+  void shouldRenameCompletedPartialFileIntoLocalDirectory() throws Exception {
+    Path local = Files.createDirectories(localDirectory.resolve("local"));
+
+    synchronizer.synchronizeToLocalDirectory(local.toFile());
+
+    assertThat(local.resolve("large.bin")).hasBinaryContent(content);
+    assertThat(Files.getLastModifiedTime(local.resolve("large.bin")).toMillis()).isEqualTo(1_700_000_000_000L);
+    assertThat(local.resolve("large.bin.writing")).doesNotExist();
+    assertThat(partDirectory).isEmptyDirectory();
+  }
+
+  @Test
+  void shouldContinueFromPartialFileAfterFailure() throws Exception {
+    keepTruncatedPartialFile(100_000);
+    Path local = Files.createDirectories(localDirectory.resolve("local"));
+
+    synchronizer.synchronizeToLocalDirectory(local.toFile());
+
+    assertThat(local.resolve("large.bin")).hasBinaryContent(content);
+    assertThat(meterRegistry.counter("sftp.download.resumed", "server", "test").count()).isEqualTo(1.0);
+    assertThat(meterRegistry.counter("sftp.download.resumed.bytes", "server", "test").count()).isEqualTo(100_000.0);
+    assertThat(partDirectory).isEmptyDirectory();
+  }
+
+  @Test
+  void shouldStartOverWhenRemoteFileChanged() throws Exception {
+    keepTruncatedPartialFile(100_000);
+    Files.setLastModifiedTime(root.resolve("inbound/large.bin"), FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+    Path local = Files.createDirectories(localDirectory.resolve("local"));
+
+    synchronizer.synchronizeToLocalDirectory(local.toFile());
+
+    assertThat(local.resolve("large.bin")).hasBinaryContent(content);
+    assertThat(meterRegistry.counter("sftp.download.resumed", "server", "test").count()).isZero();
+  }
+
+  /**
+   * Downloads the remote file into its partial file and cuts it down, as if the connection had dropped after
+   * {@code length} bytes.
+   */
+  private void keepTruncatedPartialFile(long length) throws IOException {
+    File partFile = synchronizer.partFile("/inbound/large.bin");
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      synchronizer.download((SftpClient) session.getClientInstance(), "/inbound/large.bin", partFile);
+    }
+    try (RandomAccessFile file = new RandomAccessFile(partFile, "rw")) {
+      file.setLength(length);
+    }
+  }
+}
@@ -4,6 +4,8 @@ import com.example.sftp.autoconfiguration.SftpFileProcessor;
 import com.example.sftp.autoconfiguration.SftpProperties;
 import com.example.sftp.autoconfiguration.SftpProperties.SftpServerConfig;
 import com.example.sftp.autoconfiguration.SftpSessionFactoryProvider;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.common.SftpConstants;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -11,10 +13,17 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.context.ApplicationContext;
 import org.springframework.integration.dsl.IntegrationFlow;
 import org.springframework.integration.dsl.context.IntegrationFlowContext;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
 import org.springframework.integration.handler.advice.ExpressionEvaluatingRequestHandlerAdvice;
 import org.springframework.integration.sftp.session.DefaultSftpSessionFactory;
 import org.springframework.transaction.PlatformTransactionManager;
 
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -31,6 +40,7 @@ public class SftpDownloadFlowConfigTest {
   private SftpProperties.PollerProperties pollerProperties;
   private SftpProperties.Throughput throughput;
   private SftpServerConfig serverConfig;
+  private IntegrationFlowContext.IntegrationFlowRegistrationBuilder dummyRegistrationBuilder;
 
   @BeforeEach
   void setUp() {
@@ -58,7 +68,7 @@ public class SftpDownloadFlowConfigTest {
     dummyFactory.setUser("dummyUser");
     dummyFactory.setPassword("dummyPassword");
     when(factoryProvider.getFactory(anyString())).thenReturn(dummyFactory);
-    IntegrationFlowContext.IntegrationFlowRegistrationBuilder dummyRegistrationBuilder = mock(IntegrationFlowContext.IntegrationFlowRegistrationBuilder.class);
+    dummyRegistrationBuilder = mock(IntegrationFlowContext.IntegrationFlowRegistrationBuilder.class);
     when(dummyRegistrationBuilder.id(any(String.class))).thenReturn(dummyRegistrationBuilder);
     when(flowContext.registration(any(IntegrationFlow.class))).thenReturn(dummyRegistrationBuilder);
 
@@ -71,4 +81,85 @@ public class SftpDownloadFlowConfigTest {
         transactionManager, flowContext, serverConfig);
     verify(flowContext, atLeastOnce()).registration(any());
   }
+
+  @Test
+  void shouldRegisterOneDownloadFlowPerSource() {
+    SftpServerConfig multiSourceConfig = serverConfig.toBuilder()
+        .sources(List.of(
+            SftpProperties.SourceDirectory.builder().name("orders").path("/remote/orders").filePattern(".*\\.csv").build(),
+            SftpProperties.SourceDirectory.builder().name("invoices").path("/remote/invoices").maxFetchSize(50).build()))
+        .build();
+
+    new SftpDownloadFlowConfig(
+        applicationContext, sftpProperties, fileProcessor, factoryProvider, errorHandlingAdvice,
+        transactionManager, flowContext, multiSourceConfig);
+
+    verify(flowContext, times(3)).registration(any());
+    verify(dummyRegistrationBuilder).id("sftpDownloadFlow-testServerDownload");
+    verify(dummyRegistrationBuilder).id("sftpDownloadFlow-testServerDownload-orders");
+    verify(dummyRegistrationBuilder).id("sftpDownloadFlow-testServerDownload-invoices");
+    verify(factoryProvider, times(1)).getFactory("testServerDownload");
+  }
+
+  @Test
+  void shouldRejectSourceWithoutPath() {
+    SftpServerConfig invalidConfig = serverConfig.toBuilder()
+        .from(null)
+        .sources(List.of(SftpProperties.SourceDirectory.builder().name("orders").build()))
+        .build();
+
+    assertThatThrownBy(() -> new SftpDownloadFlowConfig(
+        applicationContext, sftpProperties, fileProcessor, factoryProvider, errorHandlingAdvice,
+        transactionManager, flowContext, invalidConfig))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldSeeAppendedFileWhenStableListingCheckBypassesListingCache() throws Exception {
+    SftpDownloadFlowConfig config = new SftpDownloadFlowConfig(
+        applicationContext, sftpProperties, fileProcessor, factoryProvider, errorHandlingAdvice,
+        transactionManager, flowContext, serverConfig);
+    SessionFactory<SftpClient.DirEntry> factory = appendingFileFactory();
+    SftpServerConfig cachedConfig = serverConfig.toBuilder().listingCache(true).build();
+    SftpServerConfig stableConfig = cachedConfig.toBuilder().stableListingCheck(true).build();
+
+    // The directory is unchanged by the append, so a cached listing keeps the old size.
+    SessionFactory<SftpClient.DirEntry> cached = config.createDownloadSessionFactory(cachedConfig, factory, null, null);
+    assertThat(cached.getSession().list("/remote/from")[0].getAttributes().getSize()).isEqualTo(10L);
+    assertThat(cached.getSession().list("/remote/from")[0].getAttributes().getSize()).isEqualTo(10L);
+
+    factory = appendingFileFactory();
+    SessionFactory<SftpClient.DirEntry> stable = config.createDownloadSessionFactory(stableConfig, factory, null, null);
+    assertThat(stable.getSession().list("/remote/from")[0].getAttributes().getSize()).isEqualTo(10L);
+    assertThat(stable.getSession().list("/remote/from")[0].getAttributes().getSize()).isEqualTo(20L);
+  }
+
+  /**
+   * Returns a factory whose 'from' directory holds one file, appended to between the first and second listing.
+   */
+  @SuppressWarnings("unchecked")
+  private static SessionFactory<SftpClient.DirEntry> appendingFileFactory() throws Exception {
+    SessionFactory<SftpClient.DirEntry> factory = mock(SessionFactory.class);
+    Session<SftpClient.DirEntry> session = mock(Session.class);
+    SftpClient client = mock(SftpClient.class);
+    SftpClient.Attributes directory = new SftpClient.Attributes();
+    directory.setPermissions(SftpConstants.S_IFDIR | 0755);
+    directory.setModifyTime(FileTime.fromMillis(1000L));
+    directory.setSize(4096L);
+    when(factory.getSession()).thenReturn(session);
+    when(session.getClientInstance()).thenReturn(client);
+    when(client.stat("/remote/from")).thenReturn(directory);
+    when(session.list("/remote/from")).thenReturn(
+        new SftpClient.DirEntry[] {fileEntry(10L)},
+        new SftpClient.DirEntry[] {fileEntry(20L)});
+    return factory;
+  }
+
+  private static SftpClient.DirEntry fileEntry(long size) {
+    SftpClient.Attributes attributes = new SftpClient.Attributes();
+    attributes.setPermissions(SftpConstants.S_IFREG | 0644);
+    attributes.setSize(size);
+    attributes.setModifyTime(FileTime.fromMillis(1000L + size));
+    return new SftpClient.DirEntry("data.csv", "data.csv", attributes);
+  }
 }
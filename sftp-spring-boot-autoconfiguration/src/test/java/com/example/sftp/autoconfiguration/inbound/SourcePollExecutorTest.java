@@ -0,0 +1,58 @@
+package com.example.sftp.autoconfiguration.inbound;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourcePollExecutorTest {
+
+  @Test
+  void shouldKeepOnePollPerSourceQueuedAndServeSourcesInTurn() {
+    List<Runnable> queue = new ArrayList<>();
+    Executor shared = queue::add;
+    SourcePollExecutor busy = new SourcePollExecutor(shared, "busy");
+    SourcePollExecutor quiet = new SourcePollExecutor(shared, "quiet");
+    List<String> polls = new ArrayList<>();
+
+    // The busy source is triggered five times while all workers are taken, the quiet one once.
+    for (int i = 0; i < 5; i++) {
+      busy.execute(() -> polls.add("busy"));
+    }
+    quiet.execute(() -> polls.add("quiet"));
+    assertThat(queue).hasSize(2);
+
+    queue.remove(0).run();
+    busy.execute(() -> polls.add("busy"));
+    queue.remove(0).run();
+    queue.remove(0).run();
+
+    assertThat(polls).containsExactly("busy", "quiet", "busy");
+    assertThat(queue).isEmpty();
+  }
+
+  @Test
+  void shouldAcceptNextPollWhenSharedExecutorRejects() {
+    List<Runnable> queue = new ArrayList<>();
+    boolean[] reject = {true};
+    SourcePollExecutor executor = new SourcePollExecutor(task -> {
+      if (reject[0]) {
+        throw new IllegalStateException("queue full");
+      }
+      queue.add(task);
+    }, "orders");
+
+    try {
+      executor.execute(() -> { });
+    } catch (IllegalStateException expected) {
+      // The rejected poll must not block the following ones.
+    }
+    reject[0] = false;
+    executor.execute(() -> { });
+
+    assertThat(queue).hasSize(1);
+  }
+}
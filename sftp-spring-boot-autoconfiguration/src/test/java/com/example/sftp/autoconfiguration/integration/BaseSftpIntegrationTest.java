@@ -1,12 +1,11 @@
 package com.example.sftp.autoconfiguration.integration;
 
+import com.example.sftp.autoconfiguration.BaseEmbeddedSftpTest;
 import com.example.sftp.autoconfiguration.SftpProperties;
 import com.example.sftp.autoconfiguration.SftpSessionFactoryProvider;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.sshd.server.SshServer;
-import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
 import org.apache.sshd.sftp.client.SftpClient;
-import org.apache.sshd.sftp.server.SftpSubsystemFactory;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.io.TempDir;
@@ -27,10 +26,8 @@ import org.springframework.util.ObjectUtils;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
     classes = BaseSftpIntegrationTest.TestConfig.class)
@@ -86,13 +83,8 @@ public abstract class BaseSftpIntegrationTest {
 
   @BeforeAll
   public static void setUpSftp() throws Exception {
-    sshd = SshServer.setUpDefaultServer();
-    sshd.setPort(0); // system assigns an available port.
-    sshd.setKeyPairProvider(new SimpleGeneratorHostKeyProvider(Paths.get("target/hostkey.ser")));
-    sshd.setSubsystemFactories(java.util.Collections.singletonList(new SftpSubsystemFactory()));
-    sshd.setPasswordAuthenticator((username, password, session) ->
-        Objects.equals(username, "user") && Objects.equals(password, "password"));
-    sshd.start();
+    // Serves the default file system on a port assigned by the system.
+    sshd = BaseEmbeddedSftpTest.startServer(null);
     sftpPort = sshd.getPort();
   }
 
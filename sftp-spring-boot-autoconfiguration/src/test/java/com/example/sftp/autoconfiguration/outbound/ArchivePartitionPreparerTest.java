@@ -0,0 +1,50 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ArchivePartitionPreparerTest {
+
+  private final Set<String> existing = new HashSet<>();
+  private SessionFactory<SftpClient.DirEntry> sessionFactory;
+  private Session<SftpClient.DirEntry> session;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() throws Exception {
+    session = mock(Session.class);
+    sessionFactory = mock(SessionFactory.class);
+    when(sessionFactory.getSession()).thenReturn(session);
+    existing.add("archive");
+    when(session.exists(anyString())).thenAnswer(invocation -> existing.contains(invocation.<String>getArgument(0)));
+    when(session.mkdir(anyString())).thenAnswer(invocation -> existing.add(invocation.getArgument(0)));
+  }
+
+  @Test
+  void shouldCreateTodayAndUpcomingPartitionsOnce() throws Exception {
+    Clock clock = Clock.fixed(Instant.parse("2024-12-31T22:00:00Z"), ZoneOffset.UTC);
+    ArchivePartitionPreparer preparer = new ArchivePartitionPreparer(sessionFactory,
+        ArchivePathTemplate.compile("archive/{yyyy}/{MM}/{dd}", "server1"), 1, clock);
+
+    preparer.run();
+    preparer.run();
+
+    assertThat(existing).contains("archive/2024/12/31", "archive/2025/01/01", "archive/2025");
+    verify(session).mkdir("archive/2024/12/31");
+    verify(session).mkdir("archive/2025/01/01");
+    verify(sessionFactory, times(1)).getSession();
+  }
+}
@@ -0,0 +1,85 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ArchivePathTemplateTest {
+
+  private static final LocalDate DATE = LocalDate.of(2024, 3, 5);
+
+  @Test
+  void shouldRenderDateServerAndFileNameTokens() {
+    ArchivePathTemplate template = ArchivePathTemplate.compile("archive/{server}/{yyyy}/{MM}/{dd}/{filename}.done", "partnerA");
+
+    assertThat(template.render("report.csv", DATE)).isEqualTo("archive/partnerA/2024/03/05/report.csv.done");
+    assertThat(template.directory(DATE)).isEqualTo("archive/partnerA/2024/03/05");
+    assertThat(template.isDatePartitioned()).isTrue();
+  }
+
+  @Test
+  void shouldAppendFileNameToPlainDirectory() {
+    ArchivePathTemplate template = ArchivePathTemplate.compile("archive/", "partnerA");
+
+    assertThat(template.render("report.csv", DATE)).isEqualTo("archive/report.csv");
+    assertThat(template.directory(DATE)).isEqualTo("archive");
+    assertThat(template.isDatePartitioned()).isFalse();
+  }
+
+  @Test
+  void shouldNotResolveDirectoryDependingOnFileName() {
+    ArchivePathTemplate template = ArchivePathTemplate.compile("archive/{filename}/{yyyy}/{filename}", "partnerA");
+
+    assertThat(template.directory(DATE)).isNull();
+    assertThat(template.isDatePartitioned()).isFalse();
+  }
+
+  @Test
+  void shouldRejectUnknownToken() {
+    assertThatThrownBy(() -> ArchivePathTemplate.compile("archive/{week}", "partnerA"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("{week}");
+  }
+
+  @Test
+  void shouldResolveRootDirectoryBeforeFirstToken() {
+    assertThat(ArchivePathTemplate.compile("archive/{server}/{yyyy}/{MM}/{dd}/{filename}", "s1").rootDirectory())
+        .isEqualTo("archive/s1");
+    assertThat(ArchivePathTemplate.compile("archive", "s1").rootDirectory()).isEqualTo("archive");
+    assertThat(ArchivePathTemplate.compile("{yyyy}/{filename}", "s1").rootDirectory()).isNull();
+  }
+
+  @Test
+  void shouldResolveEndOfDatePartition() {
+    ArchivePathTemplate daily = ArchivePathTemplate.compile("archive/{yyyy}/{MM}/{dd}/{filename}", "s1");
+    assertThat(daily.partitionEnd("archive/2024/02/29")).isEqualTo(LocalDate.of(2024, 3, 1));
+    assertThat(daily.partitionEnd("archive/2024/02/29/nested")).isEqualTo(LocalDate.of(2024, 3, 1));
+    assertThat(daily.partitionEnd("archive/2024/02")).isNull();
+    assertThat(daily.partitionEnd("archive/2024/13/01")).isNull();
+    assertThat(daily.partitionEnd("other/2024/02/29")).isNull();
+
+    ArchivePathTemplate monthly = ArchivePathTemplate.compile("archive/{yyyy}-{MM}", "s1");
+    assertThat(monthly.partitionEnd("archive/2024-12")).isEqualTo(LocalDate.of(2025, 1, 1));
+    assertThat(ArchivePathTemplate.compile("archive", "s1").partitionEnd("archive")).isNull();
+  }
+
+  @Test
+  void shouldRecognizeArchivePathsAndTheirDirectories() {
+    ArchivePathTemplate daily = ArchivePathTemplate.compile("/data/{yyyy}/{MM}/{dd}", "s1");
+    assertThat(daily.isArchivePath("/data/2026/03/05/report.csv")).isTrue();
+    assertThat(daily.isArchivePath("/data/readme.txt")).isFalse();
+    assertThat(daily.isArchivePath("/data/2026/03/05/nested/report.csv")).isFalse();
+    assertThat(daily.isArchiveDirectory("/data/2026")).isTrue();
+    assertThat(daily.isArchiveDirectory("/data/2026/03/05")).isTrue();
+    assertThat(daily.isArchiveDirectory("/data/inbox")).isFalse();
+    assertThat(daily.isArchiveDirectory("/data/20")).isFalse();
+    assertThat(daily.isArchiveDirectory("/data/2026/03/05/nested")).isFalse();
+
+    ArchivePathTemplate plain = ArchivePathTemplate.compile("archive", "s1");
+    assertThat(plain.isArchivePath("archive/report.csv")).isTrue();
+    assertThat(plain.isArchiveDirectory("archive/sub")).isFalse();
+  }
+}
@@ -0,0 +1,124 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import com.example.sftp.autoconfiguration.BaseEmbeddedSftpTest;
+import com.example.sftp.autoconfiguration.session.ArchiveTimeSessionFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ArchiveRetentionPurgerTest extends BaseEmbeddedSftpTest {
+
+  private static final Instant NOW = Instant.parse("2026-03-10T12:00:00Z");
+
+  @Test
+  void shouldDeleteExpiredFilesAndEmptiedPartitions() throws Exception {
+    for (int i = 0; i < 150; i++) {
+      file("archive/flat/old-" + i + ".txt", 40);
+    }
+    file("archive/flat/young.txt", 1);
+    file("archive/2026/01/05/a.txt", 64);
+    file("archive/2026/01/05/b.txt", 64);
+    age(root.resolve("archive/2026/01/05"), 64);
+    age(root.resolve("archive/2026/01"), 64);
+    file("archive/2026/03/10/today.txt", 0);
+    Files.createDirectories(root.resolve("archive/2026/03/11"));
+
+    ArchiveRetentionPurger purger = new ArchiveRetentionPurger(sessionFactory, "archive", Duration.ofDays(30),
+        Clock.fixed(NOW, ZoneOffset.UTC));
+
+    assertThat(purger.purge()).isEqualTo(152);
+    try (var remaining = Files.list(root.resolve("archive/flat"))) {
+      assertThat(remaining).extracting(path -> path.getFileName().toString()).containsExactly("young.txt");
+    }
+    assertThat(root.resolve("archive/2026/01")).doesNotExist();
+    assertThat(root.resolve("archive/2026/03/10/today.txt")).exists();
+    assertThat(root.resolve("archive/2026/03/11")).isDirectory();
+  }
+
+  @Test
+  void shouldAgeFilesRenamedIntoDatePartitionsFromThePartitionDate() throws Exception {
+    file("incoming/renamed-today.txt", 400);
+    file("incoming/renamed-earlier.txt", 400);
+    ArchivePathTemplate template = ArchivePathTemplate.compile("dated/{yyyy}/{MM}/{dd}/{filename}", "test");
+    try (var session = sessionFactory.getSession()) {
+      session.mkdir("dated");
+      for (String day : new String[] {"dated/2026", "dated/2026/03", "dated/2026/03/10", "dated/2026/01", "dated/2026/01/05"}) {
+        session.mkdir(day);
+      }
+      session.rename("incoming/renamed-today.txt", "dated/2026/03/10/renamed-today.txt");
+      session.rename("incoming/renamed-earlier.txt", "dated/2026/01/05/renamed-earlier.txt");
+    }
+    file("dated/loose.txt", 400);
+    file("dated/2026/notes/old.txt", 400);
+
+    ArchiveRetentionPurger purger = new ArchiveRetentionPurger(sessionFactory, template, Duration.ofDays(30),
+        Clock.fixed(NOW, ZoneOffset.UTC));
+
+    assertThat(purger.getArchiveDirectory()).isEqualTo("dated");
+    assertThat(purger.purge()).isEqualTo(1);
+    assertThat(root.resolve("dated/2026/03/10/renamed-today.txt")).exists();
+    assertThat(root.resolve("dated/2026/01/05/renamed-earlier.txt")).doesNotExist();
+    // Paths the template does not render are not archived files.
+    assertThat(root.resolve("dated/loose.txt")).exists();
+    assertThat(root.resolve("dated/2026/notes/old.txt")).exists();
+  }
+
+  @Test
+  void shouldLeaveDirectoriesOutsideTheTemplateAlone() throws Exception {
+    file("data/inbox/waiting.txt", 400);
+    file("data/readme.txt", 400);
+    Files.createDirectories(root.resolve("data/outbox"));
+    age(root.resolve("data/outbox"), 400);
+    file("data/2025/12/01/archived.txt", 0);
+    age(root.resolve("data/2025/12/01"), 90);
+    age(root.resolve("data/2025/12"), 90);
+    age(root.resolve("data/2025"), 90);
+
+    ArchiveRetentionPurger purger = new ArchiveRetentionPurger(sessionFactory,
+        ArchivePathTemplate.compile("data/{yyyy}/{MM}/{dd}", "test"), Duration.ofDays(30), Clock.fixed(NOW, ZoneOffset.UTC));
+
+    assertThat(purger.purge()).isEqualTo(1);
+    assertThat(root.resolve("data/2025")).doesNotExist();
+    assertThat(root.resolve("data/inbox/waiting.txt")).exists();
+    assertThat(root.resolve("data/readme.txt")).exists();
+    assertThat(root.resolve("data/outbox")).isDirectory();
+  }
+
+  @Test
+  void shouldAgeFilesRenamedIntoPlainArchiveFromWhenTheyWereArchived() throws Exception {
+    file("incoming/renamed.txt", 400);
+    file("plain/expired.txt", 400);
+    try (var session = new ArchiveTimeSessionFactory(sessionFactory).getSession()) {
+      session.rename("incoming/renamed.txt", "plain/renamed.txt");
+    }
+
+    ArchiveRetentionPurger purger = new ArchiveRetentionPurger(sessionFactory,
+        ArchivePathTemplate.compile("plain", "test"), Duration.ofDays(30), Clock.systemUTC());
+
+    assertThat(purger.getArchiveDirectory()).isEqualTo("plain");
+    // The file was last written long ago, but it was archived just now.
+    assertThat(purger.purge()).isEqualTo(1);
+    assertThat(root.resolve("plain/renamed.txt")).exists();
+    assertThat(root.resolve("plain/expired.txt")).doesNotExist();
+  }
+
+  private static void file(String path, int ageInDays) throws IOException {
+    Path file = root.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, path);
+    age(file, ageInDays);
+  }
+
+  private static void age(Path path, int ageInDays) throws IOException {
+    Files.setLastModifiedTime(path, FileTime.from(NOW.minus(Duration.ofDays(ageInDays))));
+  }
+}
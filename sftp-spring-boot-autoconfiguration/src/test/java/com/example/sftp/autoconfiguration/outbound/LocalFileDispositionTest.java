@@ -0,0 +1,127 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import com.example.sftp.autoconfiguration.filters.BoundedAcceptOnceFileListFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalFileDispositionTest {
+
+  @TempDir
+  Path directory;
+
+  private Path uploadDirectory;
+  private Path sentDirectory;
+  private Path quarantineDirectory;
+  private BoundedAcceptOnceFileListFilter filter;
+  private File file;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    uploadDirectory = Files.createDirectory(directory.resolve("upload"));
+    sentDirectory = directory.resolve("upload.sent");
+    quarantineDirectory = directory.resolve("upload.quarantine");
+    filter = new BoundedAcceptOnceFileListFilter(100, null);
+    file = Files.writeString(uploadDirectory.resolve("report.csv"), "a,b").toFile();
+    filter.accept(file);
+  }
+
+  @Test
+  void shouldMoveUploadedFileIntoDatedSentDirectory() {
+    disposition("move").uploaded(file, "report.csv");
+
+    assertThat(file).doesNotExist();
+    assertThat(sentDirectory.resolve("2024-03-05/report.csv")).hasContent("a,b");
+    assertThat(filter.size()).isZero();
+  }
+
+  @Test
+  void shouldHardLinkUploadedFileOutOfUploadDirectory() {
+    disposition("link").uploaded(file, "report.csv");
+
+    assertThat(file).doesNotExist();
+    assertThat(sentDirectory.resolve("2024-03-05/report.csv")).hasContent("a,b");
+  }
+
+  @Test
+  void shouldDeleteUploadedFile() {
+    disposition("delete").uploaded(file, "report.csv");
+
+    assertThat(file).doesNotExist();
+    assertThat(sentDirectory).doesNotExist();
+  }
+
+  @Test
+  void shouldQuarantineFailedFile() {
+    disposition("delete").failed(file, "report.csv");
+
+    assertThat(file).doesNotExist();
+    assertThat(quarantineDirectory.resolve("2024-03-05/report.csv")).hasContent("a,b");
+    assertThat(filter.size()).isZero();
+  }
+
+  @Test
+  void shouldNotReplaceFileSentEarlierTheSameDay() throws Exception {
+    LocalFileDisposition move = disposition("move");
+    move.uploaded(file, "report.csv");
+    File second = Files.writeString(uploadDirectory.resolve("report.csv"), "c,d").toFile();
+    move.uploaded(second, "report.csv");
+    File third = Files.writeString(uploadDirectory.resolve("report.csv"), "e,f").toFile();
+    disposition("link").uploaded(third, "report.csv");
+
+    assertThat(sentDirectory.resolve("2024-03-05/report.csv")).hasContent("a,b");
+    assertThat(sentDirectory.resolve("2024-03-05/report-1.csv")).hasContent("c,d");
+    assertThat(sentDirectory.resolve("2024-03-05/report-2.csv")).hasContent("e,f");
+  }
+
+  @Test
+  void shouldNotReplaceFileQuarantinedEarlier() throws Exception {
+    LocalFileDisposition delete = disposition("delete");
+    delete.failed(file, "report.csv");
+    File second = Files.writeString(uploadDirectory.resolve("report.csv"), "c,d").toFile();
+    delete.failed(second, "report.csv");
+
+    assertThat(quarantineDirectory.resolve("2024-03-05/report.csv")).hasContent("a,b");
+    assertThat(quarantineDirectory.resolve("2024-03-05/report-1.csv")).hasContent("c,d");
+  }
+
+  @Test
+  void shouldKeepShardOfSentFile() throws Exception {
+    Path shard = Files.createDirectory(uploadDirectory.resolve("shard-1"));
+    File sharded = Files.writeString(shard.resolve("report.csv"), "c,d").toFile();
+    LocalFileDisposition move = disposition("move");
+
+    move.uploaded(file, "report.csv");
+    move.uploaded(sharded, "shard-1/report.csv");
+
+    assertThat(sentDirectory.resolve("2024-03-05/report.csv")).hasContent("a,b");
+    assertThat(sentDirectory.resolve("2024-03-05/shard-1/report.csv")).hasContent("c,d");
+  }
+
+  @Test
+  void shouldKeepFilesByDefault() {
+    LocalFileDisposition keep = disposition(null);
+
+    keep.uploaded(file, "report.csv");
+    keep.failed(file, "report.csv");
+
+    assertThat(keep.isKeep()).isTrue();
+    assertThat(file).exists();
+    assertThat(filter.size()).isEqualTo(1);
+  }
+
+  private LocalFileDisposition disposition(String action) {
+    Clock clock = Clock.fixed(Instant.parse("2024-03-05T10:15:30Z"), ZoneOffset.UTC);
+    return new LocalFileDisposition(action, sentDirectory.toFile(), quarantineDirectory.toFile(), Runnable::run,
+        filter, clock);
+  }
+}
@@ -0,0 +1,42 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RemoteDirectoryCacheTest {
+
+  private final AtomicLong now = new AtomicLong(1_000L);
+  private final RemoteDirectoryCache cache = new RemoteDirectoryCache(500L, now::get);
+
+  @Test
+  void shouldForgetDirectoryAfterTtl() {
+    cache.markExisting("out/2024/06");
+    now.addAndGet(499L);
+    assertThat(cache.isKnown("out/2024/06")).isTrue();
+
+    now.addAndGet(1L);
+    assertThat(cache.isKnown("out/2024/06")).isFalse();
+  }
+
+  @Test
+  void shouldInvalidateDirectoryWithParentsAndChildren() {
+    cache.markExisting("out");
+    cache.markExisting("out/2024");
+    cache.markExisting("out/2024/06");
+    cache.markExisting("out/2024/06/01");
+    cache.markExisting("out/2025");
+    cache.markExisting("outbox");
+
+    cache.invalidate("out/2024/06");
+
+    assertThat(cache.isKnown("out")).isFalse();
+    assertThat(cache.isKnown("out/2024")).isFalse();
+    assertThat(cache.isKnown("out/2024/06")).isFalse();
+    assertThat(cache.isKnown("out/2024/06/01")).isFalse();
+    assertThat(cache.isKnown("out/2025")).isTrue();
+    assertThat(cache.isKnown("outbox")).isTrue();
+  }
+}
@@ -0,0 +1,57 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import com.example.sftp.autoconfiguration.BaseEmbeddedSftpTest;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.file.remote.session.Session;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RemoteFileCopierTest extends BaseEmbeddedSftpTest {
+
+  @BeforeEach
+  void setUp() throws Exception {
+    Files.createDirectories(root.resolve("inbox"));
+    Files.createDirectories(root.resolve("archive"));
+  }
+
+  @Test
+  void shouldCopyOnServerAndKeepOriginal() throws Exception {
+    Files.writeString(root.resolve("inbox/a.txt"), "content");
+    Files.writeString(root.resolve("archive/a.txt"), "stale");
+
+    new RemoteFileCopier(sessionFactory).copy("inbox/a.txt", "archive/a.txt");
+
+    assertThat(root.resolve("inbox/a.txt")).hasContent("content");
+    assertThat(root.resolve("archive/a.txt")).hasContent("content");
+  }
+
+  @Test
+  void shouldStreamLargeFileWithoutServerSideCopy() throws Exception {
+    byte[] content = new byte[3 * 1024 * 1024 + 17];
+    new Random(42).nextBytes(content);
+    Files.write(root.resolve("inbox/large.bin"), content);
+
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      RemoteFileCopier.stream((SftpClient) session.getClientInstance(), "inbox/large.bin", "archive/large.bin");
+    }
+
+    assertThat(root.resolve("archive/large.bin")).hasBinaryContent(content);
+    assertThat(root.resolve("inbox/large.bin")).hasBinaryContent(content);
+  }
+
+  @Test
+  void shouldFailWhenSourceIsMissing() {
+    RemoteFileCopier copier = new RemoteFileCopier(sessionFactory);
+
+    assertThatThrownBy(() -> copier.copy("inbox/missing.txt", "archive/missing.txt"))
+        .isInstanceOf(UncheckedIOException.class)
+        .hasMessageContaining("inbox/missing.txt");
+  }
+}
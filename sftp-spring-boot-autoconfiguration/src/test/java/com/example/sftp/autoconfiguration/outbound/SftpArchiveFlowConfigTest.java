@@ -111,4 +111,42 @@ public class SftpArchiveFlowConfigTest {
     );
     verify(flowContext, atLeastOnce()).registration(any());
   }
+
+  @Test
+  void shouldRegisterBatchArchiveFlowWhenBatchSizeIsConfigured() {
+    SftpServerConfig batchConfig = serverConfig.toBuilder()
+        .archiveBatchSize(50)
+        .archiveBatchWindow(100L)
+        .build();
+    new SftpArchiveFlowConfig(
+        applicationContext,
+        sftpProperties,
+        globalFileProcessor,
+        factoryProvider,
+        errorHandlingAdvice,
+        transactionManager,
+        flowContext,
+        batchConfig
+    );
+    verify(flowContext, times(1)).registration(any());
+  }
+
+  @Test
+  void shouldRegisterCopyArchiveFlowWhenCopyModeIsConfigured() {
+    SftpServerConfig copyConfig = serverConfig.toBuilder()
+        .archiveMode("copy")
+        .archiveBatchSize(50)
+        .build();
+    new SftpArchiveFlowConfig(
+        applicationContext,
+        sftpProperties,
+        globalFileProcessor,
+        factoryProvider,
+        errorHandlingAdvice,
+        transactionManager,
+        flowContext,
+        copyConfig
+    );
+    verify(flowContext, times(1)).registration(any());
+  }
 }
@@ -0,0 +1,123 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import com.example.sftp.autoconfiguration.BaseEmbeddedSftpTest;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SftpBatchArchiveHandlerTest extends BaseEmbeddedSftpTest {
+
+  private final AtomicInteger sessions = new AtomicInteger();
+  private final List<String> archived = new CopyOnWriteArrayList<>();
+  private final Map<Object, Exception> failed = new ConcurrentHashMap<>();
+  private ThreadPoolTaskScheduler scheduler;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    Files.createDirectories(root.resolve("inbox"));
+    Files.createDirectories(root.resolve("archive"));
+    scheduler = new ThreadPoolTaskScheduler();
+    scheduler.initialize();
+  }
+
+  @AfterEach
+  void tearDown() {
+    scheduler.shutdown();
+  }
+
+  @Test
+  void shouldArchiveFullBatchOverOneSession() throws Exception {
+    SftpBatchArchiveHandler handler = handler(3, 60_000L);
+
+    for (String name : List.of("a.txt", "b.txt", "c.txt")) {
+      Files.writeString(root.resolve("inbox/" + name), name);
+      handler.handleMessage(message("inbox/" + name));
+    }
+
+    assertThat(root.resolve("archive/a.txt")).hasContent("a.txt");
+    assertThat(root.resolve("archive/c.txt")).hasContent("c.txt");
+    assertThat(root.resolve("inbox/b.txt")).doesNotExist();
+    assertThat(archived).containsExactly("inbox/a.txt", "inbox/b.txt", "inbox/c.txt");
+    assertThat(sessions).hasValue(1);
+  }
+
+  @Test
+  void shouldArchivePartialBatchWhenWindowElapses() throws Exception {
+    SftpBatchArchiveHandler handler = handler(100, 50L);
+    Files.writeString(root.resolve("inbox/late.txt"), "late");
+
+    handler.handleMessage(message("inbox/late.txt"));
+
+    for (int i = 0; i < 100 && archived.isEmpty(); i++) {
+      Thread.sleep(20);
+    }
+    assertThat(archived).containsExactly("inbox/late.txt");
+    assertThat(root.resolve("archive/late.txt")).hasContent("late");
+  }
+
+  @Test
+  void shouldReportFailuresPerPathAndReplaceExistingTargets() throws Exception {
+    SftpBatchArchiveHandler handler = handler(3, 60_000L);
+    Files.writeString(root.resolve("inbox/new.txt"), "new");
+    Files.writeString(root.resolve("archive/new.txt"), "old");
+    Files.writeString(root.resolve("inbox/other.txt"), "other");
+
+    handler.handleMessage(message("inbox/new.txt"));
+    handler.handleMessage(message("inbox/missing.txt"));
+    handler.handleMessage(message("inbox/other.txt"));
+
+    assertThat(root.resolve("archive/new.txt")).hasContent("new");
+    assertThat(archived).containsExactly("inbox/new.txt", "inbox/other.txt");
+    assertThat(failed).containsOnlyKeys("inbox/missing.txt");
+  }
+
+  @Test
+  void shouldStampArchiveTimeOnRenamedFiles() throws Exception {
+    SftpBatchArchiveHandler handler = handler(1, 60_000L, true);
+    Files.writeString(root.resolve("inbox/old.txt"), "old");
+    Files.setLastModifiedTime(root.resolve("inbox/old.txt"), FileTime.from(Instant.parse("2020-01-01T00:00:00Z")));
+    Instant before = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    handler.handleMessage(message("inbox/old.txt"));
+
+    assertThat(archived).containsExactly("inbox/old.txt");
+    assertThat(Files.getLastModifiedTime(root.resolve("archive/old.txt")).toInstant()).isAfterOrEqualTo(before);
+  }
+
+  private SftpBatchArchiveHandler handler(int batchSize, long window) {
+    return handler(batchSize, window, false);
+  }
+
+  private SftpBatchArchiveHandler handler(int batchSize, long window, boolean stampArchiveTime) {
+    SessionFactory<SftpClient.DirEntry> countingFactory = () -> {
+      sessions.incrementAndGet();
+      return sessionFactory.getSession();
+    };
+    return new SftpBatchArchiveHandler(countingFactory, batchSize, window, scheduler,
+        message -> "archive/" + Paths.get(String.valueOf(message.getPayload())).getFileName(),
+        archived::add,
+        (message, ex) -> failed.put(message.getPayload(), ex), stampArchiveTime);
+  }
+
+  private static Message<String> message(String remotePath) {
+    return MessageBuilder.withPayload(remotePath).build();
+  }
+}
@@ -13,8 +13,22 @@ import org.springframework.integration.dsl.IntegrationFlow;
 import org.springframework.integration.dsl.context.IntegrationFlowContext;
 import org.springframework.integration.handler.advice.ExpressionEvaluatingRequestHandlerAdvice;
 import org.springframework.integration.sftp.session.DefaultSftpSessionFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -68,4 +82,62 @@ public class SftpUploadFlowConfigTest {
         transactionManager, flowContext, serverConfig);
     verify(flowContext, atLeastOnce()).registration(any());
   }
+
+  @Test
+  void shouldRegisterUploadFlowWithConcurrentWorkers() {
+    SftpServerConfig concurrentConfig = serverConfig.toBuilder()
+        .uploadConcurrency(16)
+        .cacheSize(4)
+        .build();
+    new SftpUploadFlowConfig(
+        applicationContext, sftpProperties, globalFileProcessor, factoryProvider, errorHandlingAdvice,
+        transactionManager, flowContext, concurrentConfig);
+    verify(flowContext, times(2)).registration(any());
+  }
+
+  @Test
+  void shouldBlockPollerWhileAllUploadWorkersAreBusy() throws Exception {
+    SftpServerConfig concurrentConfig = serverConfig.toBuilder()
+        .uploadConcurrency(16)
+        .cacheSize(4)
+        .build();
+    SftpUploadFlowConfig config = new SftpUploadFlowConfig(
+        applicationContext, sftpProperties, globalFileProcessor, factoryProvider, errorHandlingAdvice,
+        transactionManager, flowContext, concurrentConfig);
+    int concurrency = config.effectiveUploadConcurrency();
+    ThreadPoolTaskExecutor executor = config.buildUploadExecutor(concurrency, "uploadTest");
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger started = new AtomicInteger();
+    ExecutorService poller = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> polls = poller.submit(() -> {
+        for (int i = 0; i <= concurrency; i++) {
+          executor.execute(() -> {
+            started.incrementAndGet();
+            awaitQuietly(release);
+          });
+        }
+      });
+
+      await().atMost(Duration.ofSeconds(5)).untilAtomic(started, equalTo(concurrency));
+      assertThatThrownBy(() -> polls.get(300, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+      assertThat(started).hasValue(4);
+
+      release.countDown();
+      polls.get(5, TimeUnit.SECONDS);
+      await().atMost(Duration.ofSeconds(5)).untilAtomic(started, equalTo(concurrency + 1));
+    } finally {
+      release.countDown();
+      poller.shutdownNow();
+      executor.shutdown();
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
 }
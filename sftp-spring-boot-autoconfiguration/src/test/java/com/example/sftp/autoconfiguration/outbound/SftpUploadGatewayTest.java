@@ -0,0 +1,106 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import com.example.sftp.autoconfiguration.SftpProperties;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.file.FileHeaders;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+public class SftpUploadGatewayTest {
+
+  @Test
+  void shouldSendContentToServerUploadChannel() {
+    // given
+    QueueChannel channel = new QueueChannel();
+    DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+    beanFactory.registerSingleton("sftpUploadOutboundChannel-server1", channel);
+    SftpUploadGateway gateway = new SftpUploadGateway(beanFactory);
+    byte[] content = "a,b,c".getBytes();
+    // when
+    gateway.upload("server1", "report.csv", content);
+    // then
+    Message<?> sent = channel.receive(0);
+    assertThat(sent).isNotNull();
+    assertThat(sent.getPayload()).isSameAs(content);
+    assertThat(sent.getHeaders().get(FileHeaders.FILENAME)).isEqualTo("report.csv");
+  }
+
+  @Test
+  void shouldThrowFailedStreamUploadToCallerAfterOneAttempt() throws IOException {
+    // given
+    AtomicInteger attempts = new AtomicInteger();
+    SftpUploadGateway gateway = gatewayUploadingWith(failingSessionFactory(attempts));
+    // when / then
+    assertThatThrownBy(() -> gateway.upload("server1", "stream.csv", new ByteArrayInputStream("a,b,c".getBytes())))
+        .isInstanceOf(MessagingException.class)
+        .hasRootCauseMessage("Connection reset");
+    assertThat(attempts).hasValue(1);
+  }
+
+  @Test
+  void shouldThrowFailedByteArrayUploadToCallerAfterRetries() throws IOException {
+    // given
+    AtomicInteger attempts = new AtomicInteger();
+    SftpUploadGateway gateway = gatewayUploadingWith(failingSessionFactory(attempts));
+    // when / then
+    assertThatThrownBy(() -> gateway.upload("server1", "report.csv", "a,b,c".getBytes()))
+        .isInstanceOf(MessagingException.class);
+    assertThat(attempts).hasValue(3);
+  }
+
+  @Test
+  void shouldRejectFileNameWithPath() throws IOException {
+    // given
+    AtomicInteger attempts = new AtomicInteger();
+    SftpUploadGateway gateway = gatewayUploadingWith(failingSessionFactory(attempts));
+    // when / then
+    assertThatThrownBy(() -> gateway.upload("server1", "../report.csv", "a,b,c".getBytes()))
+        .isInstanceOf(MessagingException.class)
+        .hasMessageContaining("plain file name");
+    assertThat(attempts).hasValue(0);
+  }
+
+  /**
+   * Returns a gateway whose upload channel is served by an upload handler, as in the payload upload flow.
+   */
+  private static SftpUploadGateway gatewayUploadingWith(SessionFactory<SftpClient.DirEntry> sessionFactory) {
+    SftpProperties.RetryProperties retry = SftpProperties.RetryProperties.builder()
+        .maxAttempts(3).initialInterval(1L).multiplier(1.0).maxInterval(1L).build();
+    DirectChannel channel = new DirectChannel();
+    channel.subscribe(new SftpUploadHandler(sessionFactory, "out", true, retry, "server1"));
+    DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+    beanFactory.registerSingleton("sftpUploadOutboundChannel-server1", channel);
+    return new SftpUploadGateway(beanFactory);
+  }
+
+  /**
+   * Returns a factory counting the sessions it hands out, each failing to write.
+   */
+  @SuppressWarnings("unchecked")
+  private static SessionFactory<SftpClient.DirEntry> failingSessionFactory(AtomicInteger attempts) throws IOException {
+    Session<SftpClient.DirEntry> session = mock(Session.class);
+    doThrow(new IOException("Connection reset")).when(session).write(any(InputStream.class), anyString());
+    return () -> {
+      attempts.incrementAndGet();
+      return session;
+    };
+  }
+}
@@ -0,0 +1,312 @@
+package com.example.sftp.autoconfiguration.outbound;
+
+import com.example.sftp.autoconfiguration.BaseEmbeddedSftpTest;
+import com.example.sftp.autoconfiguration.SftpProperties;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.integration.file.FileHeaders;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.MessagingException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SftpUploadHandlerTest extends BaseEmbeddedSftpTest {
+
+  @TempDir
+  Path localDirectory;
+
+  private final AtomicInteger appendCalls = new AtomicInteger();
+  private final AtomicInteger failingWrites = new AtomicInteger();
+  private final AtomicInteger existsCalls = new AtomicInteger();
+  private final AtomicInteger writeCalls = new AtomicInteger();
+  private byte[] content;
+  private File localFile;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    content = new byte[200_000];
+    new Random(7).nextBytes(content);
+    localFile = Files.write(localDirectory.resolve("report.bin"), content).toFile();
+  }
+
+  @Test
+  void shouldAppendToRemoteTemporaryFileOnRetry() {
+    failingWrites.set(1);
+    SftpUploadHandler handler = new SftpUploadHandler(interruptingFactory(), "out/resume", true, retry(), "test");
+
+    handler.handleMessage(MessageBuilder.withPayload(localFile).build());
+
+    assertThat(root.resolve("out/resume/report.bin")).hasBinaryContent(content);
+    assertThat(root.resolve("out/resume/report.bin" + SftpUploadHandler.TEMPORARY_FILE_SUFFIX)).doesNotExist();
+    assertThat(root.resolve("out/resume/report.bin" + SftpUploadHandler.RESUME_MARKER_SUFFIX)).doesNotExist();
+    assertThat(appendCalls).hasValue(1);
+  }
+
+  @Test
+  void shouldResumeUploadLeftByPreviousProcess() throws IOException {
+    Path directory = Files.createDirectories(root.resolve("out/restart"));
+    Files.write(directory.resolve("report.bin" + SftpUploadHandler.TEMPORARY_FILE_SUFFIX),
+        Arrays.copyOf(content, content.length / 2));
+    Files.writeString(directory.resolve("report.bin" + SftpUploadHandler.RESUME_MARKER_SUFFIX),
+        localFile.length() + ":" + localFile.lastModified());
+    SftpUploadHandler handler = new SftpUploadHandler(interruptingFactory(), "out/restart", true, retry(), "test");
+
+    handler.handleMessage(MessageBuilder.withPayload(localFile).build());
+
+    assertThat(directory.resolve("report.bin")).hasBinaryContent(content);
+    assertThat(directory.resolve("report.bin" + SftpUploadHandler.TEMPORARY_FILE_SUFFIX)).doesNotExist();
+    assertThat(directory.resolve("report.bin" + SftpUploadHandler.RESUME_MARKER_SUFFIX)).doesNotExist();
+    assertThat(appendCalls).hasValue(1);
+  }
+
+  @Test
+  void shouldStartOverWhenLocalFileChangedSincePreviousProcess() throws IOException {
+    Path directory = Files.createDirectories(root.resolve("out/changed"));
+    Files.write(directory.resolve("report.bin" + SftpUploadHandler.TEMPORARY_FILE_SUFFIX), new byte[1000]);
+    Files.writeString(directory.resolve("report.bin" + SftpUploadHandler.RESUME_MARKER_SUFFIX),
+        localFile.length() + ":" + (localFile.lastModified() - 1000));
+    SftpUploadHandler handler = new SftpUploadHandler(interruptingFactory(), "out/changed", true, retry(), "test");
+
+    handler.handleMessage(MessageBuilder.withPayload(localFile).build());
+
+    assertThat(directory.resolve("report.bin")).hasBinaryContent(content);
+    assertThat(directory.resolve("report.bin" + SftpUploadHandler.RESUME_MARKER_SUFFIX)).doesNotExist();
+    assertThat(appendCalls).hasValue(0);
+  }
+
+  @Test
+  void shouldKeepShardPathOfFilesWithTheSameName() throws Exception {
+    Path shardA = Files.createDirectories(localDirectory.resolve("shard-a"));
+    Path shardB = Files.createDirectories(localDirectory.resolve("shard-b"));
+    File first = Files.writeString(shardA.resolve("same.txt"), "from a").toFile();
+    File second = Files.writeString(shardB.resolve("same.txt"), "from b").toFile();
+    SftpUploadHandler handler = new SftpUploadHandler(interruptingFactory(), "out/shards", true, retry(), "test");
+    handler.setDirectoryCache(new RemoteDirectoryCache(60_000L));
+    handler.setKeepShardPaths(true);
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(2);
+    executor.initialize();
+    try {
+      CompletableFuture.allOf(
+          CompletableFuture.runAsync(() -> handler.handleMessage(MessageBuilder.withPayload(first)
+              .setHeader(FileHeaders.RELATIVE_PATH, "shard-a/same.txt").build()), executor),
+          CompletableFuture.runAsync(() -> handler.handleMessage(MessageBuilder.withPayload(second)
+              .setHeader(FileHeaders.RELATIVE_PATH, "shard-b/same.txt").build()), executor)
+      ).get(30, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(root.resolve("out/shards/shard-a/same.txt")).hasContent("from a");
+    assertThat(root.resolve("out/shards/shard-b/same.txt")).hasContent("from b");
+    assertThat(root.resolve("out/shards/same.txt")).doesNotExist();
+  }
+
+  @Test
+  void shouldUploadShardedFileUnderItsOwnNameByDefault() throws Exception {
+    Path shard = Files.createDirectories(localDirectory.resolve("shard-a"));
+    File sharded = Files.writeString(shard.resolve("flat.txt"), "flat").toFile();
+    SftpUploadHandler handler = new SftpUploadHandler(interruptingFactory(), "out/flat", true, retry(), "test");
+
+    handler.handleMessage(MessageBuilder.withPayload(sharded)
+        .setHeader(FileHeaders.RELATIVE_PATH, "shard-a/flat.txt").build());
+
+    assertThat(root.resolve("out/flat/flat.txt")).hasContent("flat");
+    assertThat(root.resolve("out/flat/shard-a")).doesNotExist();
+  }
+
+  @Test
+  void shouldRejectRelativePathLeavingLocalDirectory() {
+    SftpUploadHandler handler = new SftpUploadHandler(interruptingFactory(), "out/escape", true, retry(), "test");
+
+    assertThatThrownBy(() -> handler.handleMessage(MessageBuilder.withPayload(localFile)
+        .setHeader(FileHeaders.RELATIVE_PATH, "../report.bin").build()))
+        .isInstanceOf(MessagingException.class)
+        .hasMessageContaining(FileHeaders.RELATIVE_PATH);
+    assertThat(writeCalls).hasValue(0);
+  }
+
+  @Test
+  void shouldRewriteWholeFileWhenResumeIsDisabled() {
+    failingWrites.set(1);
+    SftpUploadHandler handler = new SftpUploadHandler(interruptingFactory(), "out/plain", false, retry(), "test");
+
+    handler.handleMessage(MessageBuilder.withPayload(localFile).build());
+
+    assertThat(root.resolve("out/plain/report.bin")).hasBinaryContent(content);
+    assertThat(appendCalls).hasValue(0);
+  }
+
+  @Test
+  void shouldUploadLargeFileInConcurrentChunks() throws Exception {
+    byte[] large = new byte[1_000_003];
+    new Random(11).nextBytes(large);
+    File largeFile = Files.write(localDirectory.resolve("large.bin"), large).toFile();
+    AtomicInteger sessions = new AtomicInteger();
+    SessionFactory<SftpClient.DirEntry> countingFactory = () -> {
+      sessions.incrementAndGet();
+      return sessionFactory.getSession();
+    };
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(4);
+    executor.initialize();
+    try {
+      SftpUploadHandler handler = new SftpUploadHandler(countingFactory, "out/chunked", true, retry(), "test",
+          100_000L, 4, executor);
+
+      handler.handleMessage(MessageBuilder.withPayload(largeFile).build());
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(root.resolve("out/chunked/large.bin")).hasBinaryContent(large);
+    assertThat(root.resolve("out/chunked/large.bin" + SftpUploadHandler.TEMPORARY_FILE_SUFFIX)).doesNotExist();
+    // One session to prepare the temporary file, one per chunk and one for the rename.
+    assertThat(sessions).hasValue(6);
+  }
+
+  @Test
+  void shouldCheckRemoteDirectoryOncePerTtl() throws Exception {
+    SftpUploadHandler handler = new SftpUploadHandler(interruptingFactory(), "out/cached/2024", true, retry(), "test");
+    handler.setDirectoryCache(new RemoteDirectoryCache(60_000L));
+
+    for (int i = 0; i < 3; i++) {
+      File file = Files.writeString(localDirectory.resolve("file-" + i + ".txt"), "x" + i).toFile();
+      handler.handleMessage(MessageBuilder.withPayload(file).build());
+    }
+
+    assertThat(root.resolve("out/cached/2024/file-2.txt")).hasContent("x2");
+    assertThat(existsCalls).hasValue(3);
+  }
+
+  @Test
+  void shouldRetryByteArrayPayloadWithoutLocalFile() {
+    failingWrites.set(1);
+    SftpUploadHandler handler = new SftpUploadHandler(interruptingFactory(), "out/memory", true, retry(), "test");
+
+    handler.handleMessage(MessageBuilder.withPayload(content).setHeader(FileHeaders.FILENAME, "memory.bin").build());
+
+    assertThat(root.resolve("out/memory/memory.bin")).hasBinaryContent(content);
+    assertThat(root.resolve("out/memory/memory.bin" + SftpUploadHandler.TEMPORARY_FILE_SUFFIX)).doesNotExist();
+    assertThat(appendCalls).hasValue(0);
+  }
+
+  @Test
+  void shouldUploadInputStreamPayloadOnce() {
+    SftpUploadHandler handler = new SftpUploadHandler(interruptingFactory(), "out/stream", true, retry(), "test");
+
+    handler.handleMessage(MessageBuilder.withPayload(new ByteArrayInputStream(content))
+        .setHeader(FileHeaders.FILENAME, "stream.bin").build());
+
+    assertThat(root.resolve("out/stream/stream.bin")).hasBinaryContent(content);
+  }
+
+  @Test
+  void shouldAttemptFailedInputStreamPayloadOnce() {
+    failingWrites.set(1);
+    SftpUploadHandler handler = new SftpUploadHandler(interruptingFactory(), "out/stream-failed", true, retry(), "test");
+
+    assertThatThrownBy(() -> handler.handleMessage(MessageBuilder.withPayload(new ByteArrayInputStream(content))
+        .setHeader(FileHeaders.FILENAME, "stream.bin").build()))
+        .isInstanceOf(MessagingException.class);
+
+    assertThat(writeCalls).hasValue(1);
+    assertThat(root.resolve("out/stream-failed/stream.bin")).doesNotExist();
+  }
+
+  @Test
+  void shouldRejectFileNameOutsideRemoteDirectory() {
+    SftpUploadHandler handler = new SftpUploadHandler(interruptingFactory(), "out/names", true, retry(), "test");
+
+    for (String fileName : new String[] {"../escape.bin", "sub/file.bin", ".."}) {
+      assertThatThrownBy(() -> handler.handleMessage(MessageBuilder.withPayload(content)
+          .setHeader(FileHeaders.FILENAME, fileName).build()))
+          .isInstanceOf(MessagingException.class)
+          .hasMessageContaining("plain file name");
+    }
+    assertThat(writeCalls).hasValue(0);
+    assertThat(root.resolve("escape.bin")).doesNotExist();
+  }
+
+  @Test
+  void shouldRejectPayloadWithoutFileName() {
+    SftpUploadHandler handler = new SftpUploadHandler(interruptingFactory(), "out/unnamed", true, retry(), "test");
+
+    assertThatThrownBy(() -> handler.handleMessage(MessageBuilder.withPayload(content).build()))
+        .isInstanceOf(MessagingException.class)
+        .hasMessageContaining(FileHeaders.FILENAME);
+  }
+
+  @Test
+  void shouldQuarantineFileWhoseUploadFailed() throws Exception {
+    failingWrites.set(2);
+    Path quarantine = localDirectory.resolve("quarantine");
+    SftpUploadHandler handler = new SftpUploadHandler(interruptingFactory(), "out/failed", false, retry(), "test");
+    handler.setDisposition(new LocalFileDisposition(LocalFileDisposition.MOVE, localDirectory.resolve("sent").toFile(),
+        quarantine.toFile(), Runnable::run, null));
+
+    assertThatThrownBy(() -> handler.handleMessage(MessageBuilder.withPayload(localFile).build()))
+        .isInstanceOf(RuntimeException.class);
+
+    assertThat(localFile).doesNotExist();
+    assertThat(quarantine.resolve(LocalDate.now().toString()).resolve("report.bin")).hasBinaryContent(content);
+  }
+
+  private static SftpProperties.RetryProperties retry() {
+    return SftpProperties.RetryProperties.builder().maxAttempts(2).initialInterval(1L).multiplier(1.0).maxInterval(1L).build();
+  }
+
+  /**
+   * Returns a factory whose first {@code failingWrites} writes transfer half of the stream and then fail, as a
+   * dropped connection would.
+   */
+  @SuppressWarnings("unchecked")
+  private SessionFactory<SftpClient.DirEntry> interruptingFactory() {
+    return () -> {
+      Session<SftpClient.DirEntry> target = sessionFactory.getSession();
+      return (Session<SftpClient.DirEntry>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Session.class},
+          (proxy, method, args) -> {
+            if ("write".equals(method.getName())) {
+              writeCalls.incrementAndGet();
+            }
+            if ("write".equals(method.getName()) && failingWrites.getAndDecrement() > 0) {
+              InputStream in = (InputStream) args[0];
+              target.write(new ByteArrayInputStream(in.readNBytes(content.length / 2)), (String) args[1]);
+              throw new IOException("Connection reset");
+            }
+            if ("append".equals(method.getName())) {
+              appendCalls.incrementAndGet();
+            }
+            if ("exists".equals(method.getName())) {
+              existsCalls.incrementAndGet();
+            }
+            try {
+              return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+              throw ex.getCause();
+            }
+          });
+    };
+  }
+}
@@ -0,0 +1,85 @@
+package com.example.sftp.autoconfiguration.session;
+
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingDirectoryListerTest {
+
+  private static final String DIR = "/inbound";
+
+  private Session<SftpClient.DirEntry> session;
+  private SftpClient client;
+  private SftpClient.Attributes attributes;
+  private SftpClient.DirEntry[] entries;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() throws Exception {
+    session = mock(Session.class);
+    client = mock(SftpClient.class);
+    attributes = mock(SftpClient.Attributes.class);
+    entries = new SftpClient.DirEntry[] {mock(SftpClient.DirEntry.class)};
+    when(session.getClientInstance()).thenReturn(client);
+    when(client.stat(DIR)).thenReturn(attributes);
+    when(attributes.isDirectory()).thenReturn(true);
+    when(attributes.getModifyTime()).thenReturn(FileTime.fromMillis(1000L));
+    when(attributes.getSize()).thenReturn(4096L);
+    when(session.list(DIR)).thenReturn(entries);
+  }
+
+  @Test
+  void shouldReuseListingWhileDirectoryIsUnchanged() throws Exception {
+    CachingDirectoryLister lister = new CachingDirectoryLister(Session::list, 60_000L);
+
+    assertThat(lister.list(session, DIR)).containsExactly(entries);
+    assertThat(lister.list(session, DIR)).containsExactly(entries);
+    verify(session, times(1)).list(DIR);
+    verify(client, times(2)).stat(DIR);
+  }
+
+  @Test
+  void shouldRelistWhenDirectoryModificationTimeChanges() throws Exception {
+    CachingDirectoryLister lister = new CachingDirectoryLister(Session::list, 60_000L);
+    lister.list(session, DIR);
+
+    when(attributes.getModifyTime()).thenReturn(FileTime.fromMillis(2000L));
+    lister.list(session, DIR);
+    verify(session, times(2)).list(DIR);
+  }
+
+  @Test
+  void shouldRelistOnceCachedListingExpires() throws Exception {
+    CachingDirectoryLister lister = new CachingDirectoryLister(Session::list, 1L);
+    lister.list(session, DIR);
+    Thread.sleep(5);
+    lister.list(session, DIR);
+    verify(session, times(2)).list(DIR);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldRouteSessionListingThroughLister() throws Exception {
+    SessionFactory<SftpClient.DirEntry> delegate = mock(SessionFactory.class);
+    when(delegate.getSession()).thenReturn(session);
+    ListingSessionFactory factory = new ListingSessionFactory(delegate, new CachingDirectoryLister(Session::list, 60_000L));
+
+    Session<SftpClient.DirEntry> first = factory.getSession();
+    first.list(DIR);
+    first.close();
+    factory.getSession().list(DIR);
+
+    verify(session, times(1)).list(DIR);
+    verify(session).close();
+  }
+}
@@ -0,0 +1,61 @@
+package com.example.sftp.autoconfiguration.session;
+
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.file.remote.session.Session;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CompleteListingListerTest {
+
+  private static final String DIR = "/inbound";
+
+  private final List<Set<String>> reports = new ArrayList<>();
+  private Session<SftpClient.DirEntry> session;
+  private CompleteListingListener listener;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    session = mock(Session.class);
+    listener = new CompleteListingListener() {
+      @Override
+      public Set<String> listingStarted(String path) {
+        return Set.of("kept.csv", "gone.csv");
+      }
+
+      @Override
+      public void listingCompleted(String path, Set<String> missing) {
+        reports.add(missing);
+      }
+    };
+  }
+
+  @Test
+  void shouldReportNamesMissingFromListing() throws Exception {
+    SftpClient.DirEntry kept = mock(SftpClient.DirEntry.class);
+    when(kept.getFilename()).thenReturn("kept.csv");
+    when(session.list(DIR)).thenReturn(new SftpClient.DirEntry[] {kept});
+
+    assertThat(new CompleteListingLister(Session::list, listener).list(session, DIR)).containsExactly(kept);
+    assertThat(reports).containsExactly(Set.of("gone.csv"));
+  }
+
+  @Test
+  void shouldNotReportFailedListing() throws Exception {
+    when(session.list(DIR)).thenThrow(new IOException("connection reset"));
+
+    assertThatThrownBy(() -> new CompleteListingLister(Session::list, listener).list(session, DIR))
+        .isInstanceOf(IOException.class);
+    assertThat(reports).isEmpty();
+  }
+}
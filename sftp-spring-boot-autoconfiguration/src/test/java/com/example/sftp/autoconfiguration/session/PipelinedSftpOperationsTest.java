@@ -0,0 +1,113 @@
+package com.example.sftp.autoconfiguration.session;
+
+import com.example.sftp.autoconfiguration.BaseEmbeddedSftpTest;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.file.remote.session.Session;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class PipelinedSftpOperationsTest extends BaseEmbeddedSftpTest {
+
+  @Test
+  void shouldRemoveFilesWithSeveralRequestsInFlight() throws Exception {
+    Files.createDirectories(root.resolve("remove"));
+    List<String> paths = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      Files.writeString(root.resolve("remove/" + i + ".txt"), "x");
+      paths.add("remove/" + i + ".txt");
+    }
+    paths.add(7, "remove/missing.txt");
+
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      Exception[] failures = new PipelinedSftpOperations(session, 3).remove(paths);
+
+      assertThat(failures).hasSize(21);
+      assertThat(failures[7]).isNotNull();
+      failures[7] = null;
+      assertThat(failures).containsOnlyNulls();
+    }
+    try (var remaining = Files.list(root.resolve("remove"))) {
+      assertThat(remaining).isEmpty();
+    }
+  }
+
+  @Test
+  void shouldRenameOverExistingTargets() throws Exception {
+    Files.createDirectories(root.resolve("rename"));
+    Files.writeString(root.resolve("rename/a.txt"), "a");
+    Files.writeString(root.resolve("rename/b.txt"), "b");
+    Files.writeString(root.resolve("rename/b.done"), "stale");
+
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      Exception[] failures = new PipelinedSftpOperations(session)
+          .rename(List.of("rename/a.txt", "rename/b.txt"), List.of("rename/a.done", "rename/b.done"));
+
+      assertThat(failures).containsOnlyNulls();
+    }
+    assertThat(root.resolve("rename/a.done")).hasContent("a");
+    assertThat(root.resolve("rename/b.done")).hasContent("b");
+  }
+
+  @Test
+  void shouldCreateDirectoriesAndCheckExistence() throws Exception {
+    Files.createDirectories(root.resolve("mkdir"));
+    Files.createDirectories(root.resolve("mkdir/existing"));
+
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      PipelinedSftpOperations operations = new PipelinedSftpOperations(session, 2);
+      Exception[] failures = operations.mkdir(List.of("mkdir/a", "mkdir/b", "mkdir/existing", "mkdir/c"));
+
+      assertThat(failures[0]).isNull();
+      assertThat(failures[1]).isNull();
+      assertThat(failures[2]).isNotNull();
+      assertThat(failures[3]).isNull();
+      assertThat(operations.exists(List.of("mkdir/a", "mkdir/missing", "mkdir/c", "mkdir/existing")))
+          .containsExactly(true, false, true, true);
+    }
+    assertThat(root.resolve("mkdir/b")).isDirectory();
+  }
+
+  @Test
+  void shouldSetModificationTimes() throws Exception {
+    Files.createDirectories(root.resolve("stamp"));
+    Files.writeString(root.resolve("stamp/a.txt"), "a");
+    Files.writeString(root.resolve("stamp/b.txt"), "b");
+    long stamp = 1_700_000_000_000L;
+
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      Exception[] failures = new PipelinedSftpOperations(session, 2)
+          .setModifyTime(List.of("stamp/a.txt", "stamp/missing.txt", "stamp/b.txt"), stamp);
+
+      assertThat(failures[0]).isNull();
+      assertThat(failures[1]).isNotNull();
+      assertThat(failures[2]).isNull();
+    }
+    assertThat(Files.getLastModifiedTime(root.resolve("stamp/a.txt")).toMillis()).isEqualTo(stamp);
+    assertThat(Files.getLastModifiedTime(root.resolve("stamp/b.txt")).toMillis()).isEqualTo(stamp);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldRunOperationsOneByOneWithoutRawClient() throws Exception {
+    Session<SftpClient.DirEntry> session = mock(Session.class);
+    when(session.getClientInstance()).thenReturn(new Object());
+    doThrow(new IOException("denied")).when(session).remove("b");
+    when(session.exists("a")).thenReturn(true);
+
+    PipelinedSftpOperations operations = new PipelinedSftpOperations(session);
+
+    Exception[] failures = operations.remove(List.of("a", "b"));
+    assertThat(failures[0]).isNull();
+    assertThat(failures[1]).hasMessage("denied");
+    assertThat(operations.exists(List.of("a", "b"))).containsExactly(true, false);
+    verify(session).remove("a");
+    assertThat(operations.setModifyTime(List.of("a"), 1000L)[0]).isInstanceOf(IOException.class);
+  }
+}
@@ -0,0 +1,54 @@
+package com.example.sftp.autoconfiguration.session;
+
+import com.example.sftp.autoconfiguration.BaseEmbeddedSftpTest;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.extensions.openssh.OpenSSHPosixRenameExtension;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class PosixRenameSessionFactoryTest extends BaseEmbeddedSftpTest {
+
+  @Test
+  void shouldReplaceExistingTargetWithPosixRename() throws Exception {
+    Files.writeString(root.resolve("report.csv.writing"), "new");
+    Files.writeString(root.resolve("report.csv"), "old");
+    PosixRenameSessionFactory factory = new PosixRenameSessionFactory(sessionFactory, "test");
+
+    try (Session<SftpClient.DirEntry> session = factory.getSession()) {
+      session.rename("report.csv.writing", "report.csv");
+    }
+
+    assertThat(factory.isPosixRenameSupported()).isTrue();
+    assertThat(root.resolve("report.csv")).hasContent("new");
+    assertThat(root.resolve("report.csv.writing")).doesNotExist();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldCacheMissingSupportAndUsePlainRename() throws Exception {
+    OpenSSHPosixRenameExtension extension = mock(OpenSSHPosixRenameExtension.class);
+    SftpClient client = mock(SftpClient.class);
+    when(client.getExtension(any(Class.class))).thenReturn(extension);
+    Session<SftpClient.DirEntry> session = mock(Session.class);
+    when(session.getClientInstance()).thenReturn(client);
+    SessionFactory<SftpClient.DirEntry> delegate = mock(SessionFactory.class);
+    when(delegate.getSession()).thenReturn(session);
+    PosixRenameSessionFactory factory = new PosixRenameSessionFactory(delegate, "test");
+
+    factory.getSession().rename("a", "b");
+    factory.getSession().rename("c", "d");
+
+    assertThat(factory.isPosixRenameSupported()).isFalse();
+    verify(session).rename("a", "b");
+    verify(session).rename("c", "d");
+    verify(extension, times(1)).isSupported();
+    verify(extension, never()).posixRename(any(), any());
+  }
+}
@@ -0,0 +1,86 @@
+package com.example.sftp.autoconfiguration.session;
+
+import com.example.sftp.autoconfiguration.BaseEmbeddedSftpTest;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.integration.file.remote.session.CachingSessionFactory;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.sftp.inbound.SftpInboundFileSynchronizer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecursiveDirectoryListerTest extends BaseEmbeddedSftpTest {
+
+  private static CachingSessionFactory<SftpClient.DirEntry> cachingSessionFactory;
+  private static ThreadPoolTaskExecutor executor;
+
+  @BeforeAll
+  static void createTree() throws Exception {
+    Path tree = Files.createDirectories(root.resolve("tree"));
+    Files.writeString(tree.resolve("top.csv"), "top");
+    for (int day = 1; day <= 5; day++) {
+      for (int customer = 1; customer <= 4; customer++) {
+        Path leaf = Files.createDirectories(tree.resolve("day-" + day).resolve("customer-" + customer));
+        Files.writeString(leaf.resolve("orders.csv"), day + "/" + customer);
+        Files.writeString(Files.createDirectories(leaf.resolve("deep")).resolve("ignored.csv"), "deep");
+      }
+    }
+
+    cachingSessionFactory = new CachingSessionFactory<>(sessionFactory);
+    cachingSessionFactory.setPoolSize(4);
+
+    executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(3);
+    executor.setMaxPoolSize(3);
+    executor.initialize();
+  }
+
+  @AfterAll
+  static void shutdown() {
+    executor.shutdown();
+    cachingSessionFactory.destroy();
+  }
+
+  @Test
+  void shouldListTreeConcurrentlyWithRelativeNamesUpToMaxDepth() throws Exception {
+    RecursiveDirectoryLister lister = new RecursiveDirectoryLister(Session::list, cachingSessionFactory, executor, 2);
+    try (Session<SftpClient.DirEntry> session = cachingSessionFactory.getSession()) {
+      List<String> names = Arrays.stream(lister.list(session, "/tree")).map(SftpClient.DirEntry::getFilename).toList();
+
+      assertThat(names).hasSize(21);
+      assertThat(names).contains("top.csv", "day-1/customer-1/orders.csv", "day-5/customer-4/orders.csv");
+      assertThat(names).noneMatch(name -> name.contains("deep"));
+    }
+  }
+
+  @Test
+  void shouldListOnlyTopLevelWhenMaxDepthIsZero() throws Exception {
+    RecursiveDirectoryLister lister = new RecursiveDirectoryLister(Session::list, null, null, 0);
+    try (Session<SftpClient.DirEntry> session = cachingSessionFactory.getSession()) {
+      assertThat(lister.list(session, "/tree")).extracting(SftpClient.DirEntry::getFilename).containsExactly("top.csv");
+    }
+  }
+
+  @Test
+  void shouldSynchronizeTreeIntoLocalSubdirectories(@TempDir Path local) throws Exception {
+    RecursiveDirectoryLister lister = new RecursiveDirectoryLister(Session::list, cachingSessionFactory, executor, 3);
+    SftpInboundFileSynchronizer synchronizer = new SftpInboundFileSynchronizer(new ListingSessionFactory(cachingSessionFactory, lister));
+    synchronizer.setRemoteDirectory("/tree");
+    synchronizer.afterPropertiesSet();
+
+    synchronizer.synchronizeToLocalDirectory(local.toFile());
+
+    assertThat(local.resolve("top.csv")).hasContent("top");
+    assertThat(local.resolve("day-3/customer-2/orders.csv")).hasContent("3/2");
+    assertThat(local.resolve("day-3/customer-2/deep/ignored.csv")).hasContent("deep");
+  }
+}
@@ -0,0 +1,104 @@
+package com.example.sftp.autoconfiguration.session;
+
+import com.example.sftp.autoconfiguration.BaseEmbeddedSftpTest;
+import com.example.sftp.autoconfiguration.filters.PreFilteredFileListFilter;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.file.filters.AbstractFileListFilter;
+import org.springframework.integration.file.filters.AcceptOnceFileListFilter;
+import org.springframework.integration.file.filters.SimplePatternFileListFilter;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.sftp.filters.SftpSimplePatternFileListFilter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StreamingDirectoryListerTest extends BaseEmbeddedSftpTest {
+
+  @BeforeAll
+  static void createFiles() throws Exception {
+    Path inbound = Files.createDirectories(root.resolve("inbound"));
+    for (int i = 0; i < 2_000; i++) {
+      Files.writeString(inbound.resolve("file-" + i + (i % 2 == 0 ? ".csv" : ".txt")), "x");
+    }
+    Files.createDirectories(inbound.resolve("nested.csv"));
+  }
+
+  @Test
+  void shouldStopOnceMaxFetchSizeIsReached() throws Exception {
+    StreamingDirectoryLister lister = new StreamingDirectoryLister(new SftpSimplePatternFileListFilter("*.csv"), 25);
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      SftpClient.DirEntry[] entries = lister.list(session, "/inbound");
+
+      assertThat(entries).hasSize(25);
+      assertThat(entries).allMatch(entry -> entry.getFilename().endsWith(".csv") && entry.getAttributes().isRegularFile());
+    }
+  }
+
+  @Test
+  void shouldContinueWhereAcceptOnceFilterLeftOff() throws Exception {
+    Set<String> seen = new HashSet<>();
+    AbstractFileListFilter<SftpClient.DirEntry> acceptOnce = new AbstractFileListFilter<>() {
+      @Override
+      public boolean accept(SftpClient.DirEntry file) {
+        return file.getFilename().endsWith(".txt") && seen.add(file.getFilename());
+      }
+    };
+    StreamingDirectoryLister lister = new StreamingDirectoryLister(acceptOnce, 600);
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      SftpClient.DirEntry[] first = lister.list(session, "/inbound");
+      SftpClient.DirEntry[] second = lister.list(session, "/inbound");
+      SftpClient.DirEntry[] third = lister.list(session, "/inbound");
+
+      assertThat(first).hasSize(600);
+      assertThat(second).hasSize(400);
+      assertThat(third).isEmpty();
+      assertThat(Arrays.stream(first).map(SftpClient.DirEntry::getFilename))
+          .doesNotContainAnyElementsOf(Arrays.stream(second).map(SftpClient.DirEntry::getFilename).toList());
+    }
+  }
+
+  @Test
+  void shouldReportOnlyListingsThatReadTheWholeDirectory() throws Exception {
+    List<Set<String>> reports = new ArrayList<>();
+    CompleteListingListener listener = new CompleteListingListener() {
+      @Override
+      public Set<String> listingStarted(String path) {
+        return Set.of("file-1.txt", "gone.csv");
+      }
+
+      @Override
+      public void listingCompleted(String path, Set<String> missing) {
+        reports.add(missing);
+      }
+    };
+    try (Session<SftpClient.DirEntry> session = sessionFactory.getSession()) {
+      new StreamingDirectoryLister(new SftpSimplePatternFileListFilter("*.csv"), 25, listener).list(session, "/inbound");
+      assertThat(reports).isEmpty();
+
+      new StreamingDirectoryLister(new SftpSimplePatternFileListFilter("*.csv"), 5_000, listener).list(session, "/inbound");
+      assertThat(reports).containsExactly(Set.of("gone.csv"));
+    }
+  }
+
+  @Test
+  void shouldForwardRollbackToDelegate() {
+    AcceptOnceFileListFilter<String> acceptOnce = new AcceptOnceFileListFilter<>();
+    PreFilteredFileListFilter<String> preFiltered = new PreFilteredFileListFilter<>(acceptOnce);
+    List<String> listed = acceptOnce.filterFiles(new String[] {"a", "b"});
+
+    assertThat(preFiltered.accept("a")).isTrue();
+    preFiltered.rollback("b", listed);
+    assertThat(acceptOnce.accept("a")).isFalse();
+    assertThat(acceptOnce.accept("b")).isTrue();
+    assertThat(new PreFilteredFileListFilter<>(new SimplePatternFileListFilter("*")).remove(null)).isFalse();
+  }
+}
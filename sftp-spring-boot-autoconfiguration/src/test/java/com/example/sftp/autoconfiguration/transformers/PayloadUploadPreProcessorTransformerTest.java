@@ -0,0 +1,40 @@
+package com.example.sftp.autoconfiguration.transformers;
+
+import com.example.sftp.autoconfiguration.SftpFileProcessor;
+import com.example.sftp.autoconfiguration.SftpProperties.RetryProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.file.FileHeaders;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class PayloadUploadPreProcessorTransformerTest {
+
+  private SftpFileProcessor processor;
+  private RetryProperties retryProperties;
+  private PayloadUploadPreProcessorTransformer transformer;
+
+  @BeforeEach
+  void setUp() {
+    processor = mock(SftpFileProcessor.class);
+    retryProperties = RetryProperties.builder()
+        .maxAttempts(3).initialInterval(1000L).multiplier(2.0).maxInterval(4000L).build();
+    transformer = new PayloadUploadPreProcessorTransformer(processor, "testServer", retryProperties);
+  }
+
+  @Test
+  void shouldTransformPayloadMessageSuccessfully() {
+    // given
+    Message<byte[]> message = MessageBuilder.withPayload("content".getBytes())
+        .setHeader(FileHeaders.FILENAME, "report.csv").build();
+    doNothing().when(processor).beforePayloadUpload("report.csv", "testServer");
+    // when
+    Message<?> result = transformer.transform(message);
+    // then
+    assertThat(result).isSameAs(message);
+    verify(processor, times(1)).beforePayloadUpload("report.csv", "testServer");
+  }
+}